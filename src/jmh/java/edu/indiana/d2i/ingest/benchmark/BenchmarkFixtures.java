@@ -0,0 +1,216 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.json.simple.JSONObject;
+
+import edu.indiana.d2i.ingest.util.Tools;
+
+/*
+ * Synthetic volumes, METS files and MARC records for the benchmarks, so that the ingest hot paths can be measured without a pairtree, MARC
+ * dumps or a Cassandra cluster. The fixtures follow the layout of HathiTrust data: volume zips contain one text file per page under a
+ * directory named after the clean id of the volume; METS files have image and ocr file groups, with MD5 checksums, and a physical structMap
+ * with one div per page; MARC records are single-line json, with the volume id in 974$u, near the end of the record. All fixtures are
+ * generated from a fixed seed, so that runs are comparable.
+ */
+public class BenchmarkFixtures {
+	public static final long SEED = 20230401L;
+
+	private static final String[] NAMESPACES = {"mdp", "uc1", "hvd", "uc2", "nyp", "wu", "coo", "inu"};
+	private static final String[] WORDS = {"the", "of", "and", "to", "in", "a", "is", "that", "for", "it", "as", "was", "with", "be", "by",
+			"on", "not", "he", "this", "are", "or", "his", "from", "at", "which", "but", "have", "an", "had", "they", "history", "county",
+			"government", "chapter", "page", "volume", "report", "committee", "states", "university", "library", "soci\u00e9t\u00e9", "\u00fcber"};
+
+	// a volume written to disk: its zip file, METS file, and the page contents in the zip
+	public static class Volume {
+		public final String volumeId;
+		public final File zipFile;
+		public final File metsFile;
+		public final byte[][] pages;
+
+		Volume(String volumeId, File zipFile, File metsFile, byte[][] pages) {
+			this.volumeId = volumeId;
+			this.zipFile = zipFile;
+			this.metsFile = metsFile;
+			this.pages = pages;
+		}
+	}
+
+	// a volume id in one of the forms found in HathiTrust, e.g., mdp.39015012345678, uc2.ark:/13960/t0ab12c3d
+	public static String volumeId(int i, Random random) {
+		String namespace = NAMESPACES[i % NAMESPACES.length];
+		switch (namespace) {
+		case "uc2":
+			return namespace + ".ark:/13960/t" + Integer.toString(i % 10) + Long.toString(Math.abs(random.nextLong()) % 2176782336L, 36);
+		case "hvd":
+			return namespace + ".32044" + String.format("%09d", Math.abs(random.nextLong()) % 1000000000L);
+		case "uc1":
+			return namespace + ".b" + String.format("%07d", Math.abs(random.nextInt()) % 10000000);
+		default:
+			return namespace + ".39015" + String.format("%09d", Math.abs(random.nextLong()) % 1000000000L);
+		}
+	}
+
+	public static String[] volumeIds(int count) {
+		Random random = new Random(SEED);
+		String[] volumeIds = new String[count];
+		for (int i = 0; i < count; i++) {
+			volumeIds[i] = volumeId(i, random);
+		}
+		return volumeIds;
+	}
+
+	// OCR text of numPages pages, each of about avgPageBytes bytes of UTF-8
+	public static byte[][] pages(int numPages, int avgPageBytes, Random random) {
+		byte[][] pages = new byte[numPages][];
+		StringBuilder sb = new StringBuilder(avgPageBytes * 2);
+		for (int p = 0; p < numPages; p++) {
+			sb.setLength(0);
+			int target = avgPageBytes / 2 + random.nextInt(avgPageBytes + 1);
+			int lineLength = 0;
+			while (sb.length() < target) {
+				String word = WORDS[random.nextInt(WORDS.length)];
+				sb.append(word);
+				lineLength += word.length() + 1;
+				if (lineLength > 60) {
+					sb.append('\n');
+					lineLength = 0;
+				} else {
+					sb.append(' ');
+				}
+			}
+			pages[p] = sb.toString().getBytes(StandardCharsets.UTF_8);
+		}
+		return pages;
+	}
+
+	// the contents of the METS file of a volume with the given pages
+	public static String mets(String volumeId, byte[][] pages) throws NoSuchAlgorithmException {
+		StringBuilder sb = new StringBuilder(2048 + pages.length * 900);
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+			.append("<METS:mets xmlns:METS=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"")
+			.append(" xmlns:PREMIS=\"info:lc/xmlns/premis-v2\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"")
+			.append(" OBJID=\"").append(volumeId).append("\" TYPE=\"volume\">\n")
+			.append("  <METS:metsHdr CREATEDATE=\"2016-03-01T12:00:00Z\" RECORDSTATUS=\"NEW\">\n")
+			.append("    <METS:agent ROLE=\"CREATOR\" TYPE=\"ORGANIZATION\"><METS:name>DLPS</METS:name></METS:agent>\n")
+			.append("  </METS:metsHdr>\n")
+			.append("  <METS:amdSec ID=\"AMD1\">\n");
+		for (int e = 0; e < 8; e++) {
+			sb.append("    <METS:digiprovMD ID=\"premis").append(e).append("\"><METS:mdWrap MDTYPE=\"PREMIS\"><METS:xmlData>")
+				.append("<PREMIS:event><PREMIS:eventIdentifier><PREMIS:eventIdentifierType>UUID</PREMIS:eventIdentifierType>")
+				.append("<PREMIS:eventIdentifierValue>0f9a3b2c-").append(1000 + e).append("-4e7f-9c1d-5a6b7c8d9e0f</PREMIS:eventIdentifierValue>")
+				.append("</PREMIS:eventIdentifier><PREMIS:eventType>ingestion</PREMIS:eventType>")
+				.append("<PREMIS:eventDateTime>2016-03-01T12:00:00Z</PREMIS:eventDateTime></PREMIS:event>")
+				.append("</METS:xmlData></METS:mdWrap></METS:digiprovMD>\n");
+		}
+		sb.append("  </METS:amdSec>\n  <METS:fileSec>\n")
+			.append("    <METS:fileGrp ID=\"FG1\" USE=\"zip archive\"><METS:file ID=\"ZIP00000001\" MIMETYPE=\"application/zip\"")
+			.append(" SIZE=\"1\" CHECKSUM=\"00000000000000000000000000000000\" CHECKSUMTYPE=\"MD5\"><METS:FLocat LOCTYPE=\"OTHER\"")
+			.append(" OTHERLOCTYPE=\"SYSTEM\" xlink:href=\"volume.zip\"/></METS:file></METS:fileGrp>\n")
+			.append("    <METS:fileGrp ID=\"FG2\" USE=\"image\">\n");
+		for (int p = 0; p < pages.length; p++) {
+			String seq = Tools.generateSequence(p + 1);
+			sb.append("      <METS:file ID=\"IMG").append(seq).append("\" SEQ=\"").append(seq).append("\" MIMETYPE=\"image/tiff\" SIZE=\"")
+				.append(400000 + p).append("\" CHECKSUM=\"").append(Tools.calculateChecksum(seq.getBytes(StandardCharsets.UTF_8), "MD5"))
+				.append("\" CHECKSUMTYPE=\"MD5\" CREATED=\"2016-03-01T12:00:00Z\"><METS:FLocat LOCTYPE=\"OTHER\" OTHERLOCTYPE=\"SYSTEM\"")
+				.append(" xlink:href=\"").append(seq).append(".tif\"/></METS:file>\n");
+		}
+		sb.append("    </METS:fileGrp>\n    <METS:fileGrp ID=\"FG3\" USE=\"ocr\">\n");
+		for (int p = 0; p < pages.length; p++) {
+			String seq = Tools.generateSequence(p + 1);
+			sb.append("      <METS:file ID=\"TXT").append(seq).append("\" SEQ=\"").append(seq).append("\" MIMETYPE=\"text/plain\" SIZE=\"")
+				.append(pages[p].length).append("\" CHECKSUM=\"").append(Tools.calculateChecksum(pages[p], "MD5"))
+				.append("\" CHECKSUMTYPE=\"MD5\" CREATED=\"2016-03-01T12:00:00Z\"><METS:FLocat LOCTYPE=\"OTHER\" OTHERLOCTYPE=\"SYSTEM\"")
+				.append(" xlink:href=\"").append(seq).append(".txt\"/></METS:file>\n");
+		}
+		sb.append("    </METS:fileGrp>\n  </METS:fileSec>\n")
+			.append("  <METS:structMap ID=\"SM1\" TYPE=\"physical\">\n    <METS:div ID=\"DIV1\" TYPE=\"volume\">\n");
+		for (int p = 0; p < pages.length; p++) {
+			String seq = Tools.generateSequence(p + 1);
+			sb.append("      <METS:div ORDER=\"").append(p + 1).append("\" LABEL=\"").append(p == 0 ? "FRONT_COVER, IMAGE_ON_PAGE" : "")
+				.append("\" ORDERLABEL=\"").append(p + 1).append("\" TYPE=\"page\"><METS:fptr FILEID=\"IMG").append(seq)
+				.append("\"/><METS:fptr FILEID=\"TXT").append(seq).append("\"/></METS:div>\n");
+		}
+		sb.append("    </METS:div>\n  </METS:structMap>\n</METS:mets>\n");
+		return sb.toString();
+	}
+
+	// writes the zip and METS files of a volume of numPages pages into dir, named as in the pairtree, e.g., 39015012345678.zip and
+	// 39015012345678.mets.xml
+	public static Volume writeVolume(File dir, String volumeId, int numPages, int avgPageBytes, Random random)
+			throws IOException, NoSuchAlgorithmException {
+		// the pairtree clean form of the id part of the volume id, for the characters used in volumeId()
+		String fileName = volumeId.substring(volumeId.indexOf('.') + 1).replace(':', '+').replace('/', '=').replace('.', ',');
+		byte[][] pages = pages(numPages, avgPageBytes, random);
+		File zipFile = new File(dir, fileName + ".zip");
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zipFile))) {
+			for (int p = 0; p < pages.length; p++) {
+				zos.putNextEntry(new ZipEntry(fileName + "/" + Tools.generateSequence(p + 1) + ".txt"));
+				zos.write(pages[p]);
+				zos.closeEntry();
+			}
+		}
+		File metsFile = new File(dir, fileName + ".mets.xml");
+		try (OutputStream os = new FileOutputStream(metsFile)) {
+			os.write(mets(volumeId, pages).getBytes(StandardCharsets.UTF_8));
+		}
+		return new Volume(volumeId, zipFile, metsFile, pages);
+	}
+
+	// a MARC record, as a single line of json, of the kind found in the HathiTrust MARC dumps
+	@SuppressWarnings("unchecked")
+	public static String marcJson(String volumeId, Random random) {
+		StringBuilder sb = new StringBuilder(4096);
+		sb.append("{\"leader\":\"01774cam a2200421 a 4500\",\"fields\":[")
+			.append("{\"001\":\"").append(String.format("%09d", random.nextInt(1000000000))).append("\"},")
+			.append("{\"003\":\"MiAaHDL\"},{\"005\":\"20180724000000.0\"},{\"006\":\"m     o  d        \"},{\"007\":\"cr bn ---auaua\"},")
+			.append("{\"008\":\"880715s").append(1850 + random.nextInt(120)).append("    enk           000 0 eng d\"},")
+			.append("{\"010\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"a\":\"   0").append(random.nextInt(9999999)).append(" \"}]}},")
+			.append("{\"020\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"a\":\"978").append(String.format("%010d", Math.abs(random.nextLong()) % 10000000000L)).append("\"}]}},")
+			.append("{\"035\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"a\":\"(OCoLC)").append(random.nextInt(99999999)).append("\"}]}},")
+			.append("{\"035\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"a\":\"(MiU)").append(random.nextInt(99999999)).append("\"}]}},")
+			.append("{\"040\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"a\":\"DLC\"},{\"c\":\"DLC\"},{\"d\":\"MiU\"}]}},")
+			.append("{\"100\":{\"ind1\":\"1\",\"ind2\":\" \",\"subfields\":[{\"a\":\"Smith, John,\"},{\"d\":\"1840-1910.\"}]}},")
+			.append("{\"245\":{\"ind1\":\"1\",\"ind2\":\"2\",\"subfields\":[{\"a\":\"A history of the county of \"},{\"b\":\"its government and people /\"},{\"c\":\"by John Smith.\"}]}},")
+			.append("{\"260\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"a\":\"London :\"},{\"b\":\"Longmans, Green,\"},{\"c\":\"1887.\"}]}},")
+			.append("{\"300\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"a\":\"xii, 456 p. :\"},{\"b\":\"ill., maps ;\"},{\"c\":\"23 cm.\"}]}},")
+			.append("{\"505\":{\"ind1\":\"0\",\"ind2\":\" \",\"subfields\":[{\"a\":\"");
+		for (int c = 1; c <= 24; c++) {
+			sb.append("Chapter ").append(c).append(". ").append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+				.append(WORDS[random.nextInt(WORDS.length)]).append(" -- ");
+		}
+		sb.append("Index.\"}]}},");
+		for (int s = 0; s < 6; s++) {
+			sb.append("{\"650\":{\"ind1\":\" \",\"ind2\":\"0\",\"subfields\":[{\"a\":\"").append(WORDS[random.nextInt(WORDS.length)])
+				.append("\"},{\"x\":\"History\"},{\"y\":\"19th century.\"}]}},");
+		}
+		sb.append("{\"700\":{\"ind1\":\"1\",\"ind2\":\" \",\"subfields\":[{\"a\":\"Jones, Mary,\"},{\"d\":\"1850-1920.\"}]}},")
+			.append("{\"974\":{\"ind1\":\" \",\"ind2\":\" \",\"subfields\":[{\"b\":\"MIU\"},{\"c\":\"MIU\"},{\"d\":\"20180724\"},{\"s\":\"google\"},")
+			.append("{\"u\":\"").append(JSONObject.escape(volumeId)).append("\"},{\"y\":\"1887\"},{\"r\":\"pd\"},{\"q\":\"bib\"},{\"t\":\"US bib date1 < 1923\"}]}}")
+			.append("]}");
+		return sb.toString();
+	}
+
+	public static File createTempDir(String prefix) throws IOException {
+		return Files.createTempDirectory(prefix).toFile();
+	}
+
+	public static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}
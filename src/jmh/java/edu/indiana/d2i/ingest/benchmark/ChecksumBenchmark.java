@@ -0,0 +1,71 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.indiana.d2i.ingest.util.PageBuffer;
+import edu.indiana.d2i.ingest.util.Tools;
+
+/*
+ * Benchmarks of the checksum of a single page: a new MessageDigest per page, as before Tools.getMessageDigest, Tools.calculateChecksum over a
+ * buffered page, and the checksum computed while the page is read into a PageBuffer, as done by PageVerifier.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+	@Param({"1024", "2048", "8192"})
+	public int pageBytes;
+
+	@Param({"MD5"})
+	public String algorithm;
+
+	private byte[] page;
+
+	@Setup
+	public void setup() {
+		page = BenchmarkFixtures.pages(1, pageBytes, new Random(BenchmarkFixtures.SEED))[0];
+	}
+
+	@Benchmark
+	public String legacyChecksum() throws NoSuchAlgorithmException {
+		MessageDigest digest = MessageDigest.getInstance(algorithm);
+		digest.update(page);
+		StringBuilder checksumBuilder = new StringBuilder();
+		for (byte bite : digest.digest()) {
+			checksumBuilder.append(Tools.byteToHex(bite));
+		}
+		return checksumBuilder.toString();
+	}
+
+	@Benchmark
+	public String calculateChecksum() throws NoSuchAlgorithmException {
+		return Tools.calculateChecksum(page, algorithm);
+	}
+
+	@Benchmark
+	public String readAndChecksum() throws NoSuchAlgorithmException, IOException {
+		MessageDigest digest = Tools.getMessageDigest(algorithm);
+		PageBuffer.get().readFrom(new ByteArrayInputStream(page), page.length, digest);
+		return Tools.checksumToString(digest.digest());
+	}
+}
@@ -0,0 +1,102 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.indiana.d2i.ingest.util.Tools;
+
+/*
+ * Benchmarks of the per-page formatting done during ingest: the hexadecimal encoding of page checksums, and the zero-padded page sequences.
+ * The legacy* benchmarks are copies of the code that was used before Tools.toHex and Tools.generateSequence. Run with "-prof gc" to compare the
+ * allocation per page (gc.alloc.rate.norm), e.g.,
+ *   java -cp target/htrc-cassandra-ingester-jar-with-dependencies.jar org.openjdk.jmh.Main FormattingBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+	static final char[] hexDigit = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+	static final int SEQUENCE_LENGTH = 8;
+
+	@Param({"MD5", "SHA-1"})
+	public String algorithm;
+
+	// page orders of a typical run of volumes, most of which have a few hundred pages
+	private int[] orders;
+	private int nextOrder = 0;
+	private byte[] checksumBytes;
+
+	@Setup
+	public void setup() throws NoSuchAlgorithmException {
+		Random random = new Random(42);
+		orders = new int[1024];
+		for (int i = 0; i < orders.length; i++) {
+			orders[i] = 1 + random.nextInt(800);
+		}
+		byte[] page = new byte[2048];
+		random.nextBytes(page);
+		checksumBytes = MessageDigest.getInstance(algorithm).digest(page);
+	}
+
+	private int nextOrder() {
+		int order = orders[nextOrder];
+		nextOrder = (nextOrder + 1) & (orders.length - 1);
+		return order;
+	}
+
+	@Benchmark
+	public String legacyChecksumHex() {
+		StringBuilder checksumBuilder = new StringBuilder();
+		for (byte bite : checksumBytes) {
+			checksumBuilder.append(legacyByteToHex(bite));
+		}
+		return checksumBuilder.toString();
+	}
+
+	@Benchmark
+	public String checksumHex() {
+		return Tools.toHex(checksumBytes);
+	}
+
+	@Benchmark
+	public String legacyGenerateSequence() {
+		String orderString = Integer.toString(nextOrder());
+		StringBuilder sequenceBuilder = new StringBuilder();
+
+		int digitCount = orderString.length();
+		for (int i = digitCount; i < SEQUENCE_LENGTH; i++) {
+			sequenceBuilder.append('0');
+		}
+		sequenceBuilder.append(orderString);
+		return sequenceBuilder.toString();
+	}
+
+	@Benchmark
+	public String generateSequence() {
+		return Tools.generateSequence(nextOrder());
+	}
+
+	private static char[] legacyByteToHex(byte bite) {
+		char[] hexByteChars = new char[2];
+		hexByteChars[0] = hexDigit[(int)(bite & 0xFF) / 16];
+		hexByteChars[1] = hexDigit[(int)(bite & 0xFF) % 16];
+		return hexByteChars;
+	}
+}
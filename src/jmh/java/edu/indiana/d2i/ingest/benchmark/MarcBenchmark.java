@@ -0,0 +1,86 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.indiana.d2i.ingest.cassandra.MarcProcessor;
+import edu.indiana.d2i.ingest.cassandra.MarcVolumeIdScanner;
+import edu.indiana.d2i.ingest.solr.MarcJsonParser;
+
+/*
+ * Benchmarks of processing the lines of a MARC json file: parsing a line into json, extracting the volume id from the parsed record, as
+ * MarcProcessor and SolrMetadtaIngester did for every line, finding the volume id without parsing, with MarcVolumeIdScanner, as they do
+ * now, and extracting the Solr fields with MarcJsonParser.parse. Each benchmark processes the next of a fixed set of records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarcBenchmark {
+	private static final int NUM_RECORDS = 256;
+
+	private String[] lines;
+	private JSONObject[] records;
+	private JSONParser parser;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws ParseException {
+		Random random = new Random(BenchmarkFixtures.SEED);
+		String[] volumeIds = BenchmarkFixtures.volumeIds(NUM_RECORDS);
+		lines = new String[NUM_RECORDS];
+		records = new JSONObject[NUM_RECORDS];
+		parser = new JSONParser();
+		for (int i = 0; i < NUM_RECORDS; i++) {
+			lines[i] = BenchmarkFixtures.marcJson(volumeIds[i], random);
+			records[i] = (JSONObject) parser.parse(lines[i]);
+		}
+	}
+
+	private int next() {
+		int i = next;
+		next = (next + 1) % NUM_RECORDS;
+		return i;
+	}
+
+	@Benchmark
+	public Object parseLine() throws ParseException {
+		return parser.parse(lines[next()]);
+	}
+
+	@Benchmark
+	public String getVolumeIdFromMarc() {
+		return MarcProcessor.getVolumeIdFromMarc(records[next()]);
+	}
+
+	@Benchmark
+	public String parseLineAndGetVolumeId() throws ParseException {
+		return MarcProcessor.getVolumeIdFromMarc((JSONObject) parser.parse(lines[next()]));
+	}
+
+	@Benchmark
+	public String scanVolumeId() {
+		return MarcVolumeIdScanner.getVolumeId(lines[next()]);
+	}
+
+	@Benchmark
+	public Object marcJsonParserParse() {
+		return MarcJsonParser.parse(records[next()]);
+	}
+}
@@ -0,0 +1,109 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.indiana.d2i.ingest.util.METSParser;
+
+/*
+ * Comparison of the ways of reading the attributes of the elements of large METS files: collecting the attributes of every element into a
+ * HashMap, as METSParser did, and looking up the attributes by index with METSParser.getAttributeValue. Both benchmarks stream through the
+ * whole METS file, held in memory, and read the attributes that METSParser uses from every element; run with -prof gc to compare the
+ * allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetsAttributeBenchmark {
+	private static final QName[] ATTRIBUTES = {
+		METSParser.QN_ATTR_FILEGRP_USE,
+		METSParser.QN_ATTR_FILE_ID,
+		METSParser.QN_ATTR_FILE_SIZE,
+		METSParser.QN_ATTR_FILE_SEQ,
+		METSParser.QN_ATTR_FILE_CHECKSUM,
+		METSParser.QN_ATTR_FILE_CHECKSUMTYPE,
+		METSParser.QN_ATTR_FLOCAT_XLINKHREF,
+		METSParser.QN_ATTR_DIV_ORDER,
+		METSParser.QN_ATTR_DIV_LABEL,
+		METSParser.QN_ATTR_DIV_ORDERLABEL,
+		METSParser.QN_ATTR_FPTR_FILEID
+	};
+
+	@Param({"1000", "5000"})
+	public int numPages;
+
+	private byte[] metsBytes;
+	private XMLInputFactory factory;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(BenchmarkFixtures.SEED);
+		File dir = BenchmarkFixtures.createTempDir("mets-attribute-benchmark");
+		try {
+			File metsFile = BenchmarkFixtures.writeVolume(dir, BenchmarkFixtures.volumeId(0, random), numPages, 16, random).metsFile;
+			metsBytes = Files.readAllBytes(metsFile.toPath());
+		} finally {
+			BenchmarkFixtures.deleteRecursively(dir);
+		}
+		factory = METSParser.getXMLInputFactory();
+	}
+
+	@Benchmark
+	public void attributeMaps(Blackhole blackhole) throws XMLStreamException {
+		XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(metsBytes));
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+				blackhole.consume(reader.getName());
+				HashMap<QName, String> attributes = new HashMap<QName, String>();
+				int attributeCount = reader.getAttributeCount();
+				for (int i = 0; i < attributeCount; i++) {
+					attributes.put(reader.getAttributeName(i), reader.getAttributeValue(i));
+				}
+				for (QName attribute : ATTRIBUTES) {
+					blackhole.consume(attributes.get(attribute));
+				}
+			}
+		}
+		reader.close();
+	}
+
+	@Benchmark
+	public void attributeLookups(Blackhole blackhole) throws XMLStreamException {
+		XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(metsBytes));
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+				blackhole.consume(reader.getLocalName());
+				for (QName attribute : ATTRIBUTES) {
+					blackhole.consume(METSParser.getAttributeValue(reader, attribute));
+				}
+			}
+		}
+		reader.close();
+	}
+}
@@ -0,0 +1,80 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.indiana.d2i.ingest.util.CopyrightEnum;
+import edu.indiana.d2i.ingest.util.METSParser;
+import edu.indiana.d2i.ingest.util.METSParser.VolumeRecord;
+import edu.indiana.d2i.ingest.util.Tools;
+
+/*
+ * Benchmarks of parsing the METS file of a volume: METSParser.parse with the XMLInputFactory of the thread, METSParser.parse with a new
+ * XMLInputFactory per volume, as Tools.getVolumeRecord used to create, and Tools.getVolumeRecord, which is what the ingesters call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetsParserBenchmark {
+	@Param({"100", "400", "1000"})
+	public int numPages;
+
+	private File dir;
+	private String volumeId;
+	private File metsFile;
+	private XMLInputFactory factory;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(BenchmarkFixtures.SEED);
+		dir = BenchmarkFixtures.createTempDir("mets-benchmark");
+		volumeId = BenchmarkFixtures.volumeId(0, random);
+		metsFile = BenchmarkFixtures.writeVolume(dir, volumeId, numPages, 2048, random).metsFile;
+		factory = METSParser.getXMLInputFactory();
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkFixtures.deleteRecursively(dir);
+	}
+
+	@Benchmark
+	public VolumeRecord parse() throws Exception {
+		VolumeRecord volumeRecord = new VolumeRecord(volumeId);
+		volumeRecord.setCopyright(CopyrightEnum.PUBLIC_DOMAIN);
+		new METSParser(metsFile, volumeRecord, factory).parse();
+		return volumeRecord;
+	}
+
+	@Benchmark
+	public VolumeRecord parseWithNewFactory() throws Exception {
+		VolumeRecord volumeRecord = new VolumeRecord(volumeId);
+		volumeRecord.setCopyright(CopyrightEnum.PUBLIC_DOMAIN);
+		new METSParser(metsFile, volumeRecord, XMLInputFactory.newInstance()).parse();
+		return volumeRecord;
+	}
+
+	@Benchmark
+	public VolumeRecord getVolumeRecord() {
+		return Tools.getVolumeRecord(volumeId, metsFile);
+	}
+}
@@ -0,0 +1,88 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.indiana.d2i.ingest.Constants;
+import edu.indiana.d2i.ingest.util.VolumePaths;
+import gov.loc.repository.pairtree.Pairtree;
+
+/*
+ * Benchmarks of mapping volume ids to the names used to locate their files in the pairtree, which is done for every volume before its files
+ * are located: VolumePaths.resolve, and the legacy mapping of Tools.cleanId and Tools.getPairtreePath, which created a Pairtree and split
+ * the volume id in each of them, followed by the construction of the zip and METS file names. Each benchmark maps the next of up to millions
+ * of volume ids, so that the ids are not all in the CPU caches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PairtreeBenchmark {
+	@Param({"1024", "2000000"})
+	public int numVolumeIds;
+
+	private String[] volumeIds;
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		volumeIds = BenchmarkFixtures.volumeIds(numVolumeIds);
+	}
+
+	private String nextVolumeId() {
+		String volumeId = volumeIds[next];
+		next = (next + 1 == numVolumeIds) ? 0 : next + 1;
+		return volumeId;
+	}
+
+	@Benchmark
+	public void resolve(Blackhole blackhole) {
+		VolumePaths volumePaths = VolumePaths.resolve(nextVolumeId());
+		blackhole.consume(volumePaths.getPairtreePath());
+		blackhole.consume(volumePaths.getZipFileName());
+		blackhole.consume(volumePaths.getMetsFileName());
+	}
+
+	@Benchmark
+	public void legacy(Blackhole blackhole) {
+		String volumeId = nextVolumeId();
+		String cleanId = legacyCleanId(volumeId);
+		String pairtreePath = legacyGetPairtreePath(volumeId);
+		String cleanIdPart = cleanId.split("\\.", 2)[1];
+		blackhole.consume(pairtreePath);
+		blackhole.consume(cleanIdPart + Constants.VOLUME_ZIP_SUFFIX);
+		blackhole.consume(cleanIdPart + Constants.METS_XML_SUFFIX);
+	}
+
+	// Tools.getPairtreePath before VolumePaths
+	private static String legacyGetPairtreePath(String volID) {
+		Pairtree pt = new Pairtree();
+		StringBuilder basePathBuilder = new StringBuilder();
+		String[] parts = volID.split("\\.", 2);
+		String cleanIdPart = pt.cleanId(parts[1]);
+		basePathBuilder.append(parts[0]).append('/').append("pairtree_root");
+		return pt.mapToPPath(basePathBuilder.toString(), parts[1], cleanIdPart);
+	}
+
+	// Tools.cleanId before VolumePaths
+	private static String legacyCleanId(String id) {
+		Pairtree pt = new Pairtree();
+		String[] parts = id.split("\\.", 2);
+		String cleanIdPart = pt.cleanId(parts[1]);
+		return new StringBuilder(parts[0]).append(".").append(cleanIdPart).toString();
+	}
+}
@@ -0,0 +1,107 @@
+package edu.indiana.d2i.ingest.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.indiana.d2i.ingest.util.PageBuffer;
+import edu.indiana.d2i.ingest.util.VolumeArchive;
+
+/*
+ * Benchmarks of extracting the pages of a volume zip: sequential reading with ZipInputStream into a ByteArrayOutputStream, as the ingester
+ * did before VolumeArchive and PageBuffer, and reading through the central directory into a PageBuffer. The list* benchmarks measure reading
+ * only the names of the entries, as VolumeComparison does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipPageBenchmark {
+	@Param({"100", "400"})
+	public int numPages;
+
+	@Param({"2048"})
+	public int avgPageBytes;
+
+	private File dir;
+	private File zipFile;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(BenchmarkFixtures.SEED);
+		dir = BenchmarkFixtures.createTempDir("zip-benchmark");
+		zipFile = BenchmarkFixtures.writeVolume(dir, BenchmarkFixtures.volumeId(0, random), numPages, avgPageBytes, random).zipFile;
+	}
+
+	@TearDown
+	public void tearDown() {
+		BenchmarkFixtures.deleteRecursively(dir);
+	}
+
+	@Benchmark
+	public void zipInputStreamPages(Blackhole bh) throws IOException {
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
+			ZipEntry zipEntry;
+			byte[] buffer = new byte[32767];
+			while ((zipEntry = zis.getNextEntry()) != null) {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				int read;
+				while ((read = zis.read(buffer)) > 0) {
+					bos.write(buffer, 0, read);
+				}
+				bh.consume(new String(bos.toByteArray(), "utf-8"));
+			}
+		}
+	}
+
+	@Benchmark
+	public void volumeArchivePages(Blackhole bh) throws IOException {
+		PageBuffer pageBuffer = PageBuffer.get();
+		try (VolumeArchive volumeArchive = new VolumeArchive(zipFile)) {
+			for (ZipEntry zipEntry : volumeArchive.getEntries()) {
+				volumeArchive.readEntry(zipEntry, pageBuffer, avgPageBytes);
+				bh.consume(pageBuffer.decode());
+			}
+		}
+	}
+
+	@Benchmark
+	public void zipInputStreamList(Blackhole bh) throws IOException {
+		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
+			ZipEntry zipEntry;
+			while ((zipEntry = zis.getNextEntry()) != null) {
+				bh.consume(zipEntry.getName());
+			}
+		}
+	}
+
+	@Benchmark
+	public void volumeArchiveList(Blackhole bh) throws IOException {
+		try (VolumeArchive volumeArchive = new VolumeArchive(zipFile)) {
+			for (ZipEntry zipEntry : volumeArchive.getEntries()) {
+				bh.consume(zipEntry.getName());
+			}
+		}
+	}
+}
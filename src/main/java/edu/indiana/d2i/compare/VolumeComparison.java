@@ -1,8 +1,6 @@
 package edu.indiana.d2i.compare;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -12,23 +10,26 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.NoNodeAvailableException;
+import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
-import com.datastax.oss.driver.api.core.cql.SimpleStatement;
 
 import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.cassandra.CassandraManager;
+import edu.indiana.d2i.ingest.source.VolumeFiles;
+import edu.indiana.d2i.ingest.source.VolumeSource;
+import edu.indiana.d2i.ingest.source.VolumeSources;
 import edu.indiana.d2i.ingest.util.Configuration;
 import edu.indiana.d2i.ingest.util.METSParser.VolumeRecord;
 import edu.indiana.d2i.ingest.util.METSParser.VolumeRecord.PageRecord;
 import edu.indiana.d2i.ingest.util.Tools;
+import edu.indiana.d2i.ingest.util.VolumeArchive;
 
 // VolumeComparison
 // this class compares the page sequences of a volume if it exists in Cassandra, with the 
@@ -42,6 +43,8 @@ public class VolumeComparison {
 	private PrintWriter pwNewZipSamePages;
 	private CassandraManager cassandraManager;
 	private String columnFamilyName;
+	// the roots from which the zip and METS files of volumes are read (VOLUME_ROOTS)
+	private VolumeSource volumeSource;
 	
 	private long totalTimeForSelects = 0;
 
@@ -59,6 +62,7 @@ public class VolumeComparison {
 	public VolumeComparison() {
 		cassandraManager = CassandraManager.getInstance();
 		columnFamilyName = Configuration.getProperty(Constants.PK_VOLUME_TEXT_COLUMN_FAMILY);
+		volumeSource = VolumeSources.fromConfiguration();
 		if (!cassandraManager.checkTableExist(columnFamilyName)) {
 			System.out.println("Table " + columnFamilyName + "does not exist; creating table");
 		}
@@ -75,20 +79,15 @@ public class VolumeComparison {
 	public boolean compareNewZipWithExistingVolume(String volumeId) {
 		if(volumeId == null || volumeId.equals("")) return false;
 		
-		String cleanId = Tools.cleanId(volumeId);
-		String pairtreePath = Tools.getPairtreePath(volumeId);
-		
-		String cleanIdPart = cleanId.split("\\.", 2)[1];
-		String zipFileName = cleanIdPart  + Constants.VOLUME_ZIP_SUFFIX; // e.g.: ark+=13960=t02z18p54.zip
-		String metsFileName = cleanIdPart + Constants.METS_XML_SUFFIX; // e.g.: ark+=13960=t02z18p54.mets.xml
 		/*
-		 *  get the zip file and mets file for this volume id based on relative path(leafPath) and zipFileName or metsFileName
+		 *  get the zip file and mets file for this volume id from the configured volume roots
 		 *  e.g.: /hathitrustmnt/silvermaple/ingester-data/full_set/loc/pairtree_root/ar/k+/=1/39/60/=t/8h/d8/d9/4r/ark+=13960=t8hd8d94r/ark+=13960=t8hd8d94r.zip
 		 *  /hathitrustmnt/silvermaple/ingester-data/full_set/loc/pairtree_root/ar/k+/=1/39/60/=t/8h/d8/d9/4r/ark+=13960=t8hd8d94r/ark+=13960=t8hd8d94r.mets.xml
 		 */
-		File volumeZipFile = Tools.getFileFromPairtree(pairtreePath, zipFileName);
-		File volumeMetsFile = Tools.getFileFromPairtree(pairtreePath, metsFileName);
-		if(volumeZipFile == null || volumeMetsFile == null || !volumeZipFile.exists() || !volumeMetsFile.exists()) {
+		VolumeFiles volumeFiles = volumeSource.locate(volumeId);
+		File volumeZipFile = volumeFiles.getZipFile();
+		File volumeMetsFile = volumeFiles.getMetsFile();
+		if(!volumeFiles.isComplete()) {
 			log.error("zip file or mets file does not exist for " + volumeId);
 			return false;
 		}
@@ -113,11 +112,10 @@ public class VolumeComparison {
 
 		// determine the page sequences of the volume if it already exists in the
 		// database
-		SimpleStatement selectPageSeqStmt
-			= SimpleStatement.newInstance("SElECT sequence FROM " + columnFamilyName +
-																		" WHERE volumeid = ?", volumeId);		
 		Set<String> existingPageSequences = Collections.emptySet();
 		try {
+			BoundStatement selectPageSeqStmt = cassandraManager.prepare("SElECT sequence FROM " + columnFamilyName +
+																		" WHERE volumeid = ?").bind(volumeId);
 			long startTime = System.nanoTime();
 			ResultSet result = cassandraManager.executeWithoutRetry(selectPageSeqStmt.setConsistencyLevel(ConsistencyLevel.ONE));
 			long endTime = System.nanoTime();
@@ -139,9 +137,9 @@ public class VolumeComparison {
 			return ComparePagesResult.SUCCESS;
 		}
 		int i=0;
-		try {
-			ZipInputStream zis = new ZipInputStream(new FileInputStream(volumeZipFile));
-			ZipEntry zipEntry = null;
+		// only the names of the entries are needed, which are read from the central directory of the zip file, without inflating any
+		// page contents
+		try (VolumeArchive volumeArchive = new VolumeArchive(volumeZipFile)) {
 			// keep track of the pages in the ZIP file, to compare later against
 			// the pages in the METS file
 			Set<String> pagesInZipFile = new HashSet<String>();
@@ -150,7 +148,7 @@ public class VolumeComparison {
 			// database
 			Set<String> newPageSequences = new HashSet<String>();
 
-			while((zipEntry = zis.getNextEntry()) != null) {
+			for (ZipEntry zipEntry : volumeArchive.getEntries()) {
 				String entryName = zipEntry.getName();
 				String entryFilename = extractEntryFilename(entryName);
 				PageRecord pageRecord = volumeRecord.getPageRecordByFilename(entryFilename);
@@ -188,16 +186,15 @@ public class VolumeComparison {
 */					
 					// get 8-digit sequence for this page
 					int order = pageRecord.getOrder();
-					String sequence = generateSequence(order);
+					String sequence = Tools.generateSequence(order);
 					pageRecord.setSequence(sequence);
 										
 					pagesInZipFile.add(entryFilename);
 					newPageSequences.add(pageRecord.getSequence());
 					i++;
 				}
-			} // end of while loop
+			} // end of for loop
 			
-			zis.close();				
 			if (i == 0) {
 				log.error("Cannot get entry from ZIP (zip file is probably empty) " + volumeZipFile.getAbsolutePath());
 				if(!volumeRecord.getPageFilenameSet().isEmpty()) {
@@ -256,25 +253,6 @@ public class VolumeComparison {
 		log.info(msg, ls.get(0), ls.get(ls.size() - 1));
 	}
 
-	private byte[] readPagecontentsFromInputStream(ZipInputStream zis) {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		int read = -1;
-		byte[] buffer = new byte[32767];
-		try {
-			while((read = zis.read(buffer)) > 0) {
-				bos.write(buffer, 0, read);
-			}
-		} catch (IOException e) {
-			log.error("error reading zip stream" + e.getMessage());
-		}
-		try {
-			bos.close();
-		} catch (IOException e) {
-			log.error("IOException while attempting to close ByteArrayOutputStream()" + e.getMessage());
-		}
-		return bos.toByteArray();
-	}
-
 	/**
      * Method to extract the filename from a ZipEntry name
      * @param entryName name of a ZipEntry
@@ -285,30 +263,12 @@ public class VolumeComparison {
         return entryName.substring(lastIndex + 1);
     }
     
-    static final int SEQUENCE_LENGTH = 8;
-    
-    /**
-     * Method to generate a fixed-length zero-padded page sequence number
-     * @param order the ordering of a page
-     * @return a fixed-length zero-padded page sequence number based on the ordering
-     */
-    protected String generateSequence(int order) {
-        String orderString = Integer.toString(order);
-        StringBuilder sequenceBuilder = new StringBuilder();
-        
-        int digitCount = orderString.length();
-        for (int i = digitCount; i < SEQUENCE_LENGTH; i++) {
-            sequenceBuilder.append('0');
-        }
-        sequenceBuilder.append(orderString);
-        return sequenceBuilder.toString();
-    }
-    
     public long getTotalTimeForSelects() {
     	return this.totalTimeForSelects;
     }
     
     public void close() {
+    	volumeSource.shutdown();
     	pwEmptyZip.flush();
     	pwEmptyZip.close();
     	pwNewZipFewerPages.flush();
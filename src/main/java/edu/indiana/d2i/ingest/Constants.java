@@ -23,6 +23,34 @@ public class Constants {
 	public static final String PK_REDIS_AVAIL_STATUS_HASH_FIELD_NAME="REDIS-AVAIL_STATUS-HASH-FIELD-NAME";
 	public static final String PK_REDIS_NUM_HGETS_PER_PIPELINE="REDIS-NUM-HGETS-PER-PIPELINE";
 	public static final String PK_REDIS_NUM_HSETS_PER_PIPELINE="REDIS-NUM-HSETS-PER-PIPELINE";
+	public static final String PK_CASSANDRA_INGEST_WORKERS = "CASSANDRA_INGEST_WORKERS";
+	public static final String PK_CASSANDRA_INGEST_QUEUE_CAPACITY = "CASSANDRA_INGEST_QUEUE_CAPACITY";
+	public static final String PK_CASSANDRA_MAX_IN_FLIGHT_PER_NODE = "CASSANDRA_MAX_IN_FLIGHT_PER_NODE";
+	public static final String PK_CASSANDRA_PAGE_WRITE_MODE = "CASSANDRA_PAGE_WRITE_MODE";
+	public static final String PK_CASSANDRA_MAX_BATCH_BYTES = "CASSANDRA_MAX_BATCH_BYTES";
+	public static final String PK_CASSANDRA_PAGE_VERIFY_THREADS = "CASSANDRA_PAGE_VERIFY_THREADS";
+	public static final String PK_METRICS_REPORT_INTERVAL_SECONDS = "METRICS_REPORT_INTERVAL_SECONDS";
+	public static final String PK_METRICS_JMX_ENABLED = "METRICS_JMX_ENABLED";
+	public static final String PK_PAIRTREE_PREFETCH_THREADS = "PAIRTREE_PREFETCH_THREADS";
+	public static final String PK_PAIRTREE_PREFETCH_VOLUMES = "PAIRTREE_PREFETCH_VOLUMES";
+	public static final String PK_VOLUME_ROOTS = "VOLUME_ROOTS";
+	public static final String PK_VOLUME_CACHE_DIR = "VOLUME_CACHE_DIR";
+	public static final String PK_VOLUME_CACHE_MAX_MB = "VOLUME_CACHE_MAX_MB";
+	public static final String PK_READ_AHEAD_THREADS = "READ_AHEAD_THREADS";
+	public static final String PK_READ_AHEAD_VOLUMES = "READ_AHEAD_VOLUMES";
+	public static final String PK_READ_AHEAD_MAX_MB = "READ_AHEAD_MAX_MB";
+	public static final String PK_VOLUME_ID_LIST_DEDUP = "VOLUME_ID_LIST_DEDUP";
+	public static final String PK_INGEST_CHECKPOINT_FILE = "INGEST_CHECKPOINT_FILE";
+	public static final String PK_INGEST_CHECKPOINT_SYNC_SECONDS = "INGEST_CHECKPOINT_SYNC_SECONDS";
+	public static final String PK_MARC_SCAN_THREADS = "MARC-SCAN-THREADS";
+	public static final String PK_MARC_SCAN_CHUNK_MB = "MARC-SCAN-CHUNK-MB";
+	public static final String PK_MARC_SCAN_QUEUE_CAPACITY = "MARC-SCAN-QUEUE-CAPACITY";
+	public static final String PK_MARC_INDEX_DIR = "MARC-INDEX-DIR";
+	public static final String PK_MARC_INDEX_MAX_VOLUMES = "MARC-INDEX-MAX-VOLUMES";
+	public static final String PK_COLUMN_INGEST_MAX_IN_FLIGHT = "COLUMN_INGEST_MAX_IN_FLIGHT";
+	public static final String PK_COLUMN_INGEST_EXISTING_VOLUME_IDS = "COLUMN_INGEST_EXISTING_VOLUME_IDS";
+	public static final String PK_COLUMN_INGEST_EXISTING_VOLUMES_FROM = "COLUMN_INGEST_EXISTING_VOLUMES_FROM";
+	public static final String PK_COLUMN_INGEST_EXISTING_VOLUMES_SCAN_THREADS = "COLUMN_INGEST_EXISTING_VOLUMES_SCAN_THREADS";
 
 	// default values
 	public static final String DEFAULT_VOLUME_TEXT_COLUMN_FAMILY = "VolumeContents";
@@ -42,8 +70,36 @@ public class Constants {
 	public static final String DEFAULT_REDIS_AVAIL_STATUS_HASH_FIELD_NAME="avail-status";
 	public static final String DEFAULT_REDIS_NUM_HGETS_PER_PIPELINE="1000";
 	public static final String DEFAULT_REDIS_NUM_HSETS_PER_PIPELINE="1000";
+	public static final String DEFAULT_CASSANDRA_INGEST_WORKERS = "4";
+	public static final String DEFAULT_CASSANDRA_INGEST_QUEUE_CAPACITY = "100";
+	public static final String DEFAULT_CASSANDRA_MAX_IN_FLIGHT_PER_NODE = "16";
+	public static final String DEFAULT_CASSANDRA_PAGE_WRITE_MODE = "logged";
+	public static final String DEFAULT_CASSANDRA_MAX_BATCH_BYTES = "40960";
+	public static final String DEFAULT_CASSANDRA_PAGE_VERIFY_THREADS = "0";
+	public static final String DEFAULT_METRICS_REPORT_INTERVAL_SECONDS = "60";
+	public static final String DEFAULT_METRICS_JMX_ENABLED = "true";
+	public static final String DEFAULT_PAIRTREE_PREFETCH_THREADS = "4";
+	public static final String DEFAULT_PAIRTREE_PREFETCH_VOLUMES = "64";
+	public static final String DEFAULT_VOLUME_ROOTS = Constants.ROOT_PATH;
+	public static final String DEFAULT_VOLUME_CACHE_DIR = "";
+	public static final String DEFAULT_VOLUME_CACHE_MAX_MB = "102400";
+	public static final String DEFAULT_READ_AHEAD_THREADS = "4";
+	public static final String DEFAULT_READ_AHEAD_VOLUMES = "32";
+	public static final String DEFAULT_READ_AHEAD_MAX_MB = "1024";
+	public static final String DEFAULT_VOLUME_ID_LIST_DEDUP = "false";
+	public static final String DEFAULT_INGEST_CHECKPOINT_FILE = "";
+	public static final String DEFAULT_INGEST_CHECKPOINT_SYNC_SECONDS = "5";
+	public static final String DEFAULT_MARC_SCAN_THREADS = "0";
+	public static final String DEFAULT_MARC_SCAN_CHUNK_MB = "64";
+	public static final String DEFAULT_MARC_SCAN_QUEUE_CAPACITY = "1024";
+	public static final String DEFAULT_MARC_INDEX_DIR = "";
+	public static final String DEFAULT_MARC_INDEX_MAX_VOLUMES = "10000";
+	public static final String DEFAULT_COLUMN_INGEST_MAX_IN_FLIGHT = "256";
+	public static final String DEFAULT_COLUMN_INGEST_EXISTING_VOLUME_IDS = "";
+	public static final String DEFAULT_COLUMN_INGEST_EXISTING_VOLUMES_FROM = "";
+	public static final String DEFAULT_COLUMN_INGEST_EXISTING_VOLUMES_SCAN_THREADS = "8";
 	
-	// some constants to locate randomly distributed volume zip and mets files
+	// some constants to locate randomly distributed volume zip and mets files; ROOT_PATH is the default of VOLUME_ROOTS
 	public static final String ROOT_PATH = "/N/project/htrc/data/ht_text"; // after move from DC2 to slatel; used for the new cluster 
 																		   // (hts7 - hts12)
 	// public static final String ROOT_PATH = "/N/slate/drhtrc/data/ht_text"; // temporary move due to slowness of /N/project; used 
@@ -0,0 +1,162 @@
+package edu.indiana.d2i.ingest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/*
+ * Class that records which volumes of a volume id list have been ingested, so that an ingest that is stopped, or crashes, can be resumed
+ * without ingesting the same volumes again. The checkpoint is a memory-mapped file holding one bit per position in the volume id list, set
+ * once the volume at that position has been ingested successfully; failed volumes are tried again when the ingest is resumed. Bits are set
+ * by read-modify-write of the 64-bit word that holds them, under one of NUM_LOCKS striped locks, so that the workers of IngestWorkerPool do
+ * not contend on a single lock, and the file is written to disk every syncIntervalSeconds, if bits were set, and when it is closed. A crash
+ * loses at most the last syncIntervalSeconds of progress, whose volumes are ingested again.
+ *
+ * The file starts with a header that identifies the volume id list by its length and modification time, and records whether duplicate ids
+ * are skipped (VOLUME_ID_LIST_DEDUP), since positions count the ids as they are handed to IngestWorkerPool, after duplicates are skipped;
+ * if the list or the skipping of duplicates has changed since the checkpoint was written, the checkpoint is discarded. The number of bits is
+ * fixed when the file is created, at half the length of the list in bytes, which is at least the number of ids in it, since every id takes
+ * at least one character and a line break.
+ */
+public class IngestCheckpoint {
+	private static Logger log = LogManager.getLogger(IngestCheckpoint.class);
+
+	private static final long MAGIC = 0x4854524343484b32L; // "HTRCCHK2"
+	private static final int HEADER_SIZE = 40;
+	private static final int NUM_LOCKS = 64;
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer buffer;
+	private final long numBits;
+	private final Object[] locks = new Object[NUM_LOCKS];
+	private final AtomicBoolean dirty = new AtomicBoolean(false);
+	private final ScheduledExecutorService syncExecutor;
+
+	private IngestCheckpoint(File file, RandomAccessFile randomAccessFile, MappedByteBuffer buffer, long numBits, long syncIntervalSeconds) {
+		this.file = file;
+		this.randomAccessFile = randomAccessFile;
+		this.buffer = buffer;
+		this.numBits = numBits;
+		for (int i = 0; i < NUM_LOCKS; i++) {
+			locks[i] = new Object();
+		}
+		this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ingest-checkpoint-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.syncExecutor.scheduleWithFixedDelay(this::sync, syncIntervalSeconds, syncIntervalSeconds, TimeUnit.SECONDS);
+	}
+
+	// opens the checkpoint of the given volume id list, whose duplicate ids are skipped if dedup is set, resuming from it if it was written
+	// for the same list and the same value of dedup, or creating it otherwise
+	public static IngestCheckpoint open(File checkpointFile, File volumeIdList, boolean dedup, long syncIntervalSeconds) throws IOException {
+		long listLength = volumeIdList.length();
+		long listModified = volumeIdList.lastModified();
+		long listOptions = dedup ? 1 : 0;
+		// rounded up to whole 64-bit words
+		long numBits = ((listLength / 2 + 63) / 64) * 64;
+		long size = HEADER_SIZE + numBits / 8;
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("volume id list " + volumeIdList + " is too large for a checkpoint");
+		}
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(checkpointFile, "rw");
+		try {
+			boolean resume = false;
+			if (randomAccessFile.length() > 0) {
+				resume = randomAccessFile.length() == size && randomAccessFile.readLong() == MAGIC && randomAccessFile.readLong() == listLength
+						&& randomAccessFile.readLong() == listModified && randomAccessFile.readLong() == numBits
+						&& randomAccessFile.readLong() == listOptions;
+				if (!resume) {
+					log.warn("checkpoint " + checkpointFile + " was written for a different volume id list, or a different VOLUME_ID_LIST_DEDUP; starting over");
+				}
+			}
+			if (!resume) {
+				randomAccessFile.setLength(0);
+				randomAccessFile.setLength(size);
+			}
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			if (!resume) {
+				buffer.putLong(0, MAGIC);
+				buffer.putLong(8, listLength);
+				buffer.putLong(16, listModified);
+				buffer.putLong(24, numBits);
+				buffer.putLong(32, listOptions);
+				buffer.force();
+			}
+			IngestCheckpoint checkpoint = new IngestCheckpoint(checkpointFile, randomAccessFile, buffer, numBits, Math.max(1, syncIntervalSeconds));
+			if (resume) {
+				log.info("resuming from checkpoint " + checkpointFile + ": " + checkpoint.countCompleted() + " volumes already ingested");
+			}
+			return checkpoint;
+		} catch (IOException | RuntimeException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	private static int wordOffset(long position) {
+		return HEADER_SIZE + (int) (position >>> 6) * 8;
+	}
+
+	// true if the volume at the given position of the list was ingested by this or an earlier run
+	public boolean isCompleted(long position) {
+		if (position < 0 || position >= numBits) {
+			return false;
+		}
+		return (buffer.getLong(wordOffset(position)) & (1L << position)) != 0;
+	}
+
+	// records that the volume at the given position of the list was ingested; may be called from any thread
+	public void markCompleted(long position) {
+		if (position < 0 || position >= numBits) {
+			return;
+		}
+		int offset = wordOffset(position);
+		synchronized (locks[(int) (position >>> 6) & (NUM_LOCKS - 1)]) {
+			buffer.putLong(offset, buffer.getLong(offset) | (1L << position));
+		}
+		dirty.set(true);
+	}
+
+	private long countCompleted() {
+		long count = 0;
+		for (long word = 0; word < numBits / 64; word++) {
+			count += Long.bitCount(buffer.getLong(HEADER_SIZE + (int) word * 8));
+		}
+		return count;
+	}
+
+	// writes the bits set since the last sync to disk
+	private void sync() {
+		if (dirty.getAndSet(false)) {
+			buffer.force();
+		}
+	}
+
+	public void close() {
+		syncExecutor.shutdown();
+		try {
+			syncExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sync();
+		try {
+			randomAccessFile.close();
+		} catch (IOException e) {
+			log.error("error while closing checkpoint " + file, e);
+		}
+	}
+}
@@ -2,7 +2,7 @@ package edu.indiana.d2i.ingest;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.List;
+import java.io.IOException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,86 +15,123 @@ import edu.indiana.d2i.ingest.redis.RedisClient;
 import edu.indiana.d2i.ingest.cassandra.CassandraPageTextIngester;
 import edu.indiana.d2i.ingest.solr.SolrMetadtaIngester;
 import edu.indiana.d2i.ingest.util.Configuration;
-import edu.indiana.d2i.ingest.util.Tools;
+import edu.indiana.d2i.ingest.util.IngestMetrics;
+import edu.indiana.d2i.ingest.util.VolumeIdReader;
 
 public class IngestService {
 	private static Logger log = LogManager.getLogger(IngestService.class);
 	public static void main(String[] args) {
-		log.info("load volume ids to ingest...");
-		List<String> volumesToIngest = Tools.getVolumeIds(new File(
-				Configuration.getProperty("VOLUME_ID_LIST")));
+		// report the ingest metrics periodically, while the ingest steps run
+		IngestMetrics.start();
+		IngestCheckpoint checkpoint = null;
+		boolean failed = false;
+		// the checkpoint, the metrics and the Cassandra session are closed even if a step fails, so that the process exits
+		try {
+			log.info("load volume ids to ingest...");
+			// the volume ids are streamed from the file by each step that uses them, rather than held in memory for the whole run
+			File volumeIdList = new File(Configuration.getProperty("VOLUME_ID_LIST"));
+			boolean dedup = Boolean.valueOf(Configuration.getProperty(Constants.PK_VOLUME_ID_LIST_DEDUP, Constants.DEFAULT_VOLUME_ID_LIST_DEDUP));
+			Iterable<String> volumesToIngest = new VolumeIdReader(volumeIdList, dedup);
 
-		RedisClient redisClient = null; // use the same instance of RedisClient for CassandraAccessLevelUpdater, RedisAvailStatusUpdater
+			RedisClient redisClient = null; // use the same instance of RedisClient for CassandraAccessLevelUpdater, RedisAvailStatusUpdater
 		
-		if (Boolean.valueOf(Configuration.getProperty("PUSH_TO_CASSANDRA"))) {
-			CassandraIngester ingester = new CassandraIngester();
+			if (Boolean.valueOf(Configuration.getProperty("PUSH_TO_CASSANDRA"))) {
+				CassandraIngester ingester = new CassandraIngester();
 			
-			// pass accessLevelUpdater as argument to CassandraPageTextIngester;
-			// call accessLevelUpdater.update(volumeId) after ingest of
-			// volumeId
-		//	ingester.addIngester(new CassandraPageTextIngester(accessLevelUpdater));
-			ingester.addIngester(new CassandraPageTextIngester());
-			log.info("page and zip ingest process starts");
-			ingester.ingest(volumesToIngest);
-			log.info("page and zip ingest process ends");
-		}
-		
-		if (Boolean.valueOf(Configuration.getProperty("PUSH_TO_SOLR"))) {
-			log.info("ingest metadata to solr...");
-			Ingester solrIngester = new SolrMetadtaIngester();
-			// For the ids of volumes successfully pushed into Cassandra, ingest
-			// their metadata into solr
-			// so this one does not take volumesToIngest in order for
-			// consistency with cassandra
-			List<String> successIngested = Tools.getVolumeIds(new File(
-					Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS")));
-			solrIngester.ingest(successIngested);
-			log.info("metadata ingest ends");
-		}
-
-		if (Boolean.valueOf(Configuration
-				.getProperty("UPDATE_MARC_TO_CASSANDRA"))) {
-			log.info("update marc...");
-			MarcProcessor marcProcessor = new MarcProcessor();
-			marcProcessor.process(volumesToIngest);
-			log.info("marc update ends");
-		}
+				// pass accessLevelUpdater as argument to CassandraPageTextIngester;
+				// call accessLevelUpdater.update(volumeId) after ingest of
+				// volumeId
+			//	ingester.addIngester(new CassandraPageTextIngester(accessLevelUpdater));
+				ingester.addIngester(new CassandraPageTextIngester());
+				checkpoint = openCheckpoint(volumeIdList, dedup);
+				ingester.setCheckpoint(checkpoint);
+				log.info("page and zip ingest process starts");
+				ingester.ingest(volumesToIngest);
+				log.info("page and zip ingest process ends");
+			}
 		
-		// the access level column is no longer present in the table
-/*		if(Boolean.valueOf(Configuration.getProperty("UPDATE_ACCESS_LEVEL_TO_CASSANDRA"))) {
-			log.info("update access level...");
-			if (redisClient == null) {
-				redisClient = new RedisClient();
+			if (Boolean.valueOf(Configuration.getProperty("PUSH_TO_SOLR"))) {
+				log.info("ingest metadata to solr...");
+				Ingester solrIngester = new SolrMetadtaIngester();
+				// For the ids of volumes successfully pushed into Cassandra, ingest
+				// their metadata into solr
+				// so this one does not take volumesToIngest in order for
+				// consistency with cassandra
+				Iterable<String> successIngested = new VolumeIdReader(new File(
+						Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS")));
+				solrIngester.ingest(successIngested);
+				log.info("metadata ingest ends");
 			}
-			Updater accessLevelUpdater = new CassandraAccessLevelUpdater(redisClient);
-			List<String> cassandraIngestedVolumes = Tools.getVolumeIds(new File(
-					Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS")));
-			List<String> updatSuccessList = accessLevelUpdater.update(cassandraIngestedVolumes);
-			try {
-				Tools.generateVolumeListFile(Configuration.getProperty("ACCESS_LEVEL_UPDATE_FAILURE_LIST"), updatSuccessList);
-			} catch (FileNotFoundException e) {
-				log.error("access level update output file exception", e);
+
+			if (Boolean.valueOf(Configuration
+					.getProperty("UPDATE_MARC_TO_CASSANDRA"))) {
+				log.info("update marc...");
+				MarcProcessor marcProcessor = new MarcProcessor();
+				marcProcessor.process(volumesToIngest);
+				log.info("marc update ends");
 			}
-			log.info("access level update ends ...");
-		}
-*/
-		if (Boolean.valueOf(Configuration.getProperty("UPDATE_AVAIL_STATUS_IN_REDIS"))) {
-			log.info("update availability status in redis ...");
-			if (redisClient == null) {
-				redisClient = new RedisClient();
+		
+			// the access level column is no longer present in the table
+	/*		if(Boolean.valueOf(Configuration.getProperty("UPDATE_ACCESS_LEVEL_TO_CASSANDRA"))) {
+				log.info("update access level...");
+				if (redisClient == null) {
+					redisClient = new RedisClient();
+				}
+				Updater accessLevelUpdater = new CassandraAccessLevelUpdater(redisClient);
+				List<String> cassandraIngestedVolumes = Tools.getVolumeIds(new File(
+						Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS")));
+				List<String> updatSuccessList = accessLevelUpdater.update(cassandraIngestedVolumes);
+				try {
+					Tools.generateVolumeListFile(Configuration.getProperty("ACCESS_LEVEL_UPDATE_FAILURE_LIST"), updatSuccessList);
+				} catch (FileNotFoundException e) {
+					log.error("access level update output file exception", e);
+				}
+				log.info("access level update ends ...");
 			}
-			RedisAvailStatusUpdater updater = new RedisAvailStatusUpdater(redisClient);
+	*/
+			if (Boolean.valueOf(Configuration.getProperty("UPDATE_AVAIL_STATUS_IN_REDIS"))) {
+				log.info("update availability status in redis ...");
+				if (redisClient == null) {
+					redisClient = new RedisClient();
+				}
+				RedisAvailStatusUpdater updater = new RedisAvailStatusUpdater(redisClient);
 			
-			List<String> cassandraIngestedVolumes = Tools.getVolumeIds(new File(
-					Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS")));
-			updater.setStatusToAvailable(cassandraIngestedVolumes);
+				Iterable<String> cassandraIngestedVolumes = new VolumeIdReader(new File(
+						Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS")));
+				updater.setStatusToAvailable(cassandraIngestedVolumes);
 			
-			// use the following for volumes deleted from Cassandra
-			// updater.setStatusToUnavailable(volumesToDelete);
+				// use the following for volumes deleted from Cassandra
+				// updater.setStatusToUnavailable(volumesToDelete);
 			
-			log.info("availability status update ends ...");
+				log.info("availability status update ends ...");
+			}
+		} catch (RuntimeException | Error e) {
+			log.error("ingest failed", e);
+			failed = true;
+		} finally {
+			if (checkpoint != null) {
+				checkpoint.close();
+			}
+			IngestMetrics.stop();
+			CassandraManager.shutdown();
+		}
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	// opens the checkpoint in INGEST_CHECKPOINT_FILE, if set, so that an ingest of the same volume id list that was stopped is resumed
+	private static IngestCheckpoint openCheckpoint(File volumeIdList, boolean dedup) {
+		String checkpointFile = Configuration.getProperty(Constants.PK_INGEST_CHECKPOINT_FILE, Constants.DEFAULT_INGEST_CHECKPOINT_FILE).trim();
+		if (checkpointFile.isEmpty()) {
+			return null;
+		}
+		long syncIntervalSeconds = Long.parseLong(Configuration.getProperty(Constants.PK_INGEST_CHECKPOINT_SYNC_SECONDS, Constants.DEFAULT_INGEST_CHECKPOINT_SYNC_SECONDS));
+		try {
+			return IngestCheckpoint.open(new File(checkpointFile), volumeIdList, dedup, syncIntervalSeconds);
+		} catch (IOException e) {
+			log.error("unable to open checkpoint " + checkpointFile + "; ingesting without it", e);
+			return null;
 		}
-				
-		CassandraManager.shutdown();
 	}
 }
@@ -0,0 +1,361 @@
+package edu.indiana.d2i.ingest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/*
+ * Class that ingests volumes concurrently, using a fixed number of worker threads. Volume ids are handed to the workers through a bounded
+ * queue, so that the caller blocks when the workers fall behind, and memory use does not grow with the length of the volume id list. Workers
+ * use Ingester.ingestOneAsync, and move on to the next volume while the writes of the previous one are in flight; the results of
+ * asynchronous ingests are recorded on a single results thread, rather than on the threads of the Cassandra driver that complete them. Each
+ * worker records the ids of successfully ingested volumes, and the ids of volumes whose ingest failed, in its own pair of files; once all
+ * volumes have been processed, the per-worker files are concatenated into the given success and failure files. If an IngestCheckpoint is
+ * given, volumes are identified by their position in the volume id list: volumes that the checkpoint records as ingested are skipped, and
+ * written to the success file as they are skipped, and volumes that are ingested successfully are recorded in the checkpoint. If a worker
+ * dies, e.g., of an Error, the ingest fails with an IllegalStateException instead of waiting for the dead worker to take volumes from the
+ * queue; the other workers stop taking volumes, and the results of the ingests in flight are recorded, before the output files are closed.
+ */
+public class IngestWorkerPool {
+	private static Logger log = LogManager.getLogger(IngestWorkerPool.class);
+
+	// a volume id, and its position in the volume id list
+	private static class QueuedVolume {
+		private final long position;
+		private final String volumeId;
+
+		QueuedVolume(long position, String volumeId) {
+			this.position = position;
+			this.volumeId = volumeId;
+		}
+	}
+
+	// marks the end of the volume ids in the queue; compared by identity
+	private static final QueuedVolume END_OF_VOLUMES = new QueuedVolume(-1, "END_OF_VOLUMES");
+
+	// how long the caller waits for room in the queue before it checks that the workers are alive
+	private static final long WORKER_CHECK_INTERVAL_SECONDS = 1;
+	// how long a failed ingest waits for the results of the ingests in flight, so that they are recorded before the output files are closed;
+	// longer than the attempts of a request by CassandraManager
+	private static final long PENDING_TIMEOUT_SECONDS = 120;
+
+	private final Ingester ingester;
+	private final int numWorkers;
+	private final int queueCapacity;
+	private final String successFile;
+	private final String failureFile;
+	private final IngestCheckpoint checkpoint;
+
+	private final AtomicLong numSucceeded = new AtomicLong();
+	private final AtomicLong numFailed = new AtomicLong();
+	// the cause of death of the first worker that died, if any
+	private volatile Throwable workerFailure = null;
+
+	// number of volumes whose asynchronous ingest has not completed yet
+	private long numPending = 0;
+	private final Object pendingLock = new Object();
+
+	public IngestWorkerPool(Ingester ingester, int numWorkers, int queueCapacity, String successFile, String failureFile) {
+		this(ingester, numWorkers, queueCapacity, successFile, failureFile, null);
+	}
+
+	// checkpoint may be null
+	public IngestWorkerPool(Ingester ingester, int numWorkers, int queueCapacity, String successFile, String failureFile,
+			IngestCheckpoint checkpoint) {
+		this.ingester = ingester;
+		this.numWorkers = Math.max(1, numWorkers);
+		this.queueCapacity = Math.max(1, queueCapacity);
+		this.successFile = successFile;
+		this.failureFile = failureFile;
+		this.checkpoint = checkpoint;
+	}
+
+	// ingests all the given volumes, and returns once every volume has been processed; throws IllegalStateException if a worker dies
+	public void ingest(Iterable<String> volumeIds) {
+		BlockingQueue<QueuedVolume> queue = new ArrayBlockingQueue<QueuedVolume>(this.queueCapacity);
+		List<Worker> workers = new ArrayList<Worker>(this.numWorkers);
+		ExecutorService resultsExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "ingest-results");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// records the volumes skipped because of the checkpoint, in the part files after those of the workers
+		VolumeIdSink skippedSink = null;
+		long numSkipped = 0;
+		long start = System.currentTimeMillis();
+		log.info("starting ingest with {} workers, queue capacity {}", this.numWorkers, this.queueCapacity);
+		try {
+			for (int i = 0; i < this.numWorkers; i++) {
+				Worker worker = new Worker(i, queue, resultsExecutor, new VolumeIdSink(partFileName(this.successFile, i), partFileName(this.failureFile, i)));
+				workers.add(worker);
+				worker.start();
+			}
+			if (checkpoint != null) {
+				skippedSink = new VolumeIdSink(partFileName(this.successFile, this.numWorkers), partFileName(this.failureFile, this.numWorkers));
+			}
+			long position = 0;
+			for (String volumeId : volumeIds) {
+				if (checkpoint != null && checkpoint.isCompleted(position)) {
+					skippedSink.record(volumeId, true);
+					numSkipped++;
+				} else {
+					ingester.prefetch(volumeId);
+					enqueue(queue, new QueuedVolume(position, volumeId), workers); // blocks while the queue is full
+				}
+				position++;
+			}
+			for (int i = 0; i < this.numWorkers; i++) {
+				enqueue(queue, END_OF_VOLUMES, workers);
+			}
+			for (Worker worker : workers) {
+				worker.join();
+			}
+			awaitPending();
+		} catch (FileNotFoundException e) {
+			log.error("unable to create output files for ingest workers", e);
+			workers.forEach(worker -> worker.interrupt());
+		} catch (IllegalStateException e) {
+			log.error("ingest failed: " + e.getMessage());
+			// no more volumes are taken; the results of the ingests in flight are recorded before the output files are closed
+			workers.forEach(worker -> worker.interrupt());
+			try {
+				for (Worker worker : workers) {
+					worker.join(TimeUnit.SECONDS.toMillis(PENDING_TIMEOUT_SECONDS));
+				}
+				if (!awaitPending(TimeUnit.SECONDS.toMillis(PENDING_TIMEOUT_SECONDS))) {
+					log.error("results of {} ingests in flight are not recorded", getNumPending());
+				}
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			throw e;
+		} catch (InterruptedException e) {
+			log.error("ingest interrupted", e);
+			workers.forEach(worker -> worker.interrupt());
+			Thread.currentThread().interrupt();
+		} finally {
+			resultsExecutor.shutdown();
+			try {
+				// the results already handed to the results thread are recorded before the sinks are closed
+				resultsExecutor.awaitTermination(PENDING_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			for (Worker worker : workers) {
+				worker.sink.close();
+			}
+			if (skippedSink != null) {
+				skippedSink.close();
+			}
+			mergeParts(this.successFile, this.numWorkers + 1);
+			mergeParts(this.failureFile, this.numWorkers + 1);
+		}
+		long end = System.currentTimeMillis();
+		log.info("ingest finished: {} volumes succeeded, {} volumes failed, {} volumes skipped as ingested by earlier runs, time taken = {} seconds",
+				numSucceeded.get(), numFailed.get(), numSkipped, (end - start)/1000.0);
+	}
+
+	public long getNumSucceeded() {
+		return numSucceeded.get();
+	}
+
+	public long getNumFailed() {
+		return numFailed.get();
+	}
+
+	// puts the volume in the queue, waiting while the queue is full; fails if a worker has died, since the volumes in the queue might then
+	// never be taken
+	private void enqueue(BlockingQueue<QueuedVolume> queue, QueuedVolume volume, List<Worker> workers) throws InterruptedException {
+		checkWorkers(workers, false);
+		while (!queue.offer(volume, WORKER_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS)) {
+			checkWorkers(workers, true);
+		}
+	}
+
+	// throws IllegalStateException if a worker has died; the threads of the workers are checked only if checkThreads is set, which catches
+	// workers that died without recording their cause of death
+	private void checkWorkers(List<Worker> workers, boolean checkThreads) {
+		if (workerFailure != null) {
+			throw new IllegalStateException("an ingest worker has died", workerFailure);
+		}
+		if (checkThreads) {
+			for (Worker worker : workers) {
+				if (!worker.isAlive() && !worker.finished) {
+					throw new IllegalStateException(worker.getName() + " has died");
+				}
+			}
+		}
+	}
+
+	private class Worker extends Thread {
+		private final BlockingQueue<QueuedVolume> queue;
+		private final ExecutorService resultsExecutor;
+		private final VolumeIdSink sink;
+		// set once the worker has taken END_OF_VOLUMES, or has been interrupted
+		private volatile boolean finished = false;
+
+		Worker(int index, BlockingQueue<QueuedVolume> queue, ExecutorService resultsExecutor, VolumeIdSink sink) {
+			super("ingest-worker-" + index);
+			this.queue = queue;
+			this.resultsExecutor = resultsExecutor;
+			this.sink = sink;
+		}
+
+		@Override
+		public void run() {
+			try {
+				QueuedVolume volume;
+				while ((volume = queue.take()) != END_OF_VOLUMES) {
+					String id = volume.volumeId;
+					long position = volume.position;
+					CompletionStage<Boolean> result;
+					try {
+						result = ingester.ingestOneAsync(id);
+					} catch (RuntimeException e) {
+						log.error("unexpected exception while ingesting " + id, e);
+						result = CompletableFuture.completedFuture(false);
+					}
+					addPending();
+					// recorded on the results thread, since writing to the sink and the checkpoint must not hold up the thread that
+					// completes the ingest
+					result.whenCompleteAsync((ingested, e) -> {
+						if (e != null) {
+							log.error("unexpected exception while ingesting " + id, e);
+						}
+						boolean succeeded = (e == null) && Boolean.TRUE.equals(ingested);
+						(succeeded ? numSucceeded : numFailed).incrementAndGet();
+						sink.record(id, succeeded);
+						if (succeeded && checkpoint != null) {
+							checkpoint.markCompleted(position);
+						}
+						removePending();
+					}, resultsExecutor);
+				}
+				finished = true;
+			} catch (InterruptedException e) {
+				log.warn("{} interrupted", getName());
+				finished = true;
+			} catch (Throwable t) {
+				log.error("{} died", getName(), t);
+				workerFailure = t;
+			}
+		}
+	}
+
+	private void addPending() {
+		synchronized (pendingLock) {
+			numPending++;
+		}
+	}
+
+	private void removePending() {
+		synchronized (pendingLock) {
+			numPending--;
+			if (numPending == 0) {
+				pendingLock.notifyAll();
+			}
+		}
+	}
+
+	// waits until the asynchronous ingest of every volume handed to the workers has completed
+	private void awaitPending() throws InterruptedException {
+		synchronized (pendingLock) {
+			while (numPending > 0) {
+				pendingLock.wait();
+			}
+		}
+	}
+
+	// as awaitPending, for at most timeoutMillis; returns false if ingests are still pending
+	private boolean awaitPending(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (pendingLock) {
+			while (numPending > 0) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				pendingLock.wait(remaining);
+			}
+			return true;
+		}
+	}
+
+	private long getNumPending() {
+		synchronized (pendingLock) {
+			return numPending;
+		}
+	}
+
+	// the success and failure files of a single worker; results are recorded on the results thread, not the worker's own
+	static class VolumeIdSink {
+		private final PrintWriter successWriter;
+		private final PrintWriter failureWriter;
+
+		VolumeIdSink(String successFile, String failureFile) throws FileNotFoundException {
+			this.successWriter = new PrintWriter(successFile);
+			this.failureWriter = new PrintWriter(failureFile);
+		}
+
+		void record(String volumeId, boolean ingested) {
+			PrintWriter pw = (ingested ? successWriter : failureWriter);
+			pw.println(volumeId); pw.flush();
+		}
+
+		void close() {
+			successWriter.flush(); successWriter.close();
+			failureWriter.flush(); failureWriter.close();
+		}
+	}
+
+	// returns the name of the file used by the given worker in place of fileName, e.g., cassandra-success-ids-worker3.txt for
+	// cassandra-success-ids.txt
+	static String partFileName(String fileName, int worker) {
+		int dot = fileName.lastIndexOf('.');
+		if (dot <= fileName.lastIndexOf(File.separatorChar)) {
+			return fileName + "-worker" + worker;
+		}
+		return fileName.substring(0, dot) + "-worker" + worker + fileName.substring(dot);
+	}
+
+	// concatenates the per-worker files into fileName, and removes the per-worker files
+	private void mergeParts(String fileName, int numParts) {
+		try (PrintWriter pw = new PrintWriter(fileName)) {
+			for (int i = 0; i < numParts; i++) {
+				File part = new File(partFileName(fileName, i));
+				if (!part.exists()) {
+					continue;
+				}
+				try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(part), StandardCharsets.UTF_8))) {
+					String line;
+					while ((line = br.readLine()) != null) {
+						pw.println(line);
+					}
+				}
+				if (!part.delete()) {
+					log.warn("unable to delete {}", part.getPath());
+				}
+			}
+		} catch (IOException e) {
+			log.error("error while merging worker output into " + fileName, e);
+		}
+	}
+}
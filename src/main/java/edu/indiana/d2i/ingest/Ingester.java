@@ -1,15 +1,28 @@
 package edu.indiana.d2i.ingest;
 
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public abstract class Ingester {
 
-	public void ingest(List<String> volumes) {
+	public void ingest(Iterable<String> volumes) {
 		for(String id : volumes) {
 			ingestOne(id);
 		}
 	}
 	public abstract boolean ingestOne(String volumeId);
+
+	// ingests the volume, returning a stage that completes with the result of ingestOne; ingesters that write asynchronously override this
+	// to return before their writes complete, so that the caller can move on to the next volume
+	public CompletionStage<Boolean> ingestOneAsync(String volumeId) {
+		return CompletableFuture.completedFuture(ingestOne(volumeId));
+	}
+	
+	// hints that the volume will be ingested soon, so that ingesters that read the files of volumes can start locating them; called by
+	// IngestWorkerPool when the volume is queued for the workers
+	public void prefetch(String volumeId) {
+		
+	}
 	
 	public void close() {
 		
@@ -1,43 +1,74 @@
 package edu.indiana.d2i.ingest.cassandra;
 
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
+import edu.indiana.d2i.ingest.Constants;
+import edu.indiana.d2i.ingest.IngestCheckpoint;
+import edu.indiana.d2i.ingest.IngestWorkerPool;
 import edu.indiana.d2i.ingest.Ingester;
 import edu.indiana.d2i.ingest.util.Configuration;
 
 public class CassandraIngester extends Ingester{
-	private static PrintWriter pw1;
-	private static PrintWriter pw2;
 	private List<Ingester> ingestersInOrder;
-	static {
-		try {
-			pw1 = new PrintWriter(Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS"));
-			pw2 = new PrintWriter(Configuration.getProperty("CASSANDRA_FAILURE_FAILURE"));
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}
-	}
+	private int numWorkers;
+	private int queueCapacity;
+	private IngestCheckpoint checkpoint = null;
 	public CassandraIngester() {
 		ingestersInOrder = new LinkedList<Ingester>();
+		numWorkers = Integer.parseInt(Configuration.getProperty(Constants.PK_CASSANDRA_INGEST_WORKERS, Constants.DEFAULT_CASSANDRA_INGEST_WORKERS));
+		queueCapacity = Integer.parseInt(Configuration.getProperty(Constants.PK_CASSANDRA_INGEST_QUEUE_CAPACITY, Constants.DEFAULT_CASSANDRA_INGEST_QUEUE_CAPACITY));
 	}
 	public void addIngester(Ingester ingester) {
 		ingestersInOrder.add(ingester);
 	}
 
+	// records the progress of ingest() in the given checkpoint, and skips the volumes that it records as ingested
+	public void setCheckpoint(IngestCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	// ingests the volumes using a pool of worker threads; the ids of successfully ingested volumes, and of volumes whose ingest failed, are
+	// written to the configured success and failure files
+	@Override
+	public void ingest(Iterable<String> volumes) {
+		IngestWorkerPool pool = new IngestWorkerPool(this, numWorkers, queueCapacity,
+				Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS"), Configuration.getProperty("CASSANDRA_FAILURE_FAILURE"), checkpoint);
+		pool.ingest(volumes);
+	}
+
+	@Override
+	public void prefetch(String volumeId) {
+		for (Ingester ingester : ingestersInOrder) {
+			ingester.prefetch(volumeId);
+		}
+	}
+
 	public boolean ingestOne(String volumeId) {
 		boolean ingested = true;
 		for(Ingester ingester : ingestersInOrder) {
 			boolean flag = ingester.ingestOne(volumeId);
 			ingested = flag && ingested;
 		}
-		if(ingested) {
-			pw1.println(volumeId);pw1.flush();
-		} else {
-			pw2.println(volumeId);pw2.flush();
-		}
 		return ingested;
 	}
+
+	// all ingesters except the last are run to completion, in order, on the calling thread; the ingest of the last ingester is left to
+	// complete asynchronously
+	@Override
+	public CompletionStage<Boolean> ingestOneAsync(String volumeId) {
+		if (ingestersInOrder.isEmpty()) {
+			return CompletableFuture.completedFuture(true);
+		}
+		boolean ingested = true;
+		int last = ingestersInOrder.size() - 1;
+		for (Ingester ingester : ingestersInOrder.subList(0, last)) {
+			boolean flag = ingester.ingestOne(volumeId);
+			ingested = flag && ingested;
+		}
+		boolean ingestedByOthers = ingested;
+		return ingestersInOrder.get(last).ingestOneAsync(volumeId).thenApply(flag -> flag && ingestedByOthers);
+	}
 }
@@ -2,6 +2,17 @@ package edu.indiana.d2i.ingest.cassandra;
 
 import java.net.InetSocketAddress;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,9 +27,13 @@ import org.apache.logging.log4j.Logger;
 //import com.datastax.driver.core.Statement;
 //import com.datastax.driver.core.TableMetadata;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
 import com.datastax.oss.driver.api.core.CqlIdentifier;
 import com.datastax.oss.driver.api.core.CqlSession;
 import com.datastax.oss.driver.api.core.CqlSessionBuilder;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
@@ -26,7 +41,9 @@ import com.datastax.oss.driver.api.core.cql.SimpleStatement;
 import com.datastax.oss.driver.api.core.cql.Statement;
 import com.datastax.oss.driver.api.core.metadata.Metadata;
 
+import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.util.Configuration;
+import edu.indiana.d2i.ingest.util.IngestMetrics;
 
 public class CassandraManager {
 	private static Logger log = LogManager.getLogger(CassandraManager.class);
@@ -35,6 +52,22 @@ public class CassandraManager {
 	private CqlSession session;
 	private String[] contactPoints;
 	private String volumeKeySpace;
+	// bounds the number of asynchronous requests that are in flight at any time
+	private Semaphore inFlightPermits;
+	// asynchronous requests of threads that must not block, waiting for a permit; run by the thread that releases the next permit
+	private final Queue<Runnable> waitingForPermit = new ConcurrentLinkedQueue<Runnable>();
+	// used to delay the retries of failed asynchronous requests
+	private ScheduledExecutorService retryScheduler;
+	// prepared statements, keyed by their CQL query string, so that each statement is prepared only once
+	private final ConcurrentMap<String, PreparedStatement> preparedStatements = new ConcurrentHashMap<String, PreparedStatement>();
+	private final AtomicLong preparedStatementHits = new AtomicLong();
+	private final AtomicLong preparedStatementMisses = new AtomicLong();
+	// asynchronous requests that are retried, and that fail after all attempts
+	private final Meter asyncRetries = IngestMetrics.getRegistry().meter("cassandra.async.retries");
+	private final Meter asyncFailures = IngestMetrics.getRegistry().meter("cassandra.async.failures");
+
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long RETRY_DELAY_MILLIS = 10000;
 
 /*	private CassandraManager() {	
 		this.contactPoints = Configuration.getProperty("CONTACT_POINTS").split(",");
@@ -63,6 +96,16 @@ public class CassandraManager {
 		this.session = builder.withLocalDatacenter("Cassandra") // originally "datacenter1"; might need to change this to "DC1"
 				.withKeyspace(CqlIdentifier.fromCql(this.volumeKeySpace))
 				.build();
+		int maxInFlightPerNode = Integer.parseInt(Configuration.getProperty(Constants.PK_CASSANDRA_MAX_IN_FLIGHT_PER_NODE, Constants.DEFAULT_CASSANDRA_MAX_IN_FLIGHT_PER_NODE));
+		int numNodes = Math.max(1, this.session.getMetadata().getNodes().size());
+		int maxInFlight = maxInFlightPerNode * numNodes;
+		this.inFlightPermits = new Semaphore(maxInFlight);
+		this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cassandra-retry");
+			thread.setDaemon(true);
+			return thread;
+		});
+		registerMetrics(maxInFlight);
 		System.out.println("CassandraManager instantiated successfully");
 	}
 	
@@ -76,6 +119,14 @@ public class CassandraManager {
 		}
 	}*/
 	
+	// adds gauges of the number of asynchronous requests in flight, and of the use of the prepared statement cache, to the ingest metrics
+	private void registerMetrics(int maxInFlight) {
+		MetricRegistry registry = IngestMetrics.getRegistry();
+		registry.register("cassandra.async.in-flight", (Gauge<Integer>) () -> maxInFlight - inFlightPermits.availablePermits());
+		registry.register("cassandra.prepared-statements.hits", (Gauge<Long>) () -> getPreparedStatementHits());
+		registry.register("cassandra.prepared-statements.misses", (Gauge<Long>) () -> getPreparedStatementMisses());
+	}
+
 	public boolean checkTableExist(String tableName) {
 		Metadata metadata = this.session.getMetadata();
 		return metadata.getKeyspace(this.volumeKeySpace).flatMap(ks -> ks.getTable(tableName)).isPresent();
@@ -90,15 +141,45 @@ public class CassandraManager {
 	}
 	
 	public static void shutdown() {
+		log.info("prepared statement cache: {} statements, {} hits, {} misses", manager.preparedStatements.size(),
+				manager.getPreparedStatementHits(), manager.getPreparedStatementMisses());
+		manager.retryScheduler.shutdownNow();
 		manager.session.close();
 	}
 
+	// returns the prepared statement for the given query string, preparing it on first use
 	public PreparedStatement prepare(String statementTemplate) {
-		return session.prepare(statementTemplate);
+		PreparedStatement prepared = preparedStatements.get(statementTemplate);
+		if (prepared != null) {
+			preparedStatementHits.incrementAndGet();
+			return prepared;
+		}
+		return preparedStatements.computeIfAbsent(statementTemplate, query -> {
+			preparedStatementMisses.incrementAndGet();
+			return session.prepare(query);
+		});
 	}
 
+	// returns the prepared statement for the query of the given statement, preparing it on first use; the statement is keyed by its query
+	// string only, so the options of the statement used to prepare the query apply to all later uses
 	public PreparedStatement prepare(SimpleStatement stmt) {
-		return session.prepare(stmt);
+		PreparedStatement prepared = preparedStatements.get(stmt.getQuery());
+		if (prepared != null) {
+			preparedStatementHits.incrementAndGet();
+			return prepared;
+		}
+		return preparedStatements.computeIfAbsent(stmt.getQuery(), query -> {
+			preparedStatementMisses.incrementAndGet();
+			return session.prepare(stmt);
+		});
+	}
+
+	public long getPreparedStatementHits() {
+		return preparedStatementHits.get();
+	}
+
+	public long getPreparedStatementMisses() {
+		return preparedStatementMisses.get();
 	}
 
 	public ResultSet executeWithoutRetry(Statement stmt) {
@@ -138,5 +219,99 @@ public class CassandraManager {
 		}
 		return null;
 	}
-	
+
+	// executes the statement asynchronously; blocks the caller while the number of asynchronous requests in flight is at the configured limit
+	// (CASSANDRA_MAX_IN_FLIGHT_PER_NODE times the number of nodes in the cluster)
+	public CompletionStage<AsyncResultSet> executeAsync(Statement<?> stmt) {
+		inFlightPermits.acquireUninterruptibly();
+		CompletionStage<AsyncResultSet> result;
+		try {
+			result = session.executeAsync(stmt);
+		} catch (RuntimeException e) {
+			releasePermit();
+			throw e;
+		}
+		return result.whenComplete((rs, e) -> releasePermit());
+	}
+
+	// executes the statement asynchronously without blocking the caller: if the number of asynchronous requests in flight is at the limit, the
+	// statement waits in a queue, and is executed once a permit is released
+	private CompletionStage<AsyncResultSet> executeAsyncWhenPermitted(Statement<?> stmt) {
+		CompletableFuture<AsyncResultSet> result = new CompletableFuture<AsyncResultSet>();
+		waitingForPermit.add(() -> {
+			// a permit has been acquired for the statement
+			try {
+				session.executeAsync(stmt).whenComplete((rs, e) -> {
+					releasePermit();
+					if (e == null) {
+						result.complete(rs);
+					} else {
+						result.completeExceptionally(e);
+					}
+				});
+			} catch (RuntimeException e) {
+				releasePermit();
+				result.completeExceptionally(e);
+			}
+		});
+		runWaiting();
+		return result;
+	}
+
+	private void releasePermit() {
+		inFlightPermits.release();
+		runWaiting();
+	}
+
+	// runs the waiting requests for which permits are available
+	private void runWaiting() {
+		while (!waitingForPermit.isEmpty() && inFlightPermits.tryAcquire()) {
+			Runnable request = waitingForPermit.poll();
+			if (request == null) {
+				inFlightPermits.release();
+			} else {
+				request.run();
+			}
+		}
+	}
+
+	// asynchronous counterpart of execute(BoundStatement): the statement is attempted up to MAX_ATTEMPTS times, with a delay between attempts;
+	// the returned stage completes exceptionally with the exception of the last attempt if all attempts fail. The first attempt blocks the
+	// caller as executeAsync does; retries are started by the retry scheduler, which must not block, so they wait for a permit in a queue
+	public CompletionStage<AsyncResultSet> executeAsyncWithRetry(Statement<?> stmt) {
+		CompletableFuture<AsyncResultSet> result = new CompletableFuture<AsyncResultSet>();
+		executeAsyncWithRetry(stmt, MAX_ATTEMPTS, true, result);
+		return result;
+	}
+
+	// as executeAsyncWithRetry, but never blocks the caller, since the first attempt also waits for a permit in a queue; for threads that
+	// must not block, e.g., the threads of the driver that complete other requests, from which the permits are released
+	public CompletionStage<AsyncResultSet> executeAsyncWithRetryWhenPermitted(Statement<?> stmt) {
+		CompletableFuture<AsyncResultSet> result = new CompletableFuture<AsyncResultSet>();
+		executeAsyncWithRetry(stmt, MAX_ATTEMPTS, false, result);
+		return result;
+	}
+
+	private void executeAsyncWithRetry(Statement<?> stmt, int attemptsLeft, boolean mayBlock, CompletableFuture<AsyncResultSet> result) {
+		CompletionStage<AsyncResultSet> attempt;
+		try {
+			attempt = mayBlock ? executeAsync(stmt) : executeAsyncWhenPermitted(stmt);
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+			return;
+		}
+		attempt.whenComplete((rs, e) -> {
+			if (e == null) {
+				result.complete(rs);
+			} else if (attemptsLeft > 1) {
+				log.warn("write time out error: " + e.getMessage());
+				asyncRetries.mark();
+				retryScheduler.schedule(() -> executeAsyncWithRetry(stmt, attemptsLeft - 1, false, result), RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+			} else {
+				log.error("execution failed: " + stmt.toString());
+				asyncFailures.mark();
+				result.completeExceptionally(e);
+			}
+		});
+	}
 }
@@ -6,19 +6,22 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.codahale.metrics.Timer;
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
 import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
 import com.datastax.oss.driver.api.core.DriverTimeoutException;
@@ -32,9 +35,11 @@ import com.datastax.oss.driver.api.core.NoNodeAvailableException;
 //import com.datastax.driver.core.querybuilder.Insert;
 //import com.datastax.driver.core.querybuilder.QueryBuilder;
 
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
 import com.datastax.oss.driver.api.core.cql.BatchStatement;
 import com.datastax.oss.driver.api.core.cql.BatchStatementBuilder;
 import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
@@ -49,10 +54,17 @@ import com.datastax.oss.driver.api.querybuilder.insert.Insert;
 
 import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.Ingester;
+import edu.indiana.d2i.ingest.source.VolumeFiles;
+import edu.indiana.d2i.ingest.source.VolumeSource;
+import edu.indiana.d2i.ingest.source.VolumeSources;
 import edu.indiana.d2i.ingest.util.Configuration;
+import edu.indiana.d2i.ingest.util.IngestMetrics;
 import edu.indiana.d2i.ingest.util.METSParser.VolumeRecord;
 import edu.indiana.d2i.ingest.util.METSParser.VolumeRecord.PageRecord;
+import edu.indiana.d2i.ingest.util.PageVerifier;
+import edu.indiana.d2i.ingest.util.PageVerifier.VerifiedPage;
 import edu.indiana.d2i.ingest.util.Tools;
+import edu.indiana.d2i.ingest.util.VolumeArchive;
 
 public class CassandraPageTextIngester extends Ingester{
 	private static Logger log = LogManager.getLogger(CassandraPageTextIngester.class);
@@ -60,6 +72,20 @@ public class CassandraPageTextIngester extends Ingester{
 	private PrintWriter pwEmptyZip;
 	private CassandraManager cassandraManager;
 	private String columnFamilyName;
+	// if true, the pages of a volume are written in UNLOGGED batches of at most maxBatchBytes, followed by the static columns, and then by
+	// the deletes of extra pages; otherwise, the pages, static columns and deletes of a volume are written in a single LOGGED batch. In the
+	// unlogged mode, a re-ingest that fails part way leaves a mix of old and new pages under the old static columns until it is retried
+	private boolean unloggedWrites;
+	private long maxBatchBytes;
+	// CQL of the statements used to read and write the pages of a volume; the statements are prepared once, by CassandraManager
+	private String selectPageSeqQuery;
+	private String insertPageQuery;
+	private String insertStaticColsQuery;
+	private String deletePageQuery;
+	// reads, checksums and decodes the pages of a volume in parallel
+	private PageVerifier pageVerifier;
+	// the roots from which the zip and METS files of volumes are read (VOLUME_ROOTS)
+	private VolumeSource volumeSource;
 //	private Updater accessLevelUpdater;
 	
 	/*public CassandraPageTextIngester(Updater accessLevelUpdater) {
@@ -82,6 +108,11 @@ public class CassandraPageTextIngester extends Ingester{
 	public CassandraPageTextIngester() {
 		cassandraManager = CassandraManager.getInstance();
 		columnFamilyName = Configuration.getProperty(Constants.PK_VOLUME_TEXT_COLUMN_FAMILY);
+		unloggedWrites = "unlogged".equalsIgnoreCase(Configuration.getProperty(Constants.PK_CASSANDRA_PAGE_WRITE_MODE, Constants.DEFAULT_CASSANDRA_PAGE_WRITE_MODE).trim());
+		maxBatchBytes = Long.parseLong(Configuration.getProperty(Constants.PK_CASSANDRA_MAX_BATCH_BYTES, Constants.DEFAULT_CASSANDRA_MAX_BATCH_BYTES));
+		initQueries();
+		pageVerifier = new PageVerifier(Integer.parseInt(Configuration.getProperty(Constants.PK_CASSANDRA_PAGE_VERIFY_THREADS, Constants.DEFAULT_CASSANDRA_PAGE_VERIFY_THREADS)));
+		volumeSource = VolumeSources.fromConfiguration();
 		if(! cassandraManager.checkTableExist(columnFamilyName)) {
 			System.out.println("Table " + columnFamilyName + "does not exist; creating table");
 			/*
@@ -159,42 +190,62 @@ public class CassandraPageTextIngester extends Ingester{
 		
 	}*/
 
+	@Override
+	public void prefetch(String volumeId) {
+		volumeSource.prefetch(volumeId);
+	}
+
 	public boolean ingestOne(String volumeId) {
-		if(volumeId == null || volumeId.equals("")) return false;
-		
-		String cleanId = Tools.cleanId(volumeId);
-		String pairtreePath = Tools.getPairtreePath(volumeId);
+		return ingestOneAsync(volumeId).toCompletableFuture().join();
+	}
+
+	// reads and verifies the pages of the volume on the calling thread, and writes them to Cassandra asynchronously; the returned stage
+	// completes once the write has completed
+	@Override
+	public CompletionStage<Boolean> ingestOneAsync(String volumeId) {
+		if(volumeId == null || volumeId.equals("")) return CompletableFuture.completedFuture(false);
 		
-		String cleanIdPart = cleanId.split("\\.", 2)[1];
-		String zipFileName = cleanIdPart  + Constants.VOLUME_ZIP_SUFFIX; // e.g.: ark+=13960=t02z18p54.zip
-		String metsFileName = cleanIdPart + Constants.METS_XML_SUFFIX; // e.g.: ark+=13960=t02z18p54.mets.xml
 		/*
-		 *  get the zip file and mets file for this volume id based on relative path(leafPath) and zipFileName or metsFileName
+		 *  get the zip file and mets file for this volume id from the configured volume roots; in a pairtree, the leaf directory of the
+		 *  volume is listed once, possibly ahead of time by prefetch()
 		 *  e.g.: /hathitrustmnt/silvermaple/ingester-data/full_set/loc/pairtree_root/ar/k+/=1/39/60/=t/8h/d8/d9/4r/ark+=13960=t8hd8d94r/ark+=13960=t8hd8d94r.zip
 		 *  /hathitrustmnt/silvermaple/ingester-data/full_set/loc/pairtree_root/ar/k+/=1/39/60/=t/8h/d8/d9/4r/ark+=13960=t8hd8d94r/ark+=13960=t8hd8d94r.mets.xml
 		 */
-		File volumeZipFile = Tools.getFileFromPairtree(pairtreePath, zipFileName);
-		File volumeMetsFile = Tools.getFileFromPairtree(pairtreePath, metsFileName);
-		if(volumeZipFile == null || volumeMetsFile == null || !volumeZipFile.exists() || !volumeMetsFile.exists()) {
+		VolumeFiles volumeFiles;
+		try (Timer.Context timer = IngestMetrics.Stage.LOCATE.time()) {
+			volumeFiles = volumeSource.locate(volumeId);
+		}
+		File volumeZipFile = volumeFiles.getZipFile();
+		File volumeMetsFile = volumeFiles.getMetsFile();
+		if(!volumeFiles.isComplete()) {
 			log.error("zip file or mets file does not exist for " + volumeId);
-			return false;
+			IngestMetrics.volumeIngested(UpdatePagesResult.OTHER, 0);
+			return CompletableFuture.completedFuture(false);
 		}
 		
-		VolumeRecord volumeRecord = Tools.getVolumeRecord(volumeId, volumeMetsFile);
-		UpdatePagesResult result = UpdatePagesResult.OTHER;
+		VolumeRecord volumeRecord;
+		try (Timer.Context timer = IngestMetrics.Stage.METS_PARSE.time()) {
+			volumeRecord = Tools.getVolumeRecord(volumeId, volumeMetsFile);
+		}
+		if (volumeRecord.getMETSBytes() != null) {
+			volumeFiles.recordRead(volumeRecord.getMETSBytes().length);
+		}
+		VolumePages volumePages = VolumePages.failed(UpdatePagesResult.OTHER);
+		// whether readPages got as far as reading the zip file, which it only opens once the existing pages have been read from Cassandra
+		boolean zipFileRead = false;
 		try {
 			int maxAttempts = 3;
 			while(maxAttempts > 0) {
-				result = updatePages(volumeZipFile, volumeRecord);
-				if (result == UpdatePagesResult.CASSANDRA_WRITE_ERROR ||
-						result == UpdatePagesResult.CASSANDRA_READ_ERROR) {
-					// retry the ingestion only if there has been an error while trying
-					// to read from or write to Cassandra
+				volumePages = readPages(volumeZipFile, volumeRecord);
+				if (volumePages.getError() == UpdatePagesResult.CASSANDRA_READ_ERROR) {
+					// retry reading the volume only if there has been an error while trying
+					// to read from Cassandra; failed writes are retried by CassandraManager
 					maxAttempts --;
 					Thread.sleep(5000);
 				} else {
-					// if the ingestion is a success, or if the error is something
-					// other than a read or write error, then do not retry the ingestion
+					// if the volume was read successfully, or if the error is something
+					// other than a read error, then do not retry
+					zipFileRead = true;
 					break;
 				}
 			}
@@ -204,6 +255,19 @@ public class CassandraPageTextIngester extends Ingester{
 		} catch (InterruptedException e) {
 			log.error("ingest trhead interrupted" + e.getMessage());
 		}
+		if (zipFileRead) {
+			volumeFiles.recordRead(volumeZipFile.length());
+		}
+		if (volumePages.getError() != null) {
+			return CompletableFuture.completedFuture(ingestResult(volumeId, volumePages.getError(), 0));
+		}
+		int numPages = volumeRecord.getPageFilenameSet().size();
+		return writePages(volumeId, volumePages).thenApply(result -> ingestResult(volumeId, result, numPages));
+	}
+
+	// numPages is the number of pages written, if the volume was ingested successfully
+	private boolean ingestResult(String volumeId, UpdatePagesResult result, int numPages) {
+		IngestMetrics.volumeIngested(result, (result == UpdatePagesResult.SUCCESS) ? numPages : 0);
 		if (result == UpdatePagesResult.SUCCESS) {
 			log.info("text ingested successfully " + volumeId);
 		/*	boolean accessLevelUpdated = accessLevelUpdater.update(volumeId);
@@ -217,47 +281,145 @@ public class CassandraPageTextIngester extends Ingester{
 			log.info("text ingest failed " + volumeId);
 			return false;
 		}
-		// return volumeAdded;
 	}
 
-	private UpdatePagesResult updatePages(File volumeZipFile, VolumeRecord volumeRecord) throws FileNotFoundException {
+	// the outcome of reading the pages of a volume: either the statements that write the volume to Cassandra, or the error that prevented
+	// the statements from being built; the batches are written first, the commit statement, if any, once all batches have been written, and
+	// the delete batches, which remove the extra pages of the volume, only once the commit statement has been written
+	private static class VolumePages {
+		private final UpdatePagesResult error;
+		private final List<BatchStatement> batches;
+		private final BoundStatement commitStatement;
+		private final List<BatchStatement> deleteBatches;
+
+		private VolumePages(UpdatePagesResult error, List<BatchStatement> batches, BoundStatement commitStatement, List<BatchStatement> deleteBatches) {
+			this.error = error;
+			this.batches = batches;
+			this.commitStatement = commitStatement;
+			this.deleteBatches = deleteBatches;
+		}
+		static VolumePages failed(UpdatePagesResult error) {
+			return new VolumePages(error, null, null, null);
+		}
+		static VolumePages of(List<BatchStatement> batches, BoundStatement commitStatement, List<BatchStatement> deleteBatches) {
+			return new VolumePages(null, batches, commitStatement, deleteBatches);
+		}
+		UpdatePagesResult getError() {
+			return error;
+		}
+		List<BatchStatement> getBatches() {
+			return batches;
+		}
+		BoundStatement getCommitStatement() {
+			return commitStatement;
+		}
+		List<BatchStatement> getDeleteBatches() {
+			return deleteBatches;
+		}
+	}
+
+	// groups statements that write to the partition of a single volume into batches of the given type; a new batch is started whenever
+	// adding a statement would make the estimated size of the current batch exceed maxBytes
+	private static class PageBatches {
+		private final BatchType batchType;
+		private final long maxBytes;
+		private final List<BatchStatement> batches = new ArrayList<BatchStatement>();
+		private BatchStatementBuilder current = null;
+		private long currentBytes = 0;
+
+		PageBatches(BatchType batchType, long maxBytes) {
+			this.batchType = batchType;
+			this.maxBytes = maxBytes;
+		}
+		void add(BatchableStatement<?> stmt, long estimatedBytes) {
+			if (current != null && currentBytes + estimatedBytes > maxBytes) {
+				flush();
+			}
+			if (current == null) {
+				current = BatchStatement.builder(batchType).setConsistencyLevel(DefaultConsistencyLevel.ONE);
+			}
+			current.addStatement(stmt);
+			currentBytes += estimatedBytes;
+		}
+		List<BatchStatement> build() {
+			flush();
+			return batches;
+		}
+		private void flush() {
+			if (current != null) {
+				batches.add(current.build());
+				current = null;
+				currentBytes = 0;
+			}
+		}
+	}
+
+	// builds the CQL of the statements used by readPages
+	private void initQueries() {
+		selectPageSeqQuery = "SElECT sequence FROM " + columnFamilyName + " WHERE volumeid = ?";
+		// insert statement to insert a single page and page-related data
+		Insert insert = QueryBuilder.insertInto(columnFamilyName)
+			.value("volumeid", QueryBuilder.bindMarker())
+			.value("sequence", QueryBuilder.bindMarker())
+			.value("byteCount", QueryBuilder.bindMarker())
+			.value("characterCount", QueryBuilder.bindMarker())
+			.value("contents", QueryBuilder.bindMarker())
+			.value("pageNumberLabel", QueryBuilder.bindMarker());
+		insertPageQuery = insert.asCql();
+		insertStaticColsQuery = "INSERT INTO " + columnFamilyName + " (volumeid, volumeByteCount, volumeCharacterCount, structMetadata, structMetadataType, lastModifiedTime, cksumValidationTime) VALUES (?, ?, ?, ?, ?, ?, ?)";
+		Delete deleteQuery =
+		  QueryBuilder.deleteFrom(columnFamilyName)
+		    .whereColumn("volumeid").isEqualTo(QueryBuilder.bindMarker())
+		    .whereColumn("sequence").isEqualTo(QueryBuilder.bindMarker());
+		deletePageQuery = deleteQuery.asCql();
+	}
+
+	// rough estimate of the serialized size of a page insert: the page contents, plus the other values and per-statement overhead
+	private static long estimatePageInsertBytes(PageRecord pageRecord) {
+		String label = pageRecord.getLabel();
+		return pageRecord.getByteCount() + (label == null ? 0 : label.length()) + STATEMENT_OVERHEAD_BYTES;
+	}
+	private static final long STATEMENT_OVERHEAD_BYTES = 64;
+
+	private VolumePages readPages(File volumeZipFile, VolumeRecord volumeRecord) throws FileNotFoundException {
 		String volumeId = volumeRecord.getVolumeID();
 		// boolean volumeAdded = false;
-		BatchStatementBuilder batchStmtBuilder =
-			BatchStatement.builder(BatchType.LOGGED);
+		PageBatches pageBatches = unloggedWrites ? new PageBatches(BatchType.UNLOGGED, maxBatchBytes)
+				: new PageBatches(BatchType.LOGGED, Long.MAX_VALUE);
 
 		// determine the page sequences of the volume if it already exists in the
 		// database
-		SimpleStatement selectPageSeqStmt
-			= SimpleStatement.newInstance("SElECT sequence FROM " + columnFamilyName +
-																		" WHERE volumeid = ?", volumeId);		
 		Set<String> existingPageSequences = Collections.emptySet();
 		try {
-			ResultSet result = cassandraManager.executeWithoutRetry(selectPageSeqStmt.setConsistencyLevel(ConsistencyLevel.ONE));
-			List<Row> rows = result.all(); // rows is an empty List if the vol does
-			                               // not exist in the database
+			BoundStatement selectPageSeqStmt = cassandraManager.prepare(selectPageSeqQuery).bind(volumeId);
+			List<Row> rows;
+			try (Timer.Context timer = IngestMetrics.Stage.CASSANDRA_READ.time()) {
+				ResultSet result = cassandraManager.executeWithoutRetry(selectPageSeqStmt.setConsistencyLevel(ConsistencyLevel.ONE));
+				rows = result.all(); // rows is an empty List if the vol does
+				                     // not exist in the database
+			}
 			existingPageSequences = rows.stream()
 				.map(row -> row.getString("sequence"))
 				.collect(Collectors.toSet());
 		} catch (NoNodeAvailableException nhae) {
 			log.error("updatePages: Failed to get page sequences for volume " + volumeId, nhae);
-			return UpdatePagesResult.CASSANDRA_READ_ERROR;
+			return VolumePages.failed(UpdatePagesResult.CASSANDRA_READ_ERROR);
 		} catch (ReadTimeoutException e) {
 			log.error("updatePages: Read timeout while getting page sequences for volume " + volumeId, e);
-			return UpdatePagesResult.CASSANDRA_READ_ERROR;
+			return VolumePages.failed(UpdatePagesResult.CASSANDRA_READ_ERROR);
 		} catch (Exception e) {
 			log.error("updatePages: Exception while getting page sequences for volume " + volumeId, e);
-			return UpdatePagesResult.CASSANDRA_READ_ERROR;
+			return VolumePages.failed(UpdatePagesResult.CASSANDRA_READ_ERROR);
 		}
 
 		long volumeByteCount = 0;
 		int volumeCharacterCount = 0; // originally, long
 		int i=0;
-		try {
+		// the entries of the zip file are listed from its central directory, and each page is inflated only when read
+		try (VolumeArchive volumeArchive = new VolumeArchive(volumeZipFile)) {
 			// Insert firstPageInsert = null;
 			BoundStatement firstPageInsert = null;
-			ZipInputStream zis = new ZipInputStream(new FileInputStream(volumeZipFile));
-			ZipEntry zipEntry = null;
+			BoundStatement insertStaticColsStmt = null;
 			// keep track of the pages in the ZIP file, to compare later against
 			// the pages in the METS file
 			Set<String> pagesInZipFile = new HashSet<String>();
@@ -267,16 +429,13 @@ public class CassandraPageTextIngester extends Ingester{
 			Set<String> newPageSequences = new HashSet<String>();
 
 			// insert statement to insert a single page and page-related data
-			Insert insert = QueryBuilder.insertInto(columnFamilyName)
-				.value("volumeid", QueryBuilder.bindMarker())
-				.value("sequence", QueryBuilder.bindMarker())
-				.value("byteCount", QueryBuilder.bindMarker())
-				.value("characterCount", QueryBuilder.bindMarker())
-				.value("contents", QueryBuilder.bindMarker())
-				.value("pageNumberLabel", QueryBuilder.bindMarker());
-			PreparedStatement insertStmt = cassandraManager.prepare(insert.build());
+			PreparedStatement insertStmt = cassandraManager.prepare(insertPageQuery);
 
-			while((zipEntry = zis.getNextEntry()) != null) {
+			//1. read page contents in bytes, compute their checksums, and decode them, for all pages in parallel, on the threads of the
+			// page verifier; the pages are then added to the batches, in the order of the zip file, once all of them have been read
+			List<String> pageEntryNames = new ArrayList<String>();
+			List<CompletableFuture<VerifiedPage>> verifiedPages = new ArrayList<CompletableFuture<VerifiedPage>>();
+			for (ZipEntry zipEntry : volumeArchive.getEntries()) {
 				String entryName = zipEntry.getName();
 				String entryFilename = extractEntryFilename(entryName);
 				PageRecord pageRecord = volumeRecord.getPageRecordByFilename(entryFilename);
@@ -285,57 +444,67 @@ public class CassandraPageTextIngester extends Ingester{
 					continue;
 				}
 				if(entryFilename != null && !"".equals(entryFilename)) {
-					//1. read page contents in bytes
-					byte[] pageContents = readPagecontentsFromInputStream(zis);
-					if(pageContents == null) {
-						log.error("failed reading page contents for " + entryName + " of " + volumeId);
-						continue;
-					}
-					
-					//2. check against checksum of this page declared in METS
-					String checksum = pageRecord.getChecksum();
-					String checksumType = pageRecord.getChecksumType();
-					try {
-						String calculatedChecksum = Tools.calculateChecksum(pageContents, checksumType);
-						if (!checksum.equals(calculatedChecksum)) {
-							log.warn("Actual checksum and checksum from METS mismatch for entry " + entryName + " for volume: " + volumeId + ". Actual: " + calculatedChecksum
-									+ " from METS: " + checksum);
-							log.info("Recording actual checksum");
-							// pageRecord.setChecksum(calculatedChecksum, checksumType);
-							pwChecksumInfo.println(volumeId + "#" + entryFilename); pwChecksumInfo.flush();
-							return UpdatePagesResult.PAGE_CHECKSUM_MISMATCH_ERROR; // directly return false if mismatch happens
-						} else {
-							log.info("verified checksum for page " + entryFilename + " of " + volumeId);
-						}
-					} catch (NoSuchAlgorithmException e) {
-						log.error("NoSuchAlgorithmException for checksum algorithm " + checksumType);
-						log.error("Using checksum found in METS with a leap of faith");
-					}
-					
-					//3. verify byte count of this page
-					if(pageContents.length != pageRecord.getByteCount() ) {
-						log.warn("Actual byte count and byte count from METS mismatch for entry " + entryName + " for volume " + volumeId + ". Actual: " + pageContents.length + " from METS: " + pageRecord.getByteCount());
-						log.info("Recording actual byte count");
-						pageRecord.setByteCount(pageContents.length);
-						volumeByteCount += pageContents.length;
+					pageEntryNames.add(entryName);
+					verifiedPages.add(pageVerifier.verify(volumeArchive, zipEntry, pageRecord));
+				}
+			}
+			// the archive is closed on return, so all pages are waited for, even if an earlier page turns out to have a checksum mismatch
+			CompletableFuture.allOf(verifiedPages.toArray(new CompletableFuture<?>[verifiedPages.size()])).join();
+
+			for (int j = 0; j < pageEntryNames.size(); j++) {
+				String entryName = pageEntryNames.get(j);
+				String entryFilename = extractEntryFilename(entryName);
+				VerifiedPage pageContents = verifiedPages.get(j).join();
+				PageRecord pageRecord = pageContents.getPageRecord();
+				if(pageContents.getError() != null) {
+					log.error("failed reading page contents for " + entryName + " of " + volumeId + ": " + pageContents.getError().getMessage());
+					continue;
+				}
+				
+				//2. check against checksum of this page declared in METS
+				String checksum = pageRecord.getChecksum();
+				String checksumType = pageRecord.getChecksumType();
+				String calculatedChecksum = pageContents.getCalculatedChecksum();
+				if (calculatedChecksum == null) {
+					log.error("NoSuchAlgorithmException for checksum algorithm " + checksumType);
+					log.error("Using checksum found in METS with a leap of faith");
+				} else {
+					if (!checksum.equals(calculatedChecksum)) {
+						log.warn("Actual checksum and checksum from METS mismatch for entry " + entryName + " for volume: " + volumeId + ". Actual: " + calculatedChecksum
+								+ " from METS: " + checksum);
+						log.info("Recording actual checksum");
+						// pageRecord.setChecksum(calculatedChecksum, checksumType);
+						pwChecksumInfo.println(volumeId + "#" + entryFilename); pwChecksumInfo.flush();
+						return VolumePages.failed(UpdatePagesResult.PAGE_CHECKSUM_MISMATCH_ERROR); // directly return false if mismatch happens
 					} else {
-						volumeByteCount += pageRecord.getByteCount();
-						log.info("verified page content for page " + entryFilename + " of " + volumeId);
+						log.info("verified checksum for page " + entryFilename + " of " + volumeId);
 					}
-					
-					//4. get 8-digit sequence for this page
-					int order = pageRecord.getOrder();
-					String sequence = generateSequence(order);
-					pageRecord.setSequence(sequence);
-					
-					//5.  convert to string and count character count -- NOTE: some
-					//pages are not encoded in utf-8, but there is no charset
-					//indicator, so assume utf-8 for all for now
-					String pageContentsString = new String(pageContents, "utf-8");
-					pageRecord.setCharacterCount(pageContentsString.length());
-					volumeCharacterCount += pageContentsString.length();
+				}
+				
+				//3. verify byte count of this page
+				if(pageContents.getByteCount() != pageRecord.getByteCount() ) {
+					log.warn("Actual byte count and byte count from METS mismatch for entry " + entryName + " for volume " + volumeId + ". Actual: " + pageContents.getByteCount() + " from METS: " + pageRecord.getByteCount());
+					log.info("Recording actual byte count");
+					pageRecord.setByteCount(pageContents.getByteCount());
+					volumeByteCount += pageContents.getByteCount();
+				} else {
+					volumeByteCount += pageRecord.getByteCount();
+					log.info("verified page content for page " + entryFilename + " of " + volumeId);
+				}
+				
+				//4. get 8-digit sequence for this page
+				int order = pageRecord.getOrder();
+				String sequence = Tools.generateSequence(order);
+				pageRecord.setSequence(sequence);
+				
+				//5.  convert to string and count character count -- NOTE: some
+				//pages are not encoded in utf-8, but there is no charset
+				//indicator, so assume utf-8 for all for now
+				String pageContentsString = pageContents.getContents();
+				pageRecord.setCharacterCount(pageContentsString.length());
+				volumeCharacterCount += pageContentsString.length();
           
-					//6. add page content into batch
+				//6. add page content into batch
 /*                    Insert insertStmt = QueryBuilder.insertInto(columnFamilyName)
                     		.value("volumeID", QueryBuilder.bindMarker())
                     		.value("sequence", QueryBuilder.bindMarker())
@@ -344,26 +513,24 @@ public class CassandraPageTextIngester extends Ingester{
                     		.value("contents", QueryBuilder.bindMarker())
                     		.value("pageNumberLabel", QueryBuilder.bindMarker());
 */  
-					//6. add page content into batch
-					BoundStatement boundInsertStmt =
-						insertStmt.bind(volumeId,
-														pageRecord.getSequence(),
-														pageRecord.getByteCount(),
-														pageRecord.getCharacterCount(),
-														pageContentsString,
-														pageRecord.getLabel());
-					
-					pagesInZipFile.add(entryFilename);
-					newPageSequences.add(pageRecord.getSequence());
-					batchStmtBuilder.addStatement(boundInsertStmt);
-					if(i == 0) {
-						firstPageInsert = boundInsertStmt;
-					}
-					i++;
+				//6. add page content into batch
+				BoundStatement boundInsertStmt =
+					insertStmt.bind(volumeId,
+													pageRecord.getSequence(),
+													pageRecord.getByteCount(),
+													pageRecord.getCharacterCount(),
+													pageContentsString,
+													pageRecord.getLabel());
+				
+				pagesInZipFile.add(entryFilename);
+				newPageSequences.add(pageRecord.getSequence());
+				pageBatches.add(boundInsertStmt, estimatePageInsertBytes(pageRecord));
+				if(i == 0) {
+					firstPageInsert = boundInsertStmt;
 				}
-			} // end of while loop
+				i++;
+			} // end of for loop
 			
-			zis.close();
 			//7. add static columns/fields 
 			if (firstPageInsert != null) {
 				// ByteBuffer zipBinaryContent = getByteBuffer(volumeZipFile);
@@ -398,12 +565,9 @@ public class CassandraPageTextIngester extends Ingester{
 
 				// the static columns are added using a separate statement, instead of combining them with the first page, 
 				// as was done earlier
-				SimpleStatement insertStaticColsStmt = SimpleStatement.newInstance(
-				        "INSERT INTO " + columnFamilyName + " (volumeid, volumeByteCount, volumeCharacterCount, structMetadata, structMetadataType, lastModifiedTime, cksumValidationTime) VALUES (?, ?, ?, ?, ?, ?, ?)",
+				insertStaticColsStmt = cassandraManager.prepare(insertStaticColsQuery).bind(
 				        volumeId, volumeByteCount, volumeCharacterCount, volumeRecord.getMETSContents(), "METS", Instant.now(), Instant.now());
 				
-				batchStmtBuilder.addStatement(insertStaticColsStmt);
-				
 			} else {
 				log.error("Cannot get entry from ZIP (zip file is probably empty) " + volumeZipFile.getAbsolutePath());
 				if(!volumeRecord.getPageFilenameSet().isEmpty()) {
@@ -411,39 +575,87 @@ public class CassandraPageTextIngester extends Ingester{
 				} else {
 					pwEmptyZip.println(volumeId + " consistent with METS"); pwEmptyZip.flush();
 				}
-				return UpdatePagesResult.EMPTY_ZIP_ERROR;
+				return VolumePages.failed(UpdatePagesResult.EMPTY_ZIP_ERROR);
 			}
 			
 			// check if the pages listed in the METS file match the pages found in the ZIP file
 			if (!pagesInZipFile.equals(volumeRecord.getPageFilenameSet())) {
 				log.error("Pages listed in METS file do not match pages in ZIP file: volumeId = {}", volumeId);
-				return UpdatePagesResult.METS_ZIP_MISMATCHED_PAGES_ERROR;
+				return VolumePages.failed(UpdatePagesResult.METS_ZIP_MISMATCHED_PAGES_ERROR);
 			}
 			
 			//8. Delete any extra pages of the volume that already exist in the database
 			// pageSequencesToDelete is the set difference (existingPageSequences -
-			// newPageSequences)
+			// newPageSequences); with unlogged writes, the deletes are kept out of the page batches, so that they are only written once
+			// the static columns have been, and a failed re-ingest does not leave the old static columns over a volume missing pages
 			Set<String> pageSequencesToDelete = new HashSet(existingPageSequences);
 			pageSequencesToDelete.removeAll(newPageSequences);
-			Delete deleteQuery =
-			  QueryBuilder.deleteFrom(columnFamilyName)
-			    .whereColumn("volumeid").isEqualTo(QueryBuilder.bindMarker())
-			    .whereColumn("sequence").isEqualTo(QueryBuilder.bindMarker());
-			PreparedStatement deleteStmt = cassandraManager.prepare(deleteQuery.build());
+			PreparedStatement deleteStmt = cassandraManager.prepare(deletePageQuery);
+			PageBatches deleteBatches = unloggedWrites ? new PageBatches(BatchType.UNLOGGED, maxBatchBytes) : pageBatches;
 			if (!pageSequencesToDelete.isEmpty()) {
 				log.info("Deleting existing extra pages for volume {}: page sequences {}", volumeId, pageSequencesToDelete.stream().collect(Collectors.joining(",")));
 			}
 			for (String sequence: pageSequencesToDelete) {
-			  batchStmtBuilder.addStatement(deleteStmt.bind(volumeId, sequence));
+			  deleteBatches.add(deleteStmt.bind(volumeId, sequence), STATEMENT_OVERHEAD_BYTES);
 			}
 
-			//9. then push the volume into cassandra (add static columns, and pages, and delete extra pages)
-			batchStmtBuilder.setConsistencyLevel(DefaultConsistencyLevel.ONE);
-			cassandraManager.executeWithoutRetry(batchStmtBuilder.build());
+			//9. the volume is pushed into cassandra by writePages (add static columns, and pages, and delete extra pages); with unlogged
+			// writes, the static columns are written only after all the page batches have been written, so that lastModifiedTime serves
+			// as a marker that the volume has been written completely, and the extra pages are deleted only after that
+			if (unloggedWrites) {
+				return VolumePages.of(pageBatches.build(), insertStaticColsStmt.setConsistencyLevel(DefaultConsistencyLevel.ONE),
+						deleteBatches.build());
+			}
+			pageBatches.add(insertStaticColsStmt, 0);
+			return VolumePages.of(pageBatches.build(), null, Collections.<BatchStatement>emptyList());
 		} catch (IOException e) {
 			log.error("IOException getting entry from ZIP " + volumeZipFile.getAbsolutePath(), e);
-			return UpdatePagesResult.VOLUME_ZIP_ERROR;
-		} catch (WriteFailureException e) {
+			return VolumePages.failed(UpdatePagesResult.VOLUME_ZIP_ERROR);
+		}
+	}
+
+	// writes the batches of a volume asynchronously, followed by the commit statement, if any, and then by the delete batches; failed
+	// attempts are retried by CassandraManager, and the error of the last attempt is mapped to an UpdatePagesResult
+	private CompletionStage<UpdatePagesResult> writePages(String volumeId, VolumePages volumePages) {
+		Timer.Context timer = IngestMetrics.Stage.CASSANDRA_WRITE.time();
+		CompletionStage<AsyncResultSet> write;
+		try {
+			List<BatchStatement> batches = volumePages.getBatches();
+			CompletableFuture<?>[] batchWrites = new CompletableFuture<?>[batches.size()];
+			for (int i = 0; i < batchWrites.length; i++) {
+				batchWrites[i] = cassandraManager.executeAsyncWithRetry(batches.get(i)).toCompletableFuture();
+			}
+			BoundStatement commitStatement = volumePages.getCommitStatement();
+			List<BatchStatement> deleteBatches = volumePages.getDeleteBatches();
+			// the commit statement and the delete batches are issued by driver threads, which must not block waiting for a permit, since
+			// permits are released by the responses that the same threads process
+			write = CompletableFuture.allOf(batchWrites)
+					.thenCompose(v -> (commitStatement == null) ? batchWrites[0].thenApply(rs -> (AsyncResultSet) rs)
+							: cassandraManager.executeAsyncWithRetryWhenPermitted(commitStatement))
+					.thenCompose(rs -> {
+						if (deleteBatches.isEmpty()) {
+							return CompletableFuture.completedFuture(rs);
+						}
+						CompletableFuture<?>[] deleteWrites = new CompletableFuture<?>[deleteBatches.size()];
+						for (int i = 0; i < deleteWrites.length; i++) {
+							deleteWrites[i] = cassandraManager.executeAsyncWithRetryWhenPermitted(deleteBatches.get(i)).toCompletableFuture();
+						}
+						return CompletableFuture.allOf(deleteWrites).thenApply(v -> rs);
+					});
+		} catch (RuntimeException e) {
+			timer.stop();
+			return CompletableFuture.completedFuture(writeError(volumeId, e));
+		}
+		return write.handle((rs, e) -> {
+			timer.stop();
+			return (e == null) ? UpdatePagesResult.SUCCESS : writeError(volumeId, e);
+		});
+	}
+
+	private UpdatePagesResult writeError(String volumeId, Throwable t) {
+		Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+		if (cause instanceof WriteFailureException) {
+			WriteFailureException e = (WriteFailureException) cause;
 			// a non-timeout error during a write query; happens when some of the replicas that are contacted by the coordinator 
 			// reply with an error
 			log.error("write failure for " + volumeId + ": " + e.getMessage());
@@ -455,23 +667,15 @@ public class CassandraPageTextIngester extends Ingester{
 			// log.error("write failure for " + volumeId + ": " + e.getHost() + " host"); // getHost() returns the coordinator of the request, not the failed host
 			log.error("write failure for " + volumeId + ": " + e.getConsistencyLevel() + " consistency");
 			log.error("write failure for " + volumeId + ": " + e.getWriteType() + " write type");
-			return UpdatePagesResult.CASSANDRA_WRITE_ERROR;
-		} catch (WriteTimeoutException e) {
+		} else if (cause instanceof WriteTimeoutException) {
 			// a server-side timeout during a write query
-			log.error("write failure for " + volumeId + ": " + e.getMessage());
-			return UpdatePagesResult.CASSANDRA_WRITE_ERROR;
-		} catch (DriverTimeoutException e) {
-			log.error("driver timeout for " + volumeId + ": " + e.getMessage());
-			return UpdatePagesResult.CASSANDRA_WRITE_ERROR;
-		} 
-		
-/*		catch (Exception e) {
-			log.error("Exception in updatePages", e);
-			return UpdatePagesResult.CASSANSDRA_WRITE_ERROR;
-		}*/
-		
-		// volumeAdded = true;
-		return UpdatePagesResult.SUCCESS;
+			log.error("write failure for " + volumeId + ": " + cause.getMessage());
+		} else if (cause instanceof DriverTimeoutException) {
+			log.error("driver timeout for " + volumeId + ": " + cause.getMessage());
+		} else {
+			log.error("Exception while writing " + volumeId, cause);
+		}
+		return UpdatePagesResult.CASSANDRA_WRITE_ERROR;
 	}
 
 	// the following is used to create the volumezip value stored in Cassandra, from the contents of the zip file in the pairtree
@@ -498,25 +702,6 @@ public class CassandraPageTextIngester extends Ingester{
 		return null;
 	}*/
 
-	private byte[] readPagecontentsFromInputStream(ZipInputStream zis) {
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		int read = -1;
-		byte[] buffer = new byte[32767];
-		try {
-			while((read = zis.read(buffer)) > 0) {
-				bos.write(buffer, 0, read);
-			}
-		} catch (IOException e) {
-			log.error("error reading zip stream" + e.getMessage());
-		}
-		try {
-			bos.close();
-		} catch (IOException e) {
-			log.error("IOException while attempting to close ByteArrayOutputStream()" + e.getMessage());
-		}
-		return bos.toByteArray();
-	}
-
 	/**
      * Method to extract the filename from a ZipEntry name
      * @param entryName name of a ZipEntry
@@ -527,26 +712,9 @@ public class CassandraPageTextIngester extends Ingester{
         return entryName.substring(lastIndex + 1);
     }
     
-    static final int SEQUENCE_LENGTH = 8;
-    
-    /**
-     * Method to generate a fixed-length zero-padded page sequence number
-     * @param order the ordering of a page
-     * @return a fixed-length zero-padded page sequence number based on the ordering
-     */
-    protected String generateSequence(int order) {
-        String orderString = Integer.toString(order);
-        StringBuilder sequenceBuilder = new StringBuilder();
-        
-        int digitCount = orderString.length();
-        for (int i = digitCount; i < SEQUENCE_LENGTH; i++) {
-            sequenceBuilder.append('0');
-        }
-        sequenceBuilder.append(orderString);
-        return sequenceBuilder.toString();
-    }
-    
     public void close() {
+    	pageVerifier.shutdown();
+    	volumeSource.shutdown();
     	pwEmptyZip.flush();
     	pwEmptyZip.close();
     	pwChecksumInfo.flush();
@@ -1,7 +1,24 @@
 package edu.indiana.d2i.ingest.cassandra;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.Row;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.querybuilder.update.Update;
 
 import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.util.Configuration;
@@ -10,24 +27,124 @@ import edu.indiana.d2i.ingest.util.Configuration;
  * Class that ingests to a single column in the volume text column family. This is the base class for classes that set the values
  * of the marc column and the access level column, after the ingest of the volume text data into Cassandra. This class is parameterized by the
  * column data type.
+ *
+ * Updates are "UPDATE ... IF EXISTS" statements, i.e., lightweight transactions, so that rows are not created for volumes that are not in
+ * the column family. If the ids of the volumes in the column family are known, i.e., a snapshot of them is configured (see
+ * ExistingVolumes), or they are set with setExistingVolumeIds, updates are plain UPDATE statements of the volumes in that set, which take a
+ * single round trip instead of the four of a lightweight transaction, and the update of a volume that is not in the set fails without a
+ * request to Cassandra.
  */
 public abstract class ColumnIngester<T> {
+	private static Logger log = LogManager.getLogger(ColumnIngester.class);
+
 	CassandraManager csdConnector;
 	String volTextColFamily;
 	String volTextColFamilyKey;
+	private int maxInFlight;
+	// the ids of the volumes in the column family, or null if updates check that the volume exists
+	private volatile Set<String> existingVolumeIds = null;
+	private PreparedStatement conditionalUpdatePrepStmt = null;
+	private PreparedStatement updatePrepStmt = null;
 
 	ColumnIngester() {
 		this.csdConnector = CassandraManager.getInstance();
 		this.volTextColFamily = Configuration.getProperty(Constants.PK_VOLUME_TEXT_COLUMN_FAMILY, Constants.DEFAULT_VOLUME_TEXT_COLUMN_FAMILY);
 		this.volTextColFamilyKey = Configuration.getProperty(Constants.PK_VOLUME_TEXT_COLUMN_FAMILY_KEY, Constants.DEFAULT_VOLUME_TEXT_COLUMN_FAMILY_KEY);
+		this.maxInFlight = Math.max(1, Integer.parseInt(Configuration.getProperty(Constants.PK_COLUMN_INGEST_MAX_IN_FLIGHT, Constants.DEFAULT_COLUMN_INGEST_MAX_IN_FLIGHT)));
+		this.setExistingVolumeIds(ExistingVolumes.fromConfiguration());
 	}
 
 	public abstract boolean ingest(String volumeId, T colValue);
 
+	// asynchronous counterpart of ingest; the returned stage completes with the result that ingest would have returned
+	public abstract CompletionStage<Boolean> ingestAsync(String volumeId, T colValue);
+
+	// ingests the column values of the given volumes, with up to COLUMN_INGEST_MAX_IN_FLIGHT updates in flight at a time, instead of waiting
+	// for the update of each volume before starting the next; returns the ids of the volumes whose update was not successful, once all the
+	// updates have completed
+	public List<String> ingestAll(Stream<Map.Entry<String, T>> volumes) {
+		Semaphore inFlightPermits = new Semaphore(this.maxInFlight);
+		Queue<String> failedVolumeIds = new ConcurrentLinkedQueue<String>();
+		for (Iterator<Map.Entry<String, T>> it = volumes.iterator(); it.hasNext(); ) {
+			Map.Entry<String, T> volume = it.next();
+			String volumeId = volume.getKey();
+			inFlightPermits.acquireUninterruptibly();
+			CompletionStage<Boolean> result;
+			try {
+				result = this.ingestAsync(volumeId, volume.getValue());
+			} catch (RuntimeException e) {
+				log.error("exception while trying to update the column of {}", volumeId, e);
+				failedVolumeIds.add(volumeId);
+				inFlightPermits.release();
+				continue;
+			}
+			result.whenComplete((res, e) -> {
+				if (e != null || !res) {
+					failedVolumeIds.add(volumeId);
+				}
+				inFlightPermits.release();
+			});
+		}
+		// wait for the updates in flight
+		inFlightPermits.acquireUninterruptibly(this.maxInFlight);
+		return new ArrayList<String>(failedVolumeIds);
+	}
+
+	// sets the ids of the volumes in the column family, so that updates are plain UPDATE statements of these volumes; null to check that
+	// volumes exist with "UPDATE ... IF EXISTS" again. Not to be called while updates are in flight
+	public void setExistingVolumeIds(Set<String> existingVolumeIds) {
+		this.existingVolumeIds = existingVolumeIds;
+	}
+
+	// the update of the column and the last modified time of a volume, without IF EXISTS; the bind markers are the column value, the last
+	// modified time, and the volume id
+	abstract Update buildUpdate();
+
+	// returns the prepared update statement, i.e., the update returned by buildUpdate, with IF EXISTS unless the existing volumes are known
+	PreparedStatement getUpdatePrepStmt() {
+		if (this.existingVolumeIds != null) {
+			if (this.updatePrepStmt == null) {
+				this.updatePrepStmt = csdConnector.prepare(this.buildUpdate().toString());
+			}
+			return this.updatePrepStmt;
+		}
+		if (this.conditionalUpdatePrepStmt == null) {
+			this.conditionalUpdatePrepStmt = csdConnector.prepare(this.buildUpdate().ifExists().toString());
+		}
+		return this.conditionalUpdatePrepStmt;
+	}
+
+	// true if the ids of the volumes in the column family are known, so that volumes that are not in it can be found before they are updated
+	public boolean knowsExistingVolumes() {
+		return this.existingVolumeIds != null;
+	}
+
+	// false if the volume is known not to be in the column family, in which case it is not updated
+	public boolean mayExist(String volumeId) {
+		Set<String> existingVolumeIds = this.existingVolumeIds;
+		return existingVolumeIds == null || existingVolumeIds.contains(volumeId);
+	}
+
+	// returns whether the update of a volume that may exist, whose result set is given, was applied
+	boolean getResultOfUpdate(ResultSet rs) {
+		return this.existingVolumeIds != null || getResultOfUpdateIfExists(rs);
+	}
+
+	boolean getResultOfUpdate(AsyncResultSet rs) {
+		return this.existingVolumeIds != null || getResultOfUpdateIfExists(rs);
+	}
+
 	boolean getResultOfUpdateIfExists(ResultSet rs) {
+		return getResultOfUpdateIfExists(rs.one());
+	}
+
+	boolean getResultOfUpdateIfExists(AsyncResultSet rs) {
+		return getResultOfUpdateIfExists(rs.one());
+	}
+
+	private boolean getResultOfUpdateIfExists(Row row) {
 		// the ResultSet of an "UPDATE ... IF EXISTS" statement contains one row,
 		// with one boolean column named "[applied]"
-		Row row = rs.one(); 
 		if (row != null) {
 			try {
 				return row.getBoolean(0);
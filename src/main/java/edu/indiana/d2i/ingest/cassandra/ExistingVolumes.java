@@ -0,0 +1,221 @@
+package edu.indiana.d2i.ingest.cassandra;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.cql.SimpleStatement;
+
+import edu.indiana.d2i.ingest.Constants;
+import edu.indiana.d2i.ingest.redis.RedisAvailStatusUpdater;
+import edu.indiana.d2i.ingest.redis.RedisClient;
+import edu.indiana.d2i.ingest.util.Configuration;
+import edu.indiana.d2i.ingest.util.VolumeIdReader;
+import edu.indiana.d2i.ingest.util.VolumeIdSet;
+
+/*
+ * Class that takes a snapshot of the ids of the volumes in the volume text column family, so that ColumnIngester can update the columns of
+ * these volumes with plain UPDATEs instead of "UPDATE ... IF EXISTS" lightweight transactions. COLUMN_INGEST_EXISTING_VOLUMES_FROM selects
+ * where the ids are read from:
+ *   cassandra - the partition keys of the column family, read with "SELECT DISTINCT" over SCAN_SPLITS_PER_THREAD ranges of tokens per thread
+ *               of COLUMN_INGEST_EXISTING_VOLUMES_SCAN_THREADS, which are scanned in parallel, as CassandraScanner scans the whole table
+ *   redis     - the volumes whose availability status in Redis is "true" (see RedisAvailStatusUpdater), and the volumes in
+ *               CASSANDRA_INGESTER_SUCCESS, since IngestService sets the availability status of the volumes ingested into Cassandra only
+ *               after their MARC records have been ingested
+ *   (empty)   - the file COLUMN_INGEST_EXISTING_VOLUME_IDS, if set; otherwise, there is no snapshot, and updates check that volumes exist
+ * The ids are streamed into a VolumeIdSet as they are read, so that they are never all held as Strings. The snapshot is taken once per
+ * process, when it is first needed. If the ids cannot all be read, there is no snapshot, since a volume missing from it would not be
+ * updated.
+ */
+public class ExistingVolumes {
+	private static Logger log = LogManager.getLogger(ExistingVolumes.class);
+
+	private static final int SCAN_SPLITS_PER_THREAD = 16;
+	private static final int SCAN_PAGE_SIZE = 5000;
+	private static final int MAX_SCAN_ATTEMPTS = 3;
+	private static final int QUEUE_CAPACITY = 1 << 14;
+	// marks the end of the ids in the queue; compared by identity
+	private static final String END_OF_IDS = new String("");
+
+	private static Set<String> snapshot = null;
+	private static boolean snapshotTaken = false;
+
+	// a source of volume ids, which passes the ids it reads to the consumer
+	private interface IdProducer {
+		void produce(Consumer<String> ids) throws Exception;
+	}
+
+	// returns the snapshot of the ids of the volumes in the column family, as configured, taking it on first use; null if there is none
+	public static synchronized Set<String> fromConfiguration() {
+		if (snapshotTaken) {
+			return snapshot;
+		}
+		String source = Configuration.getProperty(Constants.PK_COLUMN_INGEST_EXISTING_VOLUMES_FROM, Constants.DEFAULT_COLUMN_INGEST_EXISTING_VOLUMES_FROM).trim();
+		long start = System.currentTimeMillis();
+		if (source.equalsIgnoreCase("cassandra")) {
+			int numThreads = Integer.parseInt(Configuration.getProperty(Constants.PK_COLUMN_INGEST_EXISTING_VOLUMES_SCAN_THREADS, Constants.DEFAULT_COLUMN_INGEST_EXISTING_VOLUMES_SCAN_THREADS));
+			String table = Configuration.getProperty(Constants.PK_VOLUME_TEXT_COLUMN_FAMILY, Constants.DEFAULT_VOLUME_TEXT_COLUMN_FAMILY);
+			String key = Configuration.getProperty(Constants.PK_VOLUME_TEXT_COLUMN_FAMILY_KEY, Constants.DEFAULT_VOLUME_TEXT_COLUMN_FAMILY_KEY);
+			snapshot = fromCassandra(CassandraManager.getInstance(), table, key, Math.max(1, numThreads));
+		} else if (source.equalsIgnoreCase("redis")) {
+			String ingestedVolumeIds = Configuration.getProperty("CASSANDRA_INGESTER_SUCCESS");
+			snapshot = fromRedis(new RedisAvailStatusUpdater(new RedisClient()), (ingestedVolumeIds == null) ? null : new File(ingestedVolumeIds.trim()));
+		} else if (!source.isEmpty()) {
+			log.error("unknown source of existing volumes " + source + "; updates check that volumes exist");
+		} else {
+			String file = Configuration.getProperty(Constants.PK_COLUMN_INGEST_EXISTING_VOLUME_IDS, Constants.DEFAULT_COLUMN_INGEST_EXISTING_VOLUME_IDS).trim();
+			if (!file.isEmpty()) {
+				source = file;
+				snapshot = VolumeIdSet.of(new VolumeIdReader(new File(file)));
+			}
+		}
+		if (snapshot != null) {
+			log.info("read the ids of " + snapshot.size() + " existing volumes from " + source + " in " + (System.currentTimeMillis() - start) / 1000.0 + " seconds");
+		}
+		snapshotTaken = true;
+		return snapshot;
+	}
+
+	// reads the partition keys of the table, over numThreads * SCAN_SPLITS_PER_THREAD ranges of tokens of the Murmur3Partitioner, which are
+	// scanned by numThreads threads; returns null if a range could not be scanned
+	public static VolumeIdSet fromCassandra(CassandraManager csdConnector, String table, String key, int numThreads) {
+		String query = "SELECT DISTINCT " + key + " FROM " + table + " WHERE token(" + key + ") > ? AND token(" + key + ") <= ?";
+		int numSplits = numThreads * SCAN_SPLITS_PER_THREAD;
+		// Long.MIN_VALUE is never the token of a key, so the ranges (bounds[i], bounds[i + 1]] cover all the tokens
+		BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+		BigInteger range = BigInteger.valueOf(Long.MAX_VALUE).subtract(min);
+		List<IdProducer> producers = new ArrayList<IdProducer>(numSplits);
+		for (int i = 0; i < numSplits; i++) {
+			long lower = min.add(range.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(numSplits))).longValue();
+			long upper = min.add(range.multiply(BigInteger.valueOf(i + 1)).divide(BigInteger.valueOf(numSplits))).longValue();
+			producers.add(ids -> {
+				for (int attempt = 1; ; attempt++) {
+					try {
+						// ids read by a failed attempt are read again; the duplicates are dropped by VolumeIdSet
+						ResultSet resultSet = csdConnector.executeWithoutRetry(SimpleStatement.newInstance(query, lower, upper).setPageSize(SCAN_PAGE_SIZE));
+						for (Row row : resultSet) {
+							ids.accept(row.getString(0));
+						}
+						return;
+					} catch (RuntimeException e) {
+						if (attempt >= MAX_SCAN_ATTEMPTS) {
+							throw e;
+						}
+						log.warn("scan of tokens (" + lower + ", " + upper + "] of " + table + " failed, trying again: " + e.getMessage());
+					}
+				}
+			});
+		}
+		return collect("cassandra", producers, numThreads);
+	}
+
+	// reads the ids of the volumes that are available according to Redis, and the ids in ingestedVolumeIds, if it is not null and exists, i.e.,
+	// of volumes ingested into Cassandra that may not be available yet; returns null if they could not all be read
+	public static VolumeIdSet fromRedis(RedisAvailStatusUpdater availStatusUpdater, File ingestedVolumeIds) {
+		List<IdProducer> producers = new ArrayList<IdProducer>(2);
+		producers.add(ids -> {
+			if (!availStatusUpdater.getAvailableVolumeIds(ids)) {
+				throw new IllegalStateException("unable to read availability status of volumes from redis");
+			}
+		});
+		if (ingestedVolumeIds != null && ingestedVolumeIds.isFile()) {
+			producers.add(ids -> new VolumeIdReader(ingestedVolumeIds).forEach(ids));
+		}
+		return collect("redis", producers, producers.size());
+	}
+
+	// runs the producers on numThreads threads, and builds the set of the ids they produce on the calling thread; returns null if a producer
+	// fails
+	private static VolumeIdSet collect(String source, List<IdProducer> producers, int numThreads) {
+		BlockingQueue<String> queue = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+		AtomicBoolean failed = new AtomicBoolean(false);
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+			Thread thread = new Thread(runnable, "existing-volumes-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			List<CompletableFuture<Void>> results = new ArrayList<CompletableFuture<Void>>(producers.size());
+			for (IdProducer producer : producers) {
+				results.add(CompletableFuture.runAsync(() -> {
+					if (failed.get()) {
+						return;
+					}
+					try {
+						producer.produce(id -> {
+							if (failed.get()) {
+								throw new IllegalStateException("the read of existing volumes has failed");
+							}
+							put(queue, id);
+						});
+					} catch (Exception e) {
+						if (!failed.getAndSet(true)) {
+							log.error("unable to read the ids of existing volumes from " + source, e);
+						}
+					}
+				}, executor));
+			}
+			CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).whenComplete((result, e) -> put(queue, END_OF_IDS));
+
+			VolumeIdSet volumeIds = VolumeIdSet.of(() -> new Iterator<String>() {
+				private String next = null;
+
+				@Override
+				public boolean hasNext() {
+					if (next == null) {
+						next = take(queue);
+					}
+					return next != END_OF_IDS;
+				}
+				@Override
+				public String next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					String id = next;
+					next = null;
+					return id;
+				}
+			});
+			return failed.get() ? null : volumeIds;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void put(BlockingQueue<String> queue, String id) {
+		try {
+			queue.put(id);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while reading the ids of existing volumes", e);
+		}
+	}
+
+	private static String take(BlockingQueue<String> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while reading the ids of existing volumes", e);
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package edu.indiana.d2i.ingest.cassandra;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import edu.indiana.d2i.ingest.Constants;
+import edu.indiana.d2i.ingest.util.Configuration;
+
+/*
+ * Class that scans MARC json files, one MARC record per line, in parallel. Each file is split into chunks of about chunkBytes, whose
+ * boundaries are moved to the next line break, so that every line is read by exactly one chunk; the chunks of all the files are read and
+ * parsed on a ForkJoinPool, and the records, with their volume ids, are handed to the calling thread through a bounded queue of
+ * queueCapacity records, so that the parsers wait while the caller falls behind. Records are handed over in no particular order. The
+ * volume id of a line is found by MarcVolumeIdScanner, without parsing the line into json objects. MarcVolumeIdScanner does not validate
+ * the values it skips, so records that are to be ingested are selected by a volume id filter, and parsed in full, on the scanning threads,
+ * before they are handed over. Lines that cannot be parsed, or that have no volume id, are logged with the file and the byte offset of the
+ * line, and skipped.
+ */
+public class MarcFileScanner {
+	private static Logger logger = LogManager.getLogger(MarcFileScanner.class);
+
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+
+	// a MARC record and its volume id
+	public static class MarcRecord {
+		private final String volumeId;
+		private final String json;
+		private final long offset;
+		private final int length;
+
+		MarcRecord(String volumeId, String json, long offset, int length) {
+			this.volumeId = volumeId;
+			this.json = json;
+			this.offset = offset;
+			this.length = length;
+		}
+		public String getVolumeId() {
+			return volumeId;
+		}
+		// the line of the MARC json file that holds the record
+		public String getJson() {
+			return json;
+		}
+		// the position of the line in the file, in bytes
+		public long getOffset() {
+			return offset;
+		}
+		// the length of the line in bytes, without the line break
+		public int getLength() {
+			return length;
+		}
+	}
+
+	// marks the end of the records in the queue; compared by identity
+	private static final MarcRecord END_OF_RECORDS = new MarcRecord(null, null, -1, 0);
+
+	private final int parallelism;
+	private final long chunkBytes;
+	private final int queueCapacity;
+
+	public MarcFileScanner(int parallelism, long chunkBytes, int queueCapacity) {
+		this.parallelism = Math.max(1, parallelism);
+		this.chunkBytes = Math.max(READ_BUFFER_SIZE, chunkBytes);
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+
+	// creates a scanner with MARC-SCAN-THREADS threads, chunks of MARC-SCAN-CHUNK-MB, and a queue of MARC-SCAN-QUEUE-CAPACITY records
+	public static MarcFileScanner fromConfiguration() {
+		int numThreads = Integer.parseInt(Configuration.getProperty(Constants.PK_MARC_SCAN_THREADS, Constants.DEFAULT_MARC_SCAN_THREADS));
+		if (numThreads <= 0) {
+			numThreads = Runtime.getRuntime().availableProcessors();
+		}
+		long chunkBytes = Long.parseLong(Configuration.getProperty(Constants.PK_MARC_SCAN_CHUNK_MB, Constants.DEFAULT_MARC_SCAN_CHUNK_MB)) * 1024 * 1024;
+		int queueCapacity = Integer.parseInt(Configuration.getProperty(Constants.PK_MARC_SCAN_QUEUE_CAPACITY, Constants.DEFAULT_MARC_SCAN_QUEUE_CAPACITY));
+		return new MarcFileScanner(numThreads, chunkBytes, queueCapacity);
+	}
+
+	// scans all the given files at once, and calls the handler, on the calling thread, for each record found; stops scanning once the handler
+	// returns false. Only the volume ids of the records are read, so the rest of the json of a record may be malformed
+	public void scan(List<File> files, Predicate<MarcRecord> handler) throws InterruptedException {
+		scan(files, null, handler);
+	}
+
+	// as scan(files, handler), for the records whose volume ids are accepted by volumeIdFilter, which is called on the scanning threads, so
+	// must be thread-safe; the records accepted are parsed in full, on the scanning threads, and only those that are valid json are handed
+	// over
+	public void scan(List<File> files, Predicate<String> volumeIdFilter, Predicate<MarcRecord> handler) throws InterruptedException {
+		BlockingQueue<MarcRecord> queue = new ArrayBlockingQueue<MarcRecord>(queueCapacity);
+		AtomicBoolean stopped = new AtomicBoolean(false);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<CompletableFuture<Void>> fileScans = new ArrayList<CompletableFuture<Void>>(files.size());
+			for (File file : files) {
+				fileScans.add(scanFile(file, volumeIdFilter, queue, stopped, pool));
+			}
+			CompletableFuture.allOf(fileScans.toArray(new CompletableFuture<?>[0])).whenComplete((result, e) -> {
+				putUnlessStopped(queue, END_OF_RECORDS, stopped);
+			});
+
+			MarcRecord record;
+			while ((record = queue.take()) != END_OF_RECORDS) {
+				if (!handler.test(record)) {
+					break;
+				}
+			}
+		} finally {
+			// the parsers still running, if the handler stopped the scan, drop their records
+			stopped.set(true);
+			queue.clear();
+			pool.shutdownNow();
+		}
+	}
+
+	// scans the chunks of the file on the pool; the returned future completes once all of them have been scanned
+	private CompletableFuture<Void> scanFile(File file, Predicate<String> volumeIdFilter, BlockingQueue<MarcRecord> queue, AtomicBoolean stopped,
+			ForkJoinPool pool) {
+		if (!file.isFile()) {
+			logger.error("MARC_INGESTER: marc json file {} not found", file);
+			return CompletableFuture.completedFuture(null);
+		}
+		long length = file.length();
+		AtomicLong numRecords = new AtomicLong();
+		List<CompletableFuture<Void>> chunkScans = new ArrayList<CompletableFuture<Void>>();
+		for (long start = 0; start < length; start += chunkBytes) {
+			long chunkStart = start;
+			long chunkEnd = Math.min(length, start + chunkBytes);
+			chunkScans.add(CompletableFuture.runAsync(() -> numRecords.addAndGet(scanChunk(file, chunkStart, chunkEnd, volumeIdFilter, queue, stopped)), pool));
+		}
+		logger.info("MARC_INGESTER: scanning {} in {} chunks", file, chunkScans.size());
+		return CompletableFuture.allOf(chunkScans.toArray(new CompletableFuture<?>[0])).whenComplete((result, e) -> {
+			if (e != null) {
+				logger.error("MARC_INGESTER: Exception while reading marc json file {}", file, e);
+			} else {
+				logger.info("MARC_INGESTER: Processed {} records in file {}", numRecords.get(), file);
+			}
+		});
+	}
+
+	// reads and parses the lines that start in [start, end) of the file, handing over those accepted by volumeIdFilter, if not null; returns
+	// the number of records handed over
+	private long scanChunk(File file, long start, long end, Predicate<String> volumeIdFilter, BlockingQueue<MarcRecord> queue,
+			AtomicBoolean stopped) {
+		long numRecords = 0;
+		JSONParser parser = new JSONParser();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long position = start;
+			if (start > 0) {
+				// a line starts at start only if the previous byte is a line break; otherwise the line is read by the previous chunk
+				ByteBuffer previous = ByteBuffer.allocate(1);
+				channel.read(previous, start - 1);
+				if (previous.get(0) != '\n') {
+					position = -1;
+				}
+			}
+			channel.position(start);
+			LineReader reader = new LineReader(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_SIZE), start);
+			if (position < 0) {
+				reader.skipLine();
+			}
+			while (!stopped.get()) {
+				long lineStart = reader.getPosition();
+				if (lineStart >= end) {
+					break;
+				}
+				String line = reader.readLine();
+				if (line == null) {
+					break;
+				}
+				if (line.isEmpty()) {
+					continue;
+				}
+				try {
+					String volumeId = MarcVolumeIdScanner.getVolumeId(line);
+					boolean parsed = false;
+					if (volumeId == null) {
+						// parsed in full if the volume id cannot be found without, e.g., if the line is malformed, so that the error is
+						// reported
+						volumeId = MarcProcessor.getVolumeIdFromMarc((JSONObject) parser.parse(line));
+						parsed = true;
+					}
+					if (volumeId.equals(MarcProcessor.NO_VOLID_FOUND_STR)) {
+						logger.error("MARC_INGESTER: No volume id found in line at byte {} of file {}", lineStart, file);
+						continue;
+					}
+					if (volumeIdFilter != null) {
+						if (!volumeIdFilter.test(volumeId)) {
+							continue;
+						}
+						if (!parsed) {
+							String parsedVolumeId = MarcProcessor.getVolumeIdFromMarc((JSONObject) parser.parse(line));
+							if (!parsedVolumeId.equals(volumeId)) {
+								logger.error("MARC_INGESTER: Volume id {} of parsed line at byte {} of file {} is not {}", parsedVolumeId, lineStart, file, volumeId);
+								continue;
+							}
+						}
+					}
+					putUnlessStopped(queue, new MarcRecord(volumeId, line, lineStart, reader.getLineLength()), stopped);
+					numRecords++;
+				} catch (ParseException e) {
+					logger.error("MARC_INGESTER: Exception while parsing line at byte {} of file {}", lineStart, file, e);
+				} catch (Exception e) {
+					logger.error("MARC_INGESTER: Exception while reading json at byte {} of file {}", lineStart, file, e);
+				}
+			}
+		} catch (IOException e) {
+			if (stopped.get()) {
+				// e.g., the channel was closed by shutdownNow()
+				return numRecords;
+			}
+			logger.error("MARC_INGESTER: Exception while reading bytes {} to {} of marc json file {}", start, end, file, e);
+		}
+		return numRecords;
+	}
+
+	private static void putUnlessStopped(BlockingQueue<MarcRecord> queue, MarcRecord record, AtomicBoolean stopped) {
+		try {
+			while (!stopped.get()) {
+				if (queue.offer(record, 100, TimeUnit.MILLISECONDS)) {
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// reads UTF-8 lines from a stream, keeping track of the position, in bytes, of the next line in the file
+	private static class LineReader {
+		private final InputStream in;
+		private long position;
+		private byte[] line = new byte[1 << 14];
+		// length in bytes of the last line read, without its line break
+		private int lineLength = 0;
+
+		LineReader(InputStream in, long position) {
+			this.in = in;
+			this.position = position;
+		}
+
+		long getPosition() {
+			return position;
+		}
+
+		int getLineLength() {
+			return lineLength;
+		}
+
+		void skipLine() throws IOException {
+			int b;
+			while ((b = in.read()) >= 0) {
+				position++;
+				if (b == '\n') {
+					return;
+				}
+			}
+		}
+
+		// returns the next line, without its line break, or null at the end of the stream
+		String readLine() throws IOException {
+			int length = 0;
+			int b;
+			while ((b = in.read()) >= 0) {
+				position++;
+				if (b == '\n') {
+					break;
+				}
+				if (length == line.length) {
+					line = Arrays.copyOf(line, line.length * 2);
+				}
+				line[length++] = (byte) b;
+			}
+			if (b < 0 && length == 0) {
+				return null;
+			}
+			if (length > 0 && line[length - 1] == '\r') {
+				length--;
+			}
+			lineLength = length;
+			return new String(line, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,339 @@
+package edu.indiana.d2i.ingest.cassandra;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import edu.indiana.d2i.ingest.Constants;
+import edu.indiana.d2i.ingest.util.Configuration;
+import edu.indiana.d2i.ingest.util.VolumeIdReader;
+
+/*
+ * Class that finds the MARC record of a volume in the MARC json files without scanning them, for ingests of a few volumes. Each MARC json
+ * file has an index file, <name>.idx in the index directory, which maps the 64-bit hash of each volume id in the file (see
+ * VolumeIdReader.hash) to the position and length of the line that holds its record. The index file starts with a header that identifies
+ * the MARC file by its length and modification time, followed by the entries, 16 bytes each, sorted by hash, and is memory-mapped and
+ * searched by binary search. The line found is read from the MARC file, and its volume id compared with the one looked up, so that a hash
+ * collision, or a MARC file changed after the index was opened, does not return the record of another volume.
+ *
+ * An index file is built when the index is opened, by scanning its MARC file with MarcFileScanner, if it does not exist or its MARC file has
+ * changed since it was built; the index files of unchanged MARC files are kept. Index files are written to a temporary file that is then
+ * renamed, so that an interrupted build leaves no partial index. Lines longer than MAX_LINE_LENGTH are not indexed.
+ */
+public class MarcIndex implements AutoCloseable {
+	private static Logger log = LogManager.getLogger(MarcIndex.class);
+
+	private static final long MAGIC = 0x485452434d524331L; // "HTRCMRC1"
+	private static final int HEADER_SIZE = 32;
+	private static final int ENTRY_SIZE = 16;
+	// an entry holds the hash, and the offset of the line in the high 40 bits of a long with its length in the low 24 bits
+	private static final int LENGTH_BITS = 24;
+	private static final int MAX_LINE_LENGTH = (1 << LENGTH_BITS) - 1;
+	private static final long MAX_OFFSET = (1L << (64 - LENGTH_BITS)) - 1;
+	private static final String INDEX_SUFFIX = ".idx";
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	// the index of one MARC json file
+	private static class FileIndex {
+		private final File marcFile;
+		private final FileChannel marcChannel;
+		private final MappedByteBuffer entries;
+		private final int numEntries;
+
+		FileIndex(File marcFile, FileChannel marcChannel, MappedByteBuffer entries, int numEntries) {
+			this.marcFile = marcFile;
+			this.marcChannel = marcChannel;
+			this.entries = entries;
+			this.numEntries = numEntries;
+		}
+		long getHash(int i) {
+			return entries.getLong(HEADER_SIZE + i * ENTRY_SIZE);
+		}
+		long getPosition(int i) {
+			return entries.getLong(HEADER_SIZE + i * ENTRY_SIZE + 8);
+		}
+		// returns the index of the first entry with the given hash, or -1 if there is none
+		int find(long hash) {
+			int low = 0;
+			int high = numEntries;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (getHash(mid) < hash) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return (low < numEntries && getHash(low) == hash) ? low : -1;
+		}
+	}
+
+	private final List<FileIndex> fileIndexes;
+
+	private MarcIndex(List<FileIndex> fileIndexes) {
+		this.fileIndexes = fileIndexes;
+	}
+
+	// opens the index of MARC-JSON-FILES in MARC-INDEX-DIR, building the index files that are missing or out of date; returns null if
+	// MARC-INDEX-DIR is not set, or the index cannot be opened
+	public static MarcIndex fromConfiguration() {
+		String indexDir = Configuration.getProperty(Constants.PK_MARC_INDEX_DIR, Constants.DEFAULT_MARC_INDEX_DIR).trim();
+		if (indexDir.isEmpty()) {
+			return null;
+		}
+		String marcJsonFilesFolder = Configuration.getProperty(Constants.PK_MARC_JSON_FILES_FOLDER, Constants.DEFAULT_MARC_JSON_FILES_FOLDER);
+		List<File> marcFiles = new ArrayList<File>();
+		for (String marcJsonFile : Configuration.getProperty(Constants.PK_MARC_JSON_FILES, Constants.DEFAULT_MARC_JSON_FILES).split(",")) {
+			marcFiles.add(new File(marcJsonFilesFolder, marcJsonFile.trim()));
+		}
+		try {
+			return open(new File(indexDir), marcFiles, MarcFileScanner.fromConfiguration());
+		} catch (IOException e) {
+			log.error("unable to open the MARC index in " + indexDir + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	// opens the index of the given MARC json files in indexDir; the files are searched in the order given
+	public static MarcIndex open(File indexDir, List<File> marcFiles, MarcFileScanner scanner) throws IOException {
+		if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+			throw new IOException("unable to create directory " + indexDir);
+		}
+		List<FileIndex> fileIndexes = new ArrayList<FileIndex>();
+		try {
+			for (File marcFile : marcFiles) {
+				if (!marcFile.isFile()) {
+					log.error("MARC json file " + marcFile + " not found; not indexed");
+					continue;
+				}
+				File indexFile = new File(indexDir, marcFile.getName() + INDEX_SUFFIX);
+				if (!isUpToDate(indexFile, marcFile)) {
+					build(marcFile, indexFile, scanner);
+				}
+				fileIndexes.add(openFileIndex(marcFile, indexFile));
+			}
+		} catch (IOException | RuntimeException e) {
+			new MarcIndex(fileIndexes).close();
+			throw e;
+		}
+		return new MarcIndex(fileIndexes);
+	}
+
+	// true if the index file was built from the MARC file as it is now
+	private static boolean isUpToDate(File indexFile, File marcFile) throws IOException {
+		if (!indexFile.isFile()) {
+			return false;
+		}
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "r")) {
+			if (randomAccessFile.length() < HEADER_SIZE || randomAccessFile.readLong() != MAGIC) {
+				return false;
+			}
+			long marcLength = randomAccessFile.readLong();
+			long marcModified = randomAccessFile.readLong();
+			long numEntries = randomAccessFile.readLong();
+			return marcLength == marcFile.length() && marcModified == marcFile.lastModified()
+					&& randomAccessFile.length() == HEADER_SIZE + numEntries * ENTRY_SIZE;
+		}
+	}
+
+	private static FileIndex openFileIndex(File marcFile, File indexFile) throws IOException {
+		FileChannel marcChannel = FileChannel.open(marcFile.toPath(), StandardOpenOption.READ);
+		try (FileChannel indexChannel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer entries = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+			int numEntries = (int) entries.getLong(24);
+			log.info("opened MARC index " + indexFile + " with " + numEntries + " volumes");
+			return new FileIndex(marcFile, marcChannel, entries, numEntries);
+		} catch (IOException | RuntimeException e) {
+			marcChannel.close();
+			throw e;
+		}
+	}
+
+	// builds the index file of the MARC file
+	private static void build(File marcFile, File indexFile, MarcFileScanner scanner) throws IOException {
+		long start = System.currentTimeMillis();
+		log.info("building MARC index " + indexFile + " of " + marcFile);
+		// read before the scan, so that a change during the scan makes the index out of date
+		long marcLength = marcFile.length();
+		long marcModified = marcFile.lastModified();
+
+		long[][] entries = { new long[1 << 16], new long[1 << 16] };
+		int[] numEntries = { 0 };
+		try {
+			scanner.scan(Collections.singletonList(marcFile), record -> {
+				if (record.getLength() > MAX_LINE_LENGTH || record.getOffset() > MAX_OFFSET) {
+					log.warn("MARC record of " + record.getVolumeId() + " at byte " + record.getOffset() + " of " + marcFile + " is too long; not indexed");
+					return true;
+				}
+				int n = numEntries[0];
+				if (n == entries[0].length) {
+					entries[0] = Arrays.copyOf(entries[0], n * 2);
+					entries[1] = Arrays.copyOf(entries[1], n * 2);
+				}
+				entries[0][n] = VolumeIdReader.hash(record.getVolumeId());
+				entries[1][n] = (record.getOffset() << LENGTH_BITS) | record.getLength();
+				numEntries[0] = n + 1;
+				return true;
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while building MARC index " + indexFile);
+		}
+		int n = numEntries[0];
+		if (HEADER_SIZE + (long) n * ENTRY_SIZE > Integer.MAX_VALUE) {
+			throw new IOException("too many MARC records in " + marcFile + " to index");
+		}
+		sort(entries[0], entries[1], 0, n - 1);
+
+		File tmpFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16))) {
+				out.writeLong(MAGIC);
+				out.writeLong(marcLength);
+				out.writeLong(marcModified);
+				out.writeLong(n);
+				for (int i = 0; i < n; i++) {
+					out.writeLong(entries[0][i]);
+					out.writeLong(entries[1][i]);
+				}
+			}
+			Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmpFile.toPath());
+		}
+		log.info("built MARC index " + indexFile + " of " + n + " volumes in " + (System.currentTimeMillis() - start) / 1000.0 + " seconds");
+	}
+
+	// quicksort of the entries in [low..high] by hash, with insertion sort for short ranges; recurses into the shorter part only
+	private static void sort(long[] hashes, long[] positions, int low, int high) {
+		while (high - low >= INSERTION_SORT_THRESHOLD) {
+			int mid = (low + high) >>> 1;
+			// median of three as the pivot
+			if (hashes[mid] < hashes[low]) {
+				swap(hashes, positions, mid, low);
+			}
+			if (hashes[high] < hashes[low]) {
+				swap(hashes, positions, high, low);
+			}
+			if (hashes[high] < hashes[mid]) {
+				swap(hashes, positions, high, mid);
+			}
+			long pivot = hashes[mid];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (hashes[i] < pivot) {
+					i++;
+				}
+				while (hashes[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(hashes, positions, i++, j--);
+				}
+			}
+			if (j - low < high - i) {
+				sort(hashes, positions, low, j);
+				low = i;
+			} else {
+				sort(hashes, positions, i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			long hash = hashes[i];
+			long position = positions[i];
+			int j = i - 1;
+			while (j >= low && hashes[j] > hash) {
+				hashes[j + 1] = hashes[j];
+				positions[j + 1] = positions[j];
+				j--;
+			}
+			hashes[j + 1] = hash;
+			positions[j + 1] = position;
+		}
+	}
+
+	private static void swap(long[] hashes, long[] positions, int i, int j) {
+		long t = hashes[i];
+		hashes[i] = hashes[j];
+		hashes[j] = t;
+		t = positions[i];
+		positions[i] = positions[j];
+		positions[j] = t;
+	}
+
+	// returns the MARC record of the volume, i.e., the line that holds it in the first MARC json file that has it, or null if no file has
+	// it; may be called from any thread
+	public String getMarc(String volumeId) throws IOException {
+		long hash = VolumeIdReader.hash(volumeId);
+		for (FileIndex fileIndex : fileIndexes) {
+			int i = fileIndex.find(hash);
+			if (i < 0) {
+				continue;
+			}
+			for (; i < fileIndex.numEntries && fileIndex.getHash(i) == hash; i++) {
+				long position = fileIndex.getPosition(i);
+				String line = readLine(fileIndex.marcChannel, position >>> LENGTH_BITS, (int) (position & MAX_LINE_LENGTH));
+				if (volumeId.equals(getVolumeId(line))) {
+					return line;
+				}
+				log.debug("MARC index entry of " + volumeId + " in " + fileIndex.marcFile + " is of another volume");
+			}
+		}
+		return null;
+	}
+
+	private static String readLine(FileChannel channel, long offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				break;
+			}
+		}
+		return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+	}
+
+	// the volume id of the MARC record in the line, or null if there is none; the line is parsed in full, rather than scanned by
+	// MarcVolumeIdScanner, which does not validate the values it skips, so that a line that is not valid json is not returned
+	private static String getVolumeId(String line) {
+		try {
+			return MarcProcessor.getVolumeIdFromMarc((JSONObject) new JSONParser().parse(line));
+		} catch (ParseException | RuntimeException e) {
+			// e.g., the MARC file has changed since the index was opened
+			return null;
+		}
+	}
+
+	@Override
+	public void close() {
+		for (FileIndex fileIndex : fileIndexes) {
+			try {
+				fileIndex.marcChannel.close();
+			} catch (IOException e) {
+				log.error("error while closing " + fileIndex.marcFile, e);
+			}
+		}
+	}
+}
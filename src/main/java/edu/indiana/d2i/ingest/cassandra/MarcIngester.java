@@ -1,14 +1,15 @@
 package edu.indiana.d2i.ingest.cassandra;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
-import com.datastax.oss.driver.api.querybuilder.BuildableQuery;
 import com.datastax.oss.driver.api.querybuilder.QueryBuilder;
+import com.datastax.oss.driver.api.querybuilder.update.Update;
 
 //import com.datastax.driver.core.PreparedStatement;
 //import com.datastax.driver.core.ResultSet;
@@ -28,7 +29,6 @@ public class MarcIngester extends ColumnIngester<String> {
 	
 	private String marcColumn;
 	private String lastModTimeColName;
-	private PreparedStatement marcUpdatePrepStmt = null;
 	
 	public MarcIngester() {
 		super();
@@ -45,40 +45,65 @@ public class MarcIngester extends ColumnIngester<String> {
 	}
 	
 	// update the marc column, and the lastModifiedTime column corresponding to the given volume id with the given marc record; the update takes
-	// place only if the column family contains the volume id
+	// place only if the column family contains the volume id, or, if the existing volumes are known, the volume is one of them
 	@Override
 	public boolean ingest(String volumeId, String marc) {
+		if (!this.mayExist(volumeId)) {
+			return this.checkUpdateResult(volumeId, false);
+		}
 		try {
-			if (this.marcUpdatePrepStmt == null) {
-				/*Update.IfExists updVolMarc = QueryBuilder.update(this.volTextColFamily)
-						.with(QueryBuilder.set(this.marcColumn, QueryBuilder.bindMarker()))
-						.and(QueryBuilder.set("semanticMetadataType", "MARC")) // hard code it there for marc ingester for now
-						.and(QueryBuilder.set(this.lastModTimeColName, QueryBuilder.bindMarker()))
-						.where(QueryBuilder.eq(this.volTextColFamilyKey, QueryBuilder.bindMarker()))
-						.ifExists();*/			
-				BuildableQuery updVolMarc = QueryBuilder.update(this.volTextColFamily)
-						.setColumn(this.marcColumn, QueryBuilder.bindMarker())
-						.setColumn("semanticMetadataType", QueryBuilder.literal("MARC"))
-						.setColumn(this.lastModTimeColName, QueryBuilder.bindMarker())
-						.whereColumn(this.volTextColFamilyKey)
-						.isEqualTo(QueryBuilder.bindMarker())
-						.ifExists();
-				this.marcUpdatePrepStmt = csdConnector.prepare(updVolMarc.toString());
-			}
-			ResultSet rs = csdConnector.execute(this.marcUpdatePrepStmt.bind(marc, new Date(), volumeId));
+			ResultSet rs = csdConnector.execute(this.getUpdatePrepStmt().bind(marc, new Date(), volumeId));
 			if (rs == null) {
 				logger.error("MARC_INGESTER: error while trying to update {} for {} in table {}", this.marcColumn, volumeId, this.volTextColFamily);
 				return false;
 			} else {
-				boolean res = this.getResultOfUpdateIfExists(rs);
-				if (!res) {
-					logger.error("MARC_INGESTER: {} not found in table {}; marc update failed", volumeId, this.volTextColFamily);
-				}
-				return res;
+				return this.checkUpdateResult(volumeId, this.getResultOfUpdate(rs));
 			}
 		} catch (Exception e) {
 			logger.error("MARC_INGESTER: Exception while trying to update {} for {} in table {}", this.marcColumn, volumeId, this.volTextColFamily, e);
 			return false;
 		}
 	}
+
+	@Override
+	public CompletionStage<Boolean> ingestAsync(String volumeId, String marc) {
+		if (!this.mayExist(volumeId)) {
+			return CompletableFuture.completedFuture(this.checkUpdateResult(volumeId, false));
+		}
+		try {
+			return csdConnector.executeAsyncWithRetry(this.getUpdatePrepStmt().bind(marc, new Date(), volumeId)).handle((rs, e) -> {
+				if (e != null) {
+					logger.error("MARC_INGESTER: Exception while trying to update {} for {} in table {}", this.marcColumn, volumeId, this.volTextColFamily, e);
+					return false;
+				}
+				return this.checkUpdateResult(volumeId, this.getResultOfUpdate(rs));
+			});
+		} catch (Exception e) {
+			logger.error("MARC_INGESTER: Exception while trying to update {} for {} in table {}", this.marcColumn, volumeId, this.volTextColFamily, e);
+			return CompletableFuture.completedFuture(false);
+		}
+	}
+
+	private boolean checkUpdateResult(String volumeId, boolean res) {
+		if (!res) {
+			logger.error("MARC_INGESTER: {} not found in table {}; marc update failed", volumeId, this.volTextColFamily);
+		}
+		return res;
+	}
+
+	@Override
+	Update buildUpdate() {
+		/*Update.IfExists updVolMarc = QueryBuilder.update(this.volTextColFamily)
+				.with(QueryBuilder.set(this.marcColumn, QueryBuilder.bindMarker()))
+				.and(QueryBuilder.set("semanticMetadataType", "MARC")) // hard code it there for marc ingester for now
+				.and(QueryBuilder.set(this.lastModTimeColName, QueryBuilder.bindMarker()))
+				.where(QueryBuilder.eq(this.volTextColFamilyKey, QueryBuilder.bindMarker()))
+				.ifExists();*/
+		return QueryBuilder.update(this.volTextColFamily)
+				.setColumn(this.marcColumn, QueryBuilder.bindMarker())
+				.setColumn("semanticMetadataType", QueryBuilder.literal("MARC"))
+				.setColumn(this.lastModTimeColName, QueryBuilder.bindMarker())
+				.whereColumn(this.volTextColFamilyKey)
+				.isEqualTo(QueryBuilder.bindMarker());
+	}
 }
@@ -1,17 +1,19 @@
 package edu.indiana.d2i.ingest.cassandra;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -22,11 +24,11 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.util.Configuration;
+import edu.indiana.d2i.ingest.util.VolumeIdReader;
+import edu.indiana.d2i.ingest.util.VolumeIdSet;
 
 public class MarcProcessor {
 	private static Logger logger = LogManager.getLogger(MarcProcessor.class);
@@ -43,12 +45,12 @@ public class MarcProcessor {
 	//	    ...
 	//	  ]
 	//	}
-	private static final String FIELDS_KEY = "fields";
-	private static final String KEY_IN_FIELDS_WITH_VOLID = "974";
-	private static final String SUBFIELDS_KEY = "subfields";
-	private static final String KEY_IN_SUBFIELDS_WITH_VOLID = "u";
+	static final String FIELDS_KEY = "fields";
+	static final String KEY_IN_FIELDS_WITH_VOLID = "974";
+	static final String SUBFIELDS_KEY = "subfields";
+	static final String KEY_IN_SUBFIELDS_WITH_VOLID = "u";
 
-	private static final String NO_VOLID_FOUND_STR = "no-volid-found";
+	static final String NO_VOLID_FOUND_STR = "no-volid-found";
 	
 	private String marcJsonFilesFolder;
 	private String[] marcJsonFiles;
@@ -63,11 +65,15 @@ public class MarcProcessor {
 		this.marcIngester = new MarcIngester();
 	}
 		
-	// processes (ingests) all marc records in all files in this.marcJsonFiles
+	// processes (ingests) all marc records in all files in this.marcJsonFiles; the files are processed in reverse order, each once the records
+	// of the previous one have been written, so that the record of a volume in several files that is written last, and kept, is the one
+	// in the first file, as with process() and MarcIndex
 	public void processAll() {
 		long start = System.currentTimeMillis();
 		logger.info("MARC_INGESTER: starting ingestion of all MARC records in files {}", arrayAsString(this.marcJsonFiles));
-		List<String> uningestedVolIds = this.processLoop(volId -> true, volId -> {}, () -> false);
+		List<File> files = this.getMarcJsonFiles();
+		Collections.reverse(files);
+		List<String> uningestedVolIds = this.processLoop(files, volId -> true, volId -> true, volId -> {}, () -> false);
 		logger.info("MARC_INGESTER: No. of volumes for which ingest was attempted but unsuccessful = {}", uningestedVolIds.size());
 		long end = System.currentTimeMillis();	
 		logger.info("MARC_INGESTER: Time taken = {} seconds", (end - start)/1000.0);
@@ -76,17 +82,14 @@ public class MarcProcessor {
 
 	// processes (ingests) marc records for volume ids in the given file, finding the corresponding marc records in this.marcJsonFiles
 	public void process(String volIdsFile) {
-		try (Stream<String> volIdsStream = Files.lines(Paths.get(volIdsFile))) {
-			this.process(volIdsStream.map(volId -> volId.trim()).collect(Collectors.toSet()));
-		} catch (IOException e) {
-			logger.error("MARC_INGESTER: Exception while reading file {}", volIdsFile, e);
-		}
+		this.process(new VolumeIdReader(new File(volIdsFile)));
 	}
 	
-	// processes (ingeste) marc records for volume ids in the given list, finding the corresponding marc records in this.marcJsonFiles
-	public void process(List<String> volIdsList) {
-		if (volIdsList != null) {
-			process(new HashSet<String>(volIdsList));
+	// processes (ingeste) marc records for the given volume ids, finding the corresponding marc records in this.marcJsonFiles; the ids are
+	// held in a VolumeIdSet, rather than a HashSet, while the marc json files are scanned
+	public void process(Iterable<String> volIds) {
+		if (volIds != null) {
+			process(VolumeIdSet.of(volIds));
 		}
 	}
 	
@@ -96,77 +99,155 @@ public class MarcProcessor {
 		long numVolIdsToProcess = volIdsSet.size();
 		long start = System.currentTimeMillis();	
 		logger.info("MARC_INGESTER: No. of volumes ids for which MARC records need to be ingested = {}", volIdsSet.size());
-		List<String> uningestedVolIds = processLoop(volId -> volIdsSet.contains(volId), volId -> volIdsSet.remove(volId), () -> volIdsSet.isEmpty());		
-		logger.info("MARC_INGESTER: Ingested MARC records for {} volumes", numVolIdsToProcess - (uningestedVolIds.size() + volIdsSet.size()));
+		// volumes known not to be in Cassandra are reported up front, instead of failing one by one
+		List<String> volIdsNotInCassandra = new ArrayList<String>();
+		if (this.marcIngester.knowsExistingVolumes()) {
+			for (Iterator<String> it = volIdsSet.iterator(); it.hasNext(); ) {
+				String volId = it.next();
+				if (!this.marcIngester.mayExist(volId)) {
+					volIdsNotInCassandra.add(volId);
+					it.remove();
+				}
+			}
+			logger.info("MARC_INGESTER: No. of volumes not in table {}, for which MARC records are not ingested = {}", this.marcIngester.getMarcColFamily(), 
+					volIdsNotInCassandra.size());
+		}
+		List<String> uningestedVolIds = null;
+		// the records of a few volumes are looked up in the MARC index, if there is one, instead of scanning the marc json files
+		if (numVolIdsToProcess <= Long.parseLong(Configuration.getProperty(Constants.PK_MARC_INDEX_MAX_VOLUMES, Constants.DEFAULT_MARC_INDEX_MAX_VOLUMES))) {
+			try (MarcIndex marcIndex = MarcIndex.fromConfiguration()) {
+				if (marcIndex != null) {
+					uningestedVolIds = processWithIndex(marcIndex, volIdsSet);
+				}
+			}
+		}
+		if (uningestedVolIds == null) {
+			// the scanning threads select the records to parse from a copy of the ids, since volIdsSet is modified as the records are found
+			Set<String> volIdsToFind = VolumeIdSet.of(volIdsSet);
+			uningestedVolIds = processLoop(this.getMarcJsonFiles(), volId -> volIdsToFind.contains(volId), volId -> volIdsSet.contains(volId), 
+					volId -> volIdsSet.remove(volId), () -> volIdsSet.isEmpty());
+		}
+		logger.info("MARC_INGESTER: Ingested MARC records for {} volumes", numVolIdsToProcess - (uningestedVolIds.size() + volIdsSet.size() + volIdsNotInCassandra.size()));
 		long end = System.currentTimeMillis();	
 		logger.info("MARC_INGESTER: Time taken = {} seconds", (end - start)/1000.0);
 		
 		// uningestedVolIds contains the list of volume ids on which ingest was attempted but unsuccessful; volIdsSet is modified in processLoop,
 		// and now contains the list of volume ids for which MARC records were not found (and therefore, no ingest was attempted for these volume 
-		// ids)
-		this.writeResultVolIdsToFile(uningestedVolIds, volIdsSet.toArray(new String[0]), this.outputFile);
-	}
-
-	// reads and processes marc records in the configured marc json files; returns the list of volume ids for which ingest was attempted but not 
-	// successful
-	private List<String> processLoop(Predicate<String> volIdTester, Consumer<String> updateOnTestSucc, BooleanSupplier completionTester) {
-		Stream<String> resultVolIds = Stream.empty();
-		if (this.marcIngester.marcColFamilyExists()) {	
-			for (String marcJsonFile: this.marcJsonFiles) {
-				List<String> uningestedVolIds = processFile(this.marcJsonFilesFolder + File.separator + marcJsonFile, volIdTester, updateOnTestSucc, completionTester);
-				resultVolIds = Stream.concat(resultVolIds, uningestedVolIds.stream());
-			}
-		} else {
-			logger.error("MARC_INGESTER: No column family named {}; ingestion cannot proceed", this.marcIngester.getMarcColFamily());
-		}
-		return resultVolIds.collect(Collectors.toList());
+		// ids); volIdsNotInCassandra contains the list of volume ids that are known not to be in Cassandra
+		this.writeResultVolIdsToFile(uningestedVolIds, volIdsSet.toArray(new String[0]), volIdsNotInCassandra, this.outputFile);
 	}
 
-	// read and process MARC records from file specified by marcJsonFilePath; returns the list of volume ids for which ingest was attempted but not 
-	// successful
+	// reads and processes marc records in the given marc json files; returns the list of volume ids for which ingest was attempted but not 
+	// successful. The files are scanned one after another, in the given order, each in parallel by a MarcFileScanner, which parses the records
+	// on its own threads; the records of a file are handed over in no particular order, so a volume is expected to have at most one record
+	// per file. The volume ids are tested, and the records ingested, on this thread, so that volIdTester and updateOnTestSucc need not be
+	// thread-safe, and the ingest of a record does not wait for the ingest of the previous one, up to the limit on in-flight requests of
+	// CassandraManager; the ingests of the records of a file complete before the next file is scanned, so that a record of a volume is
+	// never written at the same time as the record of the volume in another file
+	//
+	// files - the marc json files, in the order in which they are processed; with updateOnTestSucc removing the volume id from the ids that
+	//         volIdTester accepts, the record of a volume in several files that is ingested is the one in the first file
+	//
+	// volIdFilter - thread-safe test called by the scanning threads on the volume id of each marc record, which selects the records that are
+	//               parsed in full, so that only valid json is ingested, and handed to volIdTester
 	// 
 	// volIdTester - contains the test method to be called on the volume id extracted from the marc record; the "processing" (ingest) occurs only if
-	//               the test is positive for the volume id; set to (volId-> true) if all MARC records in the file are to be processed
+	//               the test is positive for the volume id; set to (volId-> true) if all MARC records in the files are to be processed
 	//
 	// updateOnTestSucc - contains the method that should be called on a volume id, if the test in volIdTester succeeds on the volume id; set to 
 	//                    (volId -> {}) for no-op
 	//
-	// processCompletionTester - contains a method that is called to check if processing can be terminated; the method in processCompletionTester
-	//                           takes no arguments, and returns true if processing can be terminated, false otherwise; set to (() -> false) if all 
-	//                           MARC records in the specified file are to be processed
-	private List<String> processFile(String marcJsonFilePath, Predicate<String> volIdTester, Consumer<String> updateOnTestSucc, 
-			BooleanSupplier processCompletionTester) {
-		ArrayList<String> uningestedVolIds = new ArrayList<String>();
-		JSONParser parser = new JSONParser();
-		try (BufferedReader br = new BufferedReader(new FileReader(marcJsonFilePath))) {
-			String line;
-			int count = 0;
-			while ((line = br.readLine()) != null && !(processCompletionTester.getAsBoolean())) {
-				try {
-					JSONObject volMarc = (JSONObject) parser.parse(line);
-					String volumeid = this.getVolumeIdFromMarc(volMarc);
-					if (volumeid.equals(NO_VOLID_FOUND_STR)) {
-						logger.error("MARC_INGESTER: No volume id found at line {}", count + 1);
-					} else if (volIdTester.test(volumeid)) {
-						updateOnTestSucc.accept(volumeid);
-						// logger.debug("MARC_INGESTER: Volume id {} found in file {}", volumeid, this.getFileName(marcJsonFilePath));
-						Boolean ingestRes = this.marcIngester.ingest(volumeid, line);
-						if (! ingestRes) {
-							uningestedVolIds.add(volumeid);
-						}
+	// completionTester - contains a method that is called to check if processing can be terminated; the method in completionTester takes no 
+	//                    arguments, and returns true if processing can be terminated, false otherwise; set to (() -> false) if all MARC records 
+	//                    in the files are to be processed
+	private List<String> processLoop(List<File> files, Predicate<String> volIdFilter, Predicate<String> volIdTester, Consumer<String> updateOnTestSucc, 
+			BooleanSupplier completionTester) {
+		Queue<String> uningestedVolIds = new ConcurrentLinkedQueue<String>();
+		if (this.marcIngester.marcColFamilyExists()) {
+			MarcFileScanner scanner = MarcFileScanner.fromConfiguration();
+			PendingIngests pendingIngests = new PendingIngests();
+			try {
+				for (File file : files) {
+					if (completionTester.getAsBoolean()) {
+						break;
 					}
-				} catch (ParseException e) {
-					logger.error("MARC_INGESTER: Exception while parsing line {} in marc json file", count + 1, e);
-				} catch (Exception e) {
-					logger.error("MARC_INGESTER: Exception while reading json at line {}", count + 1, e);
+					scanner.scan(Collections.singletonList(file), volIdFilter, record -> {
+						if (completionTester.getAsBoolean()) {
+							return false;
+						}
+						String volumeid = record.getVolumeId();
+						if (volIdTester.test(volumeid)) {
+							updateOnTestSucc.accept(volumeid);
+							pendingIngests.ingest(volumeid, record.getJson(), uningestedVolIds);
+						}
+						return !completionTester.getAsBoolean();
+					});
+					pendingIngests.await();
 				}
-				count++;
+			} catch (InterruptedException e) {
+				logger.error("MARC_INGESTER: Interrupted while processing marc json files", e);
+				Thread.currentThread().interrupt();
+			}
+		} else {
+			logger.error("MARC_INGESTER: No column family named {}; ingestion cannot proceed", this.marcIngester.getMarcColFamily());
+		}
+		return new ArrayList<String>(uningestedVolIds);
+	}
+
+	// the configured marc json files, in the configured order
+	private List<File> getMarcJsonFiles() {
+		return Stream.of(this.marcJsonFiles).map(marcJsonFile -> new File(this.marcJsonFilesFolder, marcJsonFile)).collect(Collectors.toList());
+	}
+
+	// ingests the marc records of the volume ids in volIdsSet found in the MARC index, removing them from volIdsSet; returns the list of volume
+	// ids for which ingest was attempted but not successful
+	private List<String> processWithIndex(MarcIndex marcIndex, Set<String> volIdsSet) {
+		if (!this.marcIngester.marcColFamilyExists()) {
+			logger.error("MARC_INGESTER: No column family named {}; ingestion cannot proceed", this.marcIngester.getMarcColFamily());
+			return new ArrayList<String>();
+		}
+		// the records are looked up as the ingester takes them
+		Stream<Map.Entry<String, String>> marcRecords = new ArrayList<String>(volIdsSet).stream().map(volumeid -> {
+			try {
+				String marc = marcIndex.getMarc(volumeid);
+				if (marc != null) {
+					volIdsSet.remove(volumeid);
+					return new AbstractMap.SimpleImmutableEntry<String, String>(volumeid, marc);
+				}
+			} catch (IOException e) {
+				logger.error("MARC_INGESTER: Exception while reading marc record of {} from marc json files", volumeid, e);
+			}
+			return null;
+		});
+		return this.marcIngester.ingestAll(marcRecords.filter(Objects::nonNull));
+	}
+
+	// the asynchronous ingests of marc records started by processLoop, and not yet completed
+	private class PendingIngests {
+		private long numPending = 0;
+
+		// starts the ingest of the marc record; the volume id is added to uningestedVolIds if the ingest is not successful
+		void ingest(String volumeid, String marc, Queue<String> uningestedVolIds) {
+			synchronized (this) {
+				numPending++;
+			}
+			MarcProcessor.this.marcIngester.ingestAsync(volumeid, marc).whenComplete((ingestRes, e) -> {
+				if (e != null || !ingestRes) {
+					uningestedVolIds.add(volumeid);
+				}
+				synchronized (this) {
+					numPending--;
+					notifyAll();
+				}
+			});
+		}
+
+		// waits for all the ingests started to complete
+		synchronized void await() throws InterruptedException {
+			while (numPending > 0) {
+				wait();
 			}
-			logger.info("MARC_INGESTER: Processed {} lines in file {}", count, marcJsonFilePath);
-		} catch (IOException e) {
-			logger.error("MARC_INGESTER: Exception while reading marc json file {}", marcJsonFilePath, e);
 		}
-		return uningestedVolIds;
 	}
 
 	private void writeResultVolIdsToFile(List<String> uningestedVolIds, String outputFile) {
@@ -180,7 +261,8 @@ public class MarcProcessor {
 		}
 	}
 	
-	private void writeResultVolIdsToFile(List<String> uningestedVolIds, String[] volIdsNotInJsonFiles, String outputFile) {
+	private void writeResultVolIdsToFile(List<String> uningestedVolIds, String[] volIdsNotInJsonFiles, List<String> volIdsNotInCassandra, 
+			String outputFile) {
 		try (BufferedWriter bw = new BufferedWriter(new FileWriter(outputFile))) {
 			bw.write(String.format("Volume ids for which ingest was attempted but unsuccessful:%n"));
 			for (String volId: uningestedVolIds) {
@@ -190,38 +272,45 @@ public class MarcProcessor {
 			for (String volId: volIdsNotInJsonFiles) {
 				bw.write(String.format("%s%n", volId));
 			}
+			if (!volIdsNotInCassandra.isEmpty()) {
+				bw.write(String.format("%nVolume ids not found in Cassandra:%n"));
+				for (String volId: volIdsNotInCassandra) {
+					bw.write(String.format("%s%n", volId));
+				}
+			}
 		} catch (IOException e) {
 			logger.error("MARC_INGESTER: Exception while writing to output file {}", outputFile, e);
 		}
 	}
 	
-	// extracts the volume id from the MARC record for a volume; see above for expected json, and field of volume id 
-	public String getVolumeIdFromMarc(JSONObject volMarc) {
+	// extracts the volume id from the MARC record for a volume; see above for expected json, and field of volume id; static, so that it can be
+	// used without a connection to Cassandra
+	public static String getVolumeIdFromMarc(JSONObject volMarc) {
 		JSONArray fieldsArray = (JSONArray) volMarc.get(FIELDS_KEY); 
 		if (fieldsArray == null) {
 			logger.error("MARC_INGESTER: Unable to find \"{}\" element in MARC json: {}", FIELDS_KEY, volMarc);
 			return NO_VOLID_FOUND_STR;
 		}
 		
-		return this.getValuesForKeyFromArray(KEY_IN_FIELDS_WITH_VOLID, fieldsArray)
+		return getValuesForKeyFromArray(KEY_IN_FIELDS_WITH_VOLID, fieldsArray)
 				.findFirst()
-				.map(jsonObjWithVolId -> this.getVolumeIdFromObjInMarc((JSONObject) jsonObjWithVolId))
+				.map(jsonObjWithVolId -> getVolumeIdFromObjInMarc((JSONObject) jsonObjWithVolId))
 				.orElse(NO_VOLID_FOUND_STR);
 	}
 	
-	private String getVolumeIdFromObjInMarc(JSONObject jsonObjWithVolId) {
+	private static String getVolumeIdFromObjInMarc(JSONObject jsonObjWithVolId) {
 		JSONArray subfieldsArray = (JSONArray) jsonObjWithVolId.get(SUBFIELDS_KEY);
 		if (subfieldsArray == null) {
 			logger.error("MARC_INGESTER: Unable to find \"{}\" element in MARC json: {}", SUBFIELDS_KEY, jsonObjWithVolId);
 			return NO_VOLID_FOUND_STR;
 		}
-		return (String) this.getValuesForKeyFromArray(KEY_IN_SUBFIELDS_WITH_VOLID, subfieldsArray).findFirst().orElse(NO_VOLID_FOUND_STR);
+		return (String) getValuesForKeyFromArray(KEY_IN_SUBFIELDS_WITH_VOLID, subfieldsArray).findFirst().orElse(NO_VOLID_FOUND_STR);
 	}
 
 	// filters from an array of JSONObjects, those JSONObjects that contain a mapping for the given key, and returns all the values that are mapped 
 	// to the key in different JSONObjects; in practice, only one such object is expected in the result for KEY_IN_FIELDS_WITH_VOLID and 
 	// KEY_IN_SUBFIELDS_WITH_VOLID
-	private Stream<Object> getValuesForKeyFromArray(String key, JSONArray fields) {
+	private static Stream<Object> getValuesForKeyFromArray(String key, JSONArray fields) {
 		return Stream.of(fields.toArray()).filter(obj -> ((JSONObject) obj).containsKey(key)).map(obj -> ((JSONObject) obj).get(key));
 	}
 	
@@ -0,0 +1,410 @@
+package edu.indiana.d2i.ingest.cassandra;
+
+/*
+ * Class that extracts the volume id, i.e., 974$u, from a MARC record in json (see MarcProcessor for the expected json), without building
+ * the json-simple object tree of the record. The json is scanned once, in place: values other than the fields, the 974 field and its
+ * subfields are skipped without being decoded, though their literals and escape sequences are checked as json-simple checks them, and
+ * only the volume id is copied out of the record, so that the lines of a MARC json file can be filtered by volume id at a fraction of the
+ * cost of parsing them, and only the records that are needed are parsed in full.
+ *
+ * The volume id found is the one that MarcProcessor.getVolumeIdFromMarc finds in the parsed record. Records for which that cannot be
+ * determined without parsing, e.g., records without a volume id, with a key that occurs more than once in an object on the way to the volume
+ * id, or with malformed json, return null, so that the caller parses them in full, and reports the error as it did before.
+ */
+public class MarcVolumeIdScanner {
+	// thrown, without a stack trace, when the record is not of the expected form
+	private static class UnexpectedJsonException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		UnexpectedJsonException() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final UnexpectedJsonException UNEXPECTED_JSON = new UnexpectedJsonException();
+
+	private final String json;
+	private int pos = 0;
+
+	private MarcVolumeIdScanner(String json) {
+		this.json = json;
+	}
+
+	// returns the volume id in the given MARC json record, or null if the record has to be parsed to find out
+	public static String getVolumeId(String marcJson) {
+		if (marcJson == null) {
+			return null;
+		}
+		try {
+			return new MarcVolumeIdScanner(marcJson).scanRecord();
+		} catch (UnexpectedJsonException e) {
+			return null;
+		}
+	}
+
+	private String scanRecord() {
+		String volumeId = null;
+		boolean fieldsFound = false;
+		expect('{');
+		if (!consume('}')) {
+			do {
+				if (scanKey(MarcProcessor.FIELDS_KEY)) {
+					if (fieldsFound) {
+						throw UNEXPECTED_JSON;
+					}
+					fieldsFound = true;
+					volumeId = scanFields();
+				} else {
+					skipValue();
+				}
+			} while (consume(','));
+			expect('}');
+		}
+		skipWhitespace();
+		if (pos != json.length() || volumeId == null) {
+			throw UNEXPECTED_JSON;
+		}
+		return volumeId;
+	}
+
+	// returns the volume id in the first field that holds KEY_IN_FIELDS_WITH_VOLID
+	private String scanFields() {
+		String volumeId = null;
+		expect('[');
+		if (!consume(']')) {
+			do {
+				String fieldVolumeId = scanField(volumeId == null);
+				if (volumeId == null) {
+					volumeId = fieldVolumeId;
+				}
+			} while (consume(','));
+			expect(']');
+		}
+		if (volumeId == null) {
+			throw UNEXPECTED_JSON;
+		}
+		return volumeId;
+	}
+
+	// returns the volume id in the field, if wanted and the field holds KEY_IN_FIELDS_WITH_VOLID, or null otherwise
+	private String scanField(boolean wanted) {
+		String volumeId = null;
+		boolean volIdFieldFound = false;
+		expect('{');
+		if (!consume('}')) {
+			do {
+				if (scanKey(MarcProcessor.KEY_IN_FIELDS_WITH_VOLID)) {
+					if (volIdFieldFound) {
+						throw UNEXPECTED_JSON;
+					}
+					volIdFieldFound = true;
+					if (wanted) {
+						volumeId = scanVolIdField();
+					} else {
+						skipValue();
+					}
+				} else {
+					skipValue();
+				}
+			} while (consume(','));
+			expect('}');
+		}
+		return volumeId;
+	}
+
+	private String scanVolIdField() {
+		String volumeId = null;
+		expect('{');
+		if (!consume('}')) {
+			do {
+				if (scanKey(MarcProcessor.SUBFIELDS_KEY)) {
+					if (volumeId != null) {
+						throw UNEXPECTED_JSON;
+					}
+					volumeId = scanSubfields();
+				} else {
+					skipValue();
+				}
+			} while (consume(','));
+			expect('}');
+		}
+		if (volumeId == null) {
+			throw UNEXPECTED_JSON;
+		}
+		return volumeId;
+	}
+
+	// returns the value of the first subfield that holds KEY_IN_SUBFIELDS_WITH_VOLID
+	private String scanSubfields() {
+		String volumeId = null;
+		expect('[');
+		if (!consume(']')) {
+			do {
+				String subfieldVolumeId = scanSubfield(volumeId == null);
+				if (volumeId == null) {
+					volumeId = subfieldVolumeId;
+				}
+			} while (consume(','));
+			expect(']');
+		}
+		if (volumeId == null) {
+			throw UNEXPECTED_JSON;
+		}
+		return volumeId;
+	}
+
+	private String scanSubfield(boolean wanted) {
+		String volumeId = null;
+		boolean volIdSubfieldFound = false;
+		expect('{');
+		if (!consume('}')) {
+			do {
+				if (scanKey(MarcProcessor.KEY_IN_SUBFIELDS_WITH_VOLID)) {
+					if (volIdSubfieldFound) {
+						throw UNEXPECTED_JSON;
+					}
+					volIdSubfieldFound = true;
+					if (wanted) {
+						skipWhitespace();
+						if (pos >= json.length() || json.charAt(pos) != '"') {
+							throw UNEXPECTED_JSON;
+						}
+						pos++;
+						volumeId = scanString();
+					} else {
+						skipValue();
+					}
+				} else {
+					skipValue();
+				}
+			} while (consume(','));
+			expect('}');
+		}
+		return volumeId;
+	}
+
+	// scans the key of an object member, and the colon that follows it; returns true if the key is the given one
+	private boolean scanKey(String key) {
+		expect('"');
+		int start = pos;
+		boolean escaped = skipString();
+		boolean matches;
+		if (escaped) {
+			pos = start;
+			matches = scanString().equals(key);
+		} else {
+			matches = pos - 1 - start == key.length() && json.regionMatches(start, key, 0, key.length());
+		}
+		expect(':');
+		return matches;
+	}
+
+	// skips the rest of a string whose opening quote has been consumed; returns true if the string holds escape sequences
+	private boolean skipString() {
+		boolean escaped = false;
+		int length = json.length();
+		while (pos < length) {
+			char c = json.charAt(pos++);
+			if (c == '"') {
+				return escaped;
+			}
+			if (c == '\\') {
+				escaped = true;
+				skipEscape();
+			}
+		}
+		throw UNEXPECTED_JSON;
+	}
+
+	// skips the rest of an escape sequence whose backslash has been consumed
+	private void skipEscape() {
+		if (pos >= json.length()) {
+			throw UNEXPECTED_JSON;
+		}
+		char e = json.charAt(pos++);
+		if (e == 'u') {
+			scanHexChar();
+		} else if ("\"\\/bfnrt".indexOf(e) < 0) {
+			throw UNEXPECTED_JSON;
+		}
+	}
+
+	// decodes the four hexadecimal digits of a unicode escape sequence
+	private char scanHexChar() {
+		if (pos + 4 > json.length()) {
+			throw UNEXPECTED_JSON;
+		}
+		int c = 0;
+		for (int end = pos + 4; pos < end; pos++) {
+			char d = json.charAt(pos);
+			if (d >= '0' && d <= '9') {
+				c = c * 16 + (d - '0');
+			} else if (d >= 'a' && d <= 'f') {
+				c = c * 16 + (d - 'a' + 10);
+			} else if (d >= 'A' && d <= 'F') {
+				c = c * 16 + (d - 'A' + 10);
+			} else {
+				throw UNEXPECTED_JSON;
+			}
+		}
+		return (char) c;
+	}
+
+	// decodes the rest of a string whose opening quote has been consumed
+	private String scanString() {
+		StringBuilder sb = null;
+		int start = pos;
+		int length = json.length();
+		while (pos < length) {
+			char c = json.charAt(pos++);
+			if (c == '"') {
+				return sb == null ? json.substring(start, pos - 1) : sb.toString();
+			}
+			if (c != '\\') {
+				if (sb != null) {
+					sb.append(c);
+				}
+				continue;
+			}
+			if (sb == null) {
+				sb = new StringBuilder(json.substring(start, pos - 1));
+			}
+			if (pos >= length) {
+				break;
+			}
+			char e = json.charAt(pos++);
+			switch (e) {
+			case '"':
+			case '\\':
+			case '/':
+				sb.append(e);
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				sb.append(scanHexChar());
+				break;
+			default:
+				throw UNEXPECTED_JSON;
+			}
+		}
+		throw UNEXPECTED_JSON;
+	}
+
+	// skips a value of any type
+	private void skipValue() {
+		skipWhitespace();
+		if (pos >= json.length()) {
+			throw UNEXPECTED_JSON;
+		}
+		char c = json.charAt(pos);
+		if (c == '{') {
+			pos++;
+			if (!consume('}')) {
+				do {
+					expect('"');
+					skipString();
+					expect(':');
+					skipValue();
+				} while (consume(','));
+				expect('}');
+			}
+		} else if (c == '[') {
+			pos++;
+			if (!consume(']')) {
+				do {
+					skipValue();
+				} while (consume(','));
+				expect(']');
+			}
+		} else if (c == '"') {
+			pos++;
+			skipString();
+		} else if (!skipKeyword("true") && !skipKeyword("false") && !skipKeyword("null")) {
+			skipNumber();
+		}
+	}
+
+	private boolean skipKeyword(String keyword) {
+		if (json.startsWith(keyword, pos)) {
+			pos += keyword.length();
+			return true;
+		}
+		return false;
+	}
+
+	// skips a number of the form that json-simple accepts, i.e., -?[0-9]+(\.[0-9]+)?([eE][-+]?[0-9]+)?
+	private void skipNumber() {
+		skipChar('-');
+		skipDigits();
+		if (skipChar('.')) {
+			skipDigits();
+		}
+		if (skipChar('e') || skipChar('E')) {
+			if (!skipChar('-')) {
+				skipChar('+');
+			}
+			skipDigits();
+		}
+	}
+
+	// skips the given character, without skipping whitespace first, if it is next
+	private boolean skipChar(char c) {
+		if (pos < json.length() && json.charAt(pos) == c) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+
+	// skips one or more digits
+	private void skipDigits() {
+		int start = pos;
+		while (pos < json.length() && json.charAt(pos) >= '0' && json.charAt(pos) <= '9') {
+			pos++;
+		}
+		if (pos == start) {
+			throw UNEXPECTED_JSON;
+		}
+	}
+
+	private void skipWhitespace() {
+		int length = json.length();
+		while (pos < length) {
+			char c = json.charAt(pos);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	private void expect(char c) {
+		if (!consume(c)) {
+			throw UNEXPECTED_JSON;
+		}
+	}
+
+	// consumes the given character, after any whitespace, if it is next
+	private boolean consume(char c) {
+		skipWhitespace();
+		if (pos < json.length() && json.charAt(pos) == c) {
+			pos++;
+			return true;
+		}
+		return false;
+	}
+}
@@ -1,13 +1,13 @@
 package edu.indiana.d2i.ingest.cassandra;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
-import com.datastax.oss.driver.api.querybuilder.BuildableQuery;
 import com.datastax.oss.driver.api.querybuilder.QueryBuilder;
 import com.datastax.oss.driver.api.querybuilder.update.Update;
 
@@ -28,7 +28,6 @@ public class SimpleColumnIngester<T> extends ColumnIngester<T> {
 	
 	private String colName;
 	private String lastModTimeColName;
-	private PreparedStatement colUpdatePrepStmt = null;
 	
 	public SimpleColumnIngester(String colName) {
 		super();
@@ -39,31 +38,57 @@ public class SimpleColumnIngester<T> extends ColumnIngester<T> {
 	// update the column identified by "colName", and the lastModifiedTime column of the given volume id with the given value; the update 
 	// takes place only if the column family contains the volume id; the CQL statement used for the update is
 	//   UPDATE <table> SET <colName> = <colValue>, <lastModifiedTimeCol> = <currTime> WHERE <key> = <volumeId> IF EXISTS
+	// or, if the existing volumes are known, the same statement without IF EXISTS, for the volumes among them
 	public boolean ingest(String volumeId, T colValue) {
+		if (!this.mayExist(volumeId)) {
+			return this.checkUpdateResult(volumeId, false);
+		}
 		try {
-			if (this.colUpdatePrepStmt == null) {
-				BuildableQuery updColumn = QueryBuilder.update(this.volTextColFamily)
-						.setColumn(this.colName, QueryBuilder.bindMarker())
-						.setColumn(this.lastModTimeColName, QueryBuilder.bindMarker())
-						.whereColumn(this.volTextColFamilyKey)
-						.isEqualTo(QueryBuilder.bindMarker())
-						.ifExists();
-				this.colUpdatePrepStmt = csdConnector.prepare(updColumn.toString());
-			}
-			ResultSet rs = csdConnector.execute(this.colUpdatePrepStmt.bind(colValue, new Date(), volumeId));
+			ResultSet rs = csdConnector.execute(this.getUpdatePrepStmt().bind(colValue, new Date(), volumeId));
 			if (rs == null) {
 				logger.error("SIMPLE_COLUMN_INGESTER: error while trying to update {} for {} in table {}", this.colName, volumeId, this.volTextColFamily);
 				return false;
 			} else {
-				boolean res = this.getResultOfUpdateIfExists(rs);
-				if (!res) {
-					logger.error("SIMPLE_COLUMN_INGESTER: {} not found in table {}; update of column {} failed", volumeId, this.volTextColFamily, this.colName);
-				}
-				return res;
+				return this.checkUpdateResult(volumeId, this.getResultOfUpdate(rs));
 			}
 		} catch (Exception e) {
 			logger.error("SIMPLE_COLUMN_INGESTER: Exception while trying to update {} for {} in table {}", this.colName, volumeId, this.volTextColFamily, e);
 			return false;
 		}
 	}
+
+	@Override
+	public CompletionStage<Boolean> ingestAsync(String volumeId, T colValue) {
+		if (!this.mayExist(volumeId)) {
+			return CompletableFuture.completedFuture(this.checkUpdateResult(volumeId, false));
+		}
+		try {
+			return csdConnector.executeAsyncWithRetry(this.getUpdatePrepStmt().bind(colValue, new Date(), volumeId)).handle((rs, e) -> {
+				if (e != null) {
+					logger.error("SIMPLE_COLUMN_INGESTER: Exception while trying to update {} for {} in table {}", this.colName, volumeId, this.volTextColFamily, e);
+					return false;
+				}
+				return this.checkUpdateResult(volumeId, this.getResultOfUpdate(rs));
+			});
+		} catch (Exception e) {
+			logger.error("SIMPLE_COLUMN_INGESTER: Exception while trying to update {} for {} in table {}", this.colName, volumeId, this.volTextColFamily, e);
+			return CompletableFuture.completedFuture(false);
+		}
+	}
+
+	private boolean checkUpdateResult(String volumeId, boolean res) {
+		if (!res) {
+			logger.error("SIMPLE_COLUMN_INGESTER: {} not found in table {}; update of column {} failed", volumeId, this.volTextColFamily, this.colName);
+		}
+		return res;
+	}
+
+	@Override
+	Update buildUpdate() {
+		return QueryBuilder.update(this.volTextColFamily)
+				.setColumn(this.colName, QueryBuilder.bindMarker())
+				.setColumn(this.lastModTimeColName, QueryBuilder.bindMarker())
+				.whereColumn(this.volTextColFamilyKey)
+				.isEqualTo(QueryBuilder.bindMarker());
+	}
 }
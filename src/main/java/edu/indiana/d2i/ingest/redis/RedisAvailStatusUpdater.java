@@ -1,7 +1,9 @@
 package edu.indiana.d2i.ingest.redis;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -17,6 +19,9 @@ import edu.indiana.d2i.ingest.util.Configuration;
 public class RedisAvailStatusUpdater {
 	private static final Logger logger = LogManager.getLogger(RedisAvailStatusUpdater.class);
 
+	private static final int MAX_KEYS_PER_UPDATE = 100000;
+	private static final int KEYS_PER_SCAN = 10000;
+
 	private RedisClient redisClient;
 	private String redisAvailStatusHashFieldName;
 
@@ -35,15 +40,54 @@ public class RedisAvailStatusUpdater {
 		return setResult;
 	}
 	
-	// set the availability status, in Redis, of all the volumes in the list to "true"
-	public boolean setStatusToAvailable(List<String> volumeIds) {
-		boolean result = this.redisClient.setHashFieldValues(volumeIds.stream().map(volId -> RedisRightsUtils.volumeIdToRedisKey(volId)).collect(Collectors.toList()), this.redisAvailStatusHashFieldName, "true");
+	// set the availability status, in Redis, of all the given volumes to "true"; the volume ids may be streamed, e.g., by a VolumeIdReader, and
+	// are sent to Redis in chunks of MAX_KEYS_PER_UPDATE, so that the keys of all the volumes are never held at once
+	public boolean setStatusToAvailable(Iterable<String> volumeIds) {
+		boolean result = true;
+		long numVolumes = 0;
+		List<String> keys = new ArrayList<String>(MAX_KEYS_PER_UPDATE);
+		for (String volumeId : volumeIds) {
+			keys.add(RedisRightsUtils.volumeIdToRedisKey(volumeId));
+			numVolumes++;
+			if (keys.size() == MAX_KEYS_PER_UPDATE) {
+				result = this.redisClient.setHashFieldValues(keys, this.redisAvailStatusHashFieldName, "true") && result;
+				keys.clear();
+			}
+		}
+		result = this.redisClient.setHashFieldValues(keys, this.redisAvailStatusHashFieldName, "true") && result;
 		if (result == false) {
-			logger.error("Failed attempt to set availability status of volumes to true in redis; no. of volumes = {} ", volumeIds.size());
+			logger.error("Failed attempt to set availability status of volumes to true in redis; no. of volumes = {} ", numVolumes);
 		} 
 		return result;
 	}
 
+	// passes the ids of all the volumes whose availability status in Redis is "true", i.e., the volumes in Cassandra, to the consumer; the keys
+	// of the volumes are scanned, and their status read, KEYS_PER_SCAN at a time; returns false if the volumes could not all be read
+	public boolean getAvailableVolumeIds(Consumer<String> consumer) {
+		boolean[] result = {true};
+		boolean scanResult = this.redisClient.scanKeys(RedisRightsUtils.volumeIdKeyPattern(), KEYS_PER_SCAN, keys -> {
+			if (!result[0]) {
+				return;
+			}
+			List<String> availStatuses = this.redisClient.getHashFieldValuesOnly(keys, this.redisAvailStatusHashFieldName);
+			if (availStatuses.size() != keys.size()) {
+				result[0] = false;
+				return;
+			}
+			for (int i = 0; i < keys.size(); i++) {
+				String volumeId = RedisRightsUtils.redisKeyToVolumeId(keys.get(i));
+				if ((volumeId != null) && "true".equals(availStatuses.get(i))) {
+					consumer.accept(volumeId);
+				}
+			}
+		});
+		if (!(scanResult && result[0])) {
+			logger.error("Failed attempt to read availability status of volumes from redis");
+			return false;
+		}
+		return true;
+	}
+	
 	// set the availability status, in Redis, of all the volumes in the list to "false"
 	public boolean setStatusToUnavailable(List<String> volumeIds) {
 		boolean result = this.redisClient.setHashFieldValues(volumeIds.stream().map(volId -> RedisRightsUtils.volumeIdToRedisKey(volId)).collect(Collectors.toList()), this.redisAvailStatusHashFieldName, "false");
@@ -5,19 +5,25 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.codahale.metrics.Timer;
+
 import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.util.Configuration;
+import edu.indiana.d2i.ingest.util.IngestMetrics;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
 
 /*
  * Class that interacts with Redis, i.e., gets values from and sets values in Redis. 
@@ -81,7 +87,7 @@ public class RedisClient {
         			i++;
         			numHgets++;
         		}
-        		pipeline.sync();
+        		sync(pipeline);
         		batchRes.forEach(entry -> res.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().get())));
         	}
         	return res;
@@ -112,7 +118,7 @@ public class RedisClient {
         			i++;
         			numHgets++;
         		}
-        		pipeline.sync();
+        		sync(pipeline);
         		// System.out.println(batchRes.stream().map(response -> response.get()).collect(Collectors.joining(",", "[", "]")));
         		batchRes.forEach(response -> result.add(response.get()));
         	}
@@ -123,6 +129,33 @@ public class RedisClient {
         }
 	}
 	
+	// scans the keys in Redis that match the given glob-style pattern, with SCAN, and passes the keys returned by each SCAN, about count keys,
+	// to the consumer; keys added or removed while the scan is in progress may or may not be found; returns false if the scan failed
+	public boolean scanKeys(String pattern, int count, Consumer<List<String>> consumer) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+        	ScanParams scanParams = new ScanParams().match(pattern).count(count);
+        	String cursor = ScanParams.SCAN_POINTER_START;
+        	do {
+        		ScanResult<String> scanResult = jedis.scan(cursor, scanParams);
+        		if (!scanResult.getResult().isEmpty()) {
+        			consumer.accept(scanResult.getResult());
+        		}
+        		cursor = scanResult.getStringCursor();
+        	} while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+        	return true;
+        } catch (Exception e) {
+        	logger.error("Exception while trying to access redis: {}", e.getMessage(), e); 
+        	return false;
+        }
+	}
+	
+	// sends the commands queued in the pipeline, and waits for their responses; the time taken is recorded in the ingest metrics
+	private static void sync(Pipeline pipeline) {
+		try (Timer.Context timer = IngestMetrics.Stage.REDIS_SYNC.time()) {
+			pipeline.sync();
+		}
+	}
+
 	// convenience function to assign the same value, fieldValue, to a specified hash field at all given keys in Redis
 	public boolean setHashFieldValues(List<String> keys, String fieldName, String fieldValue) {
 		return setHashFieldValues(keys.stream().map(key -> new AbstractMap.SimpleEntry<>(key, fieldValue)).collect(Collectors.toList()), fieldName);
@@ -148,7 +181,7 @@ public class RedisClient {
         			numHsets++;
         			i++;
         		}
-        		pipeline.sync();
+        		sync(pipeline);
         	}
         	return true;
         } catch (Exception e) {
@@ -20,6 +20,36 @@ public class RedisRightsUtils {
 		return (redisVolIdKeyPrefix + volumeId + redisVolIdKeySuffix);
 	}
 	
+	// inverse of volumeIdToRedisKey; returns null if the key is not the key of a volume
+	public static String redisKeyToVolumeId(String key) {
+		String prefix = volumeIdToRedisKey("");
+		String suffix = redisVolIdKeySuffix;
+		prefix = prefix.substring(0, prefix.length() - suffix.length());
+		if ((key.length() <= prefix.length() + suffix.length()) || !key.startsWith(prefix) || !key.endsWith(suffix)) {
+			return null;
+		}
+		return key.substring(prefix.length(), key.length() - suffix.length());
+	}
+	
+	// the glob-style pattern, for the Redis SCAN and KEYS commands, that matches the keys of all volumes
+	public static String volumeIdKeyPattern() {
+		String prefix = volumeIdToRedisKey("");
+		String suffix = redisVolIdKeySuffix;
+		prefix = prefix.substring(0, prefix.length() - suffix.length());
+		return escapeGlob(prefix) + "*" + escapeGlob(suffix);
+	}
+	
+	private static String escapeGlob(String str) {
+		StringBuilder sb = new StringBuilder();
+		for (char c : str.toCharArray()) {
+			if ((c == '*') || (c == '?') || (c == '[') || (c == ']') || (c == '\\')) {
+				sb.append('\\');
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+	
 	// convert the access level string to an abbreviated form of type integer, e.g., "1A" to 1
 	public static Integer abbrevAccessLevel(String accessLevel) {
 		if (accessLevel == null) {
@@ -8,7 +8,6 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -27,10 +26,17 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
+import com.codahale.metrics.Timer;
+
+import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.Ingester;
+import edu.indiana.d2i.ingest.cassandra.MarcIndex;
 import edu.indiana.d2i.ingest.cassandra.MarcProcessor;
+import edu.indiana.d2i.ingest.cassandra.MarcVolumeIdScanner;
 import edu.indiana.d2i.ingest.solr.MarcJsonParser.VolumeInfo;
 import edu.indiana.d2i.ingest.util.Configuration;
+import edu.indiana.d2i.ingest.util.IngestMetrics;
+import edu.indiana.d2i.ingest.util.VolumeIdSet;
 
 public class SolrMetadtaIngester extends Ingester {
 	private static Logger log = LogManager.getLogger(SolrMetadtaIngester.class);
@@ -38,6 +44,8 @@ public class SolrMetadtaIngester extends Ingester {
 	private SolrClient solrCli;
 	private PrintWriter pwSuccess;
 	private PrintWriter pwFailure;
+	private MarcIndex marcIndex = null;
+	private boolean marcIndexOpened = false;
 	static {
 		SOLR_EPR = Configuration.getProperty("SOLR_URL");
 	}
@@ -53,34 +61,49 @@ public class SolrMetadtaIngester extends Ingester {
 		
 	}
 	
-	public void ingest(List<String> volumes) {
+	public void ingest(Iterable<String> volumes) {
 		List<File> marcFiles = new LinkedList<File>();
 		Stream.of(Configuration.getProperty("MARC-JSON-FILES").split(",")).forEach(marcName -> {
 			marcFiles.add(new File(Configuration.getProperty("MARC-JSON-FILES-FOLDER"), marcName));
 		});
-		Set<String> volumeIdSet = new HashSet<String>(volumes);
+		Set<String> volumeIdSet = VolumeIdSet.of(volumes);
+		// the records of a few volumes are looked up in the MARC index, if there is one, instead of scanning the MARC files
+		if(volumeIdSet.size() <= Long.parseLong(Configuration.getProperty(Constants.PK_MARC_INDEX_MAX_VOLUMES, Constants.DEFAULT_MARC_INDEX_MAX_VOLUMES))
+				&& getMarcIndex() != null) {
+			for(String volumeId : volumeIdSet) {
+				ingestOne(volumeId);
+			}
+			return;
+		}
+		// the record of a volume is taken from the first file that has it, as it is by the MARC index, so the id is removed from the set
+		// once the volume has been added, and the files that remain once every volume has been added are not scanned
 		for(File marcFile : marcFiles) {
+			if(volumeIdSet.isEmpty()) {
+				break;
+			}
 			System.out.println("scanning " + marcFile.getAbsolutePath());
 			try {
 				BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(marcFile), "UTF-8"));
 				String marcJsonStr = null;
+				JSONParser jsonParser = new JSONParser();
 				while((marcJsonStr = br.readLine()) != null) {
-					JSONParser jsonParser = new JSONParser();
-					JSONObject marcJson = (JSONObject)jsonParser.parse(marcJsonStr);
-					String volumeId = new MarcProcessor().getVolumeIdFromMarc(marcJson);
-					log.info("checking " + volumeId);
+					// only the records of the given volumes are parsed, unless the volume id of a record cannot be found without parsing it
+					JSONObject marcJson = null;
+					String volumeId = MarcVolumeIdScanner.getVolumeId(marcJsonStr);
+					if(volumeId == null) {
+						marcJson = (JSONObject)jsonParser.parse(marcJsonStr);
+						volumeId = MarcProcessor.getVolumeIdFromMarc(marcJson);
+					}
+					log.debug("checking " + volumeId);
 					//String volumeId = volume.getVolumeId();
 					if(volumeId != null) {
 						if(volumeIdSet.contains(volumeId)) {
 							log.info("parsing " + volumeId);
-							VolumeInfo volume = MarcJsonParser.parse(marcJson);
-							boolean status = addToSolr(volume);
-							if(status) {
-								pwSuccess.println(volumeId); pwSuccess.flush();
-							} else {
-								pwFailure.println(volumeId); pwFailure.flush();
+							if(marcJson == null) {
+								marcJson = (JSONObject)jsonParser.parse(marcJsonStr);
 							}
-							log.info("ingested " + volumeId + " to solr: " + status);
+							addToSolr(volumeId, marcJson);
+							volumeIdSet.remove(volumeId);
 						}
 					}
 				}
@@ -97,9 +120,34 @@ public class SolrMetadtaIngester extends Ingester {
 		}
 	}
 	
+	// adds the volume with the given MARC record to solr, and records the result in the id logs
+	private boolean addToSolr(String volumeId, JSONObject marcJson) {
+		VolumeInfo volume = MarcJsonParser.parse(marcJson);
+		boolean status = addToSolr(volume);
+		if(status) {
+			pwSuccess.println(volumeId); pwSuccess.flush();
+		} else {
+			pwFailure.println(volumeId); pwFailure.flush();
+		}
+		log.info("ingested " + volumeId + " to solr: " + status);
+		return status;
+	}
+	
+	// the MARC index, opened when first needed; null if MARC-INDEX-DIR is not set
+	private MarcIndex getMarcIndex() {
+		if(!marcIndexOpened) {
+			marcIndex = MarcIndex.fromConfiguration();
+			marcIndexOpened = true;
+		}
+		return marcIndex;
+	}
+	
 	public void close() {
 		pwSuccess.flush();pwSuccess.close();
 		pwFailure.flush();pwFailure.close();
+		if(marcIndex != null) {
+			marcIndex.close();
+		}
 		try {
 			solrCli.close();
 		} catch (IOException e) {
@@ -120,7 +168,7 @@ public class SolrMetadtaIngester extends Ingester {
 		document.addField("title", volume.getTitle());
 		document.addField("author", volume.getAuthor());
 		
-		try {
+		try (Timer.Context timer = IngestMetrics.Stage.SOLR_ADD.time()) {
 			solrCli.add(document);
 			log.info("indexing " + volume.getVolumeId());
 			// Remember to commit your changes!
@@ -141,8 +189,26 @@ public class SolrMetadtaIngester extends Ingester {
 
 	@Override
 	public boolean ingestOne(String volumeId) {
-		// ingest one is simply not worth it since it requires to linearly scan through 3 big .json file for just a single volume
-		// leave it returning false always. 
+		// without the MARC index, ingest one is simply not worth it since it requires to linearly scan through 3 big .json file for just a
+		// single volume; leave it returning false then. 
+		MarcIndex index = getMarcIndex();
+		if(index == null) {
+			return false;
+		}
+		try {
+			String marcJsonStr = index.getMarc(volumeId);
+			if(marcJsonStr == null) {
+				log.warn("MARC record of " + volumeId + " not found for solr ingest");
+				pwFailure.println(volumeId); pwFailure.flush();
+				return false;
+			}
+			return addToSolr(volumeId, (JSONObject)new JSONParser().parse(marcJsonStr));
+		} catch (IOException e) {
+			log.error("exception when reading marc record of " + volumeId, e);
+		} catch (ParseException e) {
+			log.error("error parsing marc record of " + volumeId, e);
+		}
+		pwFailure.println(volumeId); pwFailure.flush();
 		return false;
 	}
 }
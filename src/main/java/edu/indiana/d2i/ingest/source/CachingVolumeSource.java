@@ -0,0 +1,163 @@
+package edu.indiana.d2i.ingest.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.codahale.metrics.Timer;
+
+import edu.indiana.d2i.ingest.Constants;
+import edu.indiana.d2i.ingest.util.VolumePaths;
+
+/*
+ * Class that keeps copies of the volumes read from a slow source, e.g., the pairtree on shared storage, in a pairtree on a local disk, so that
+ * volumes that are read again, e.g., by VolumeComparison and then by the ingest, or by an ingest that is rerun, are read from the local
+ * disk. The source is asked for the files of every volume, which only looks them up, and a copy is given the length and modification time of
+ * the file it was copied from, so that a cached volume is returned only if its files have the length and modification time of the files in
+ * the source; otherwise, e.g., if the volume has been delivered to the source again, its files are copied into the cache, and the cached
+ * files are returned. The cache holds at most maxBytes of volumes; the least recently used volumes are removed when it grows beyond
+ * that. A volume removed while it is being read remains readable by the readers that opened it, but a volume that is located and not yet
+ * opened may be removed by a burst of larger volumes, so maxBytes should be well above the size of the volumes being read at once.
+ */
+public class CachingVolumeSource implements VolumeSource {
+	private static Logger log = LogManager.getLogger(CachingVolumeSource.class);
+
+	private final Path cacheRoot;
+	private final long maxBytes;
+	private final VolumeSource source;
+	private final VolumeSourceMetrics metrics;
+
+	// sizes of the cached volume directories, in least recently used order; guarded by this
+	private final LinkedHashMap<Path, Long> cachedVolumes = new LinkedHashMap<Path, Long>(16, 0.75f, true);
+	private long cachedBytes = 0;
+
+	public CachingVolumeSource(String cacheDir, long maxBytes, VolumeSource source) throws IOException {
+		this.cacheRoot = Paths.get(cacheDir);
+		this.maxBytes = maxBytes;
+		this.source = source;
+		this.metrics = new VolumeSourceMetrics(cacheDir);
+		Files.createDirectories(cacheRoot);
+		loadCachedVolumes();
+	}
+
+	// registers the volumes cached by earlier runs, so that they count towards maxBytes
+	private void loadCachedVolumes() throws IOException {
+		try (Stream<Path> files = Files.walk(cacheRoot)) {
+			files.filter(file -> isVolumeFile(file.getFileName().toString())).forEach(file -> {
+				try {
+					long size = Files.size(file);
+					cachedVolumes.merge(file.getParent(), size, Long::sum);
+					cachedBytes += size;
+				} catch (IOException e) {
+					log.warn("unable to read the size of cached file " + file + ": " + e.getMessage());
+				}
+			});
+		}
+		log.info("volume cache " + cacheRoot + " holds " + cachedVolumes.size() + " volumes, " + cachedBytes + " bytes");
+		evict();
+	}
+
+	private static boolean isVolumeFile(String fileName) {
+		return fileName.endsWith(Constants.VOLUME_ZIP_SUFFIX) || fileName.endsWith(Constants.METS_XML_SUFFIX);
+	}
+
+	@Override
+	public void prefetch(String volumeId) {
+		// cached volumes are also looked up in the source, to check that the cached copies are up to date
+		source.prefetch(volumeId);
+	}
+
+	@Override
+	public VolumeFiles locate(String volumeId) {
+		VolumePaths volumePaths = VolumePaths.resolve(volumeId);
+		Path dir = cacheRoot.resolve(volumePaths.getPairtreePath());
+		Path zipFile = dir.resolve(volumePaths.getZipFileName());
+		Path metsFile = dir.resolve(volumePaths.getMetsFileName());
+		VolumeFiles sourceFiles = source.locate(volumeId);
+		try (Timer.Context timer = metrics.timeLocate()) {
+			boolean cached;
+			synchronized (this) {
+				cached = cachedVolumes.get(dir) != null; // marks the volume as recently used
+			}
+			if (cached && sourceFiles.isComplete() && isCopyOf(zipFile, sourceFiles.getZipFile()) && isCopyOf(metsFile, sourceFiles.getMetsFile())) {
+				return metrics.located(new VolumeFiles(volumePaths, zipFile.toFile(), metsFile.toFile(), metrics));
+			}
+			metrics.located(VolumeFiles.missing(volumePaths, metrics)); // counted as not found in the cache
+		}
+		if (!sourceFiles.isComplete()) {
+			return sourceFiles;
+		}
+		try {
+			Files.createDirectories(dir);
+			long size = copy(sourceFiles.getZipFile(), zipFile) + copy(sourceFiles.getMetsFile(), metsFile);
+			sourceFiles.recordRead(size);
+			synchronized (this) {
+				Long oldSize = cachedVolumes.put(dir, size);
+				cachedBytes += size - ((oldSize == null) ? 0 : oldSize);
+				evict();
+			}
+			return new VolumeFiles(volumePaths, zipFile.toFile(), metsFile.toFile(), metrics);
+		} catch (IOException e) {
+			log.warn("unable to cache volume " + volumeId + " in " + dir + ": " + e.getMessage());
+			return sourceFiles;
+		}
+	}
+
+	// true if the cached file is an up to date copy of the source file, i.e., has the length and the modification time of the source file
+	private static boolean isCopyOf(Path cachedFile, File sourceFile) {
+		File file = cachedFile.toFile();
+		return file.isFile() && file.length() == sourceFile.length() && file.lastModified() == sourceFile.lastModified();
+	}
+
+	// copies the file to a temporary file next to the target, which is then renamed to the target, so that a partly copied file is never
+	// taken for a cached file; the copy is given the modification time that the source had before it was copied, so that a source that
+	// changes while it is copied is copied again. Returns the size of the file
+	private static long copy(File source, Path target) throws IOException {
+		Path tempFile = target.resolveSibling(target.getFileName() + ".tmp-" + Thread.currentThread().getId());
+		try {
+			FileTime lastModified = Files.getLastModifiedTime(source.toPath());
+			Files.copy(source.toPath(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+			Files.setLastModifiedTime(tempFile, lastModified);
+			Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+		return Files.size(target);
+	}
+
+	// removes the least recently used volumes until the cache holds at most maxBytes, but never the most recently used volume; called while
+	// holding the lock of this
+	private void evict() {
+		Iterator<Map.Entry<Path, Long>> entries = cachedVolumes.entrySet().iterator();
+		while (cachedBytes > maxBytes && cachedVolumes.size() > 1) {
+			Map.Entry<Path, Long> entry = entries.next();
+			Path dir = entry.getKey();
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, file -> isVolumeFile(file.getFileName().toString()))) {
+				for (Path file : files) {
+					Files.deleteIfExists(file);
+				}
+			} catch (IOException e) {
+				log.warn("unable to remove cached volume " + dir + ": " + e.getMessage());
+			}
+			cachedBytes -= entry.getValue();
+			entries.remove();
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		source.shutdown();
+	}
+}
@@ -0,0 +1,36 @@
+package edu.indiana.d2i.ingest.source;
+
+import java.io.File;
+
+import com.codahale.metrics.Timer;
+
+import edu.indiana.d2i.ingest.util.VolumePaths;
+
+/*
+ * Class that reads volumes from a single local directory, without the pairtree layout: the files of a volume are <clean id part>.zip and
+ * <clean id part>.mets.xml directly in the directory, e.g., ark+=13960=t9w09kd5k.zip. Meant as a stand-in for the pairtree when testing the
+ * ingester on a few volumes; configured in VOLUME_ROOTS as dir:<path>.
+ */
+public class DirectoryVolumeSource implements VolumeSource {
+	private final File dir;
+	private final VolumeSourceMetrics metrics;
+
+	public DirectoryVolumeSource(String dirPath) {
+		this.dir = new File(dirPath);
+		this.metrics = new VolumeSourceMetrics(dirPath);
+	}
+
+	@Override
+	public VolumeFiles locate(String volumeId) {
+		VolumePaths volumePaths = VolumePaths.resolve(volumeId);
+		try (Timer.Context timer = metrics.timeLocate()) {
+			File zipFile = new File(dir, volumePaths.getZipFileName());
+			File metsFile = new File(dir, volumePaths.getMetsFileName());
+			return metrics.located(new VolumeFiles(volumePaths, zipFile.isFile() ? zipFile : null, metsFile.isFile() ? metsFile : null, metrics));
+		}
+	}
+
+	@Override
+	public void shutdown() {
+	}
+}
@@ -0,0 +1,77 @@
+package edu.indiana.d2i.ingest.source;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Class that reads volumes from several roots, e.g., the pairtrees of different filesystems, which are searched in parallel. A volume is
+ * taken from the first root, in the order given, that holds both its zip and METS file; if no root holds both, the result of the first root
+ * is returned. Every root is asked about every volume, so that the roots that prefetch volumes also drain their prefetched volumes.
+ */
+public class MultiRootVolumeSource implements VolumeSource {
+	private final List<VolumeSource> roots;
+	private final ExecutorService executor;
+
+	public MultiRootVolumeSource(List<VolumeSource> roots) {
+		if (roots.isEmpty()) {
+			throw new IllegalArgumentException("no volume roots");
+		}
+		this.roots = new ArrayList<VolumeSource>(roots);
+		AtomicInteger threadCount = new AtomicInteger();
+		// threads are created as lookups are issued by the ingest threads, and are reused afterwards
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "volume-root-lookup-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void prefetch(String volumeId) {
+		for (VolumeSource root : roots) {
+			root.prefetch(volumeId);
+		}
+	}
+
+	@Override
+	public VolumeFiles locate(String volumeId) {
+		List<CompletableFuture<VolumeFiles>> lookups = new ArrayList<CompletableFuture<VolumeFiles>>(roots.size());
+		// the first root is looked up on the calling thread, while the others are looked up on the executor
+		for (int i = 1; i < roots.size(); i++) {
+			VolumeSource root = roots.get(i);
+			lookups.add(CompletableFuture.supplyAsync(() -> root.locate(volumeId), executor));
+		}
+		VolumeFiles first = roots.get(0).locate(volumeId);
+		if (first.isComplete()) {
+			return first;
+		}
+		for (CompletableFuture<VolumeFiles> lookup : lookups) {
+			VolumeFiles volumeFiles;
+			try {
+				volumeFiles = lookup.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+			if (volumeFiles.isComplete()) {
+				return volumeFiles;
+			}
+		}
+		return first;
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdownNow();
+		for (VolumeSource root : roots) {
+			root.shutdown();
+		}
+	}
+}
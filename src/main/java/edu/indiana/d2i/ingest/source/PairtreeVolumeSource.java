@@ -0,0 +1,149 @@
+package edu.indiana.d2i.ingest.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+
+import edu.indiana.d2i.ingest.util.IngestMetrics;
+import edu.indiana.d2i.ingest.util.VolumePaths;
+
+/*
+ * Class that reads volumes from the pairtree under a root directory. The leaf directory of a volume is listed once, with a DirectoryStream,
+ * instead of checking the existence of each file separately, which takes several metadata operations per volume on the shared filesystem
+ * of the pairtree. Volumes that are not found are remembered, up to MAX_MISSING_VOLUMES of them, so that they are not looked up again.
+ * Volumes may be prefetched: prefetch() lists the leaf directory of a volume on a pool of threads, ahead of the call to locate() for the
+ * volume, so that the latency of the filesystem is hidden from the ingest threads. At most maxPrefetched volumes are prefetched and not yet
+ * located at any time; further prefetches are ignored until the prefetched volumes are located.
+ */
+public class PairtreeVolumeSource implements VolumeSource {
+	private static Logger log = LogManager.getLogger(PairtreeVolumeSource.class);
+
+	private static final int MAX_MISSING_VOLUMES = 10000;
+
+	private final String rootPath;
+	private final VolumeSourceMetrics metrics;
+	private final ExecutorService prefetchExecutor;
+	private final int maxPrefetched;
+	private final ConcurrentMap<String, CompletableFuture<VolumeFiles>> prefetched = new ConcurrentHashMap<String, CompletableFuture<VolumeFiles>>();
+	// ids of volumes that were not found, or whose zip or METS file is missing, in least recently used order
+	private final Map<String, Boolean> missingVolumes = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_MISSING_VOLUMES;
+		}
+	});
+
+	private final Counter prefetchHits = IngestMetrics.getRegistry().counter("pairtree.prefetch.hits");
+	private final Counter prefetchMisses = IngestMetrics.getRegistry().counter("pairtree.prefetch.misses");
+	private final Counter missingHits = IngestMetrics.getRegistry().counter("pairtree.missing.hits");
+
+	// numPrefetchThreads <= 0 disables prefetching
+	public PairtreeVolumeSource(String rootPath, int numPrefetchThreads, int maxPrefetched) {
+		this.rootPath = rootPath;
+		this.metrics = new VolumeSourceMetrics(rootPath);
+		this.maxPrefetched = maxPrefetched;
+		if (numPrefetchThreads > 0 && maxPrefetched > 0) {
+			AtomicInteger threadCount = new AtomicInteger();
+			this.prefetchExecutor = Executors.newFixedThreadPool(numPrefetchThreads, runnable -> {
+				Thread thread = new Thread(runnable, "pairtree-prefetch-" + threadCount.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.prefetchExecutor = null;
+		}
+	}
+
+	// starts listing the leaf directory of the volume in the background, if prefetching is enabled, and fewer than maxPrefetched volumes
+	// are waiting to be located
+	@Override
+	public void prefetch(String volumeId) {
+		if (prefetchExecutor == null || volumeId == null || prefetched.size() >= maxPrefetched || missingVolumes.containsKey(volumeId)) {
+			return;
+		}
+		VolumePaths volumePaths;
+		try {
+			volumePaths = VolumePaths.resolve(volumeId);
+		} catch (IllegalArgumentException e) {
+			return; // reported when the volume is located
+		}
+		prefetched.computeIfAbsent(volumeId, id -> CompletableFuture.supplyAsync(() -> list(volumePaths), prefetchExecutor));
+	}
+
+	@Override
+	public VolumeFiles locate(String volumeId) {
+		try (Timer.Context timer = metrics.timeLocate()) {
+			CompletableFuture<VolumeFiles> prefetchedFiles = prefetched.remove(volumeId);
+			if (prefetchedFiles != null) {
+				prefetchHits.inc();
+				return metrics.located(prefetchedFiles.join());
+			}
+			VolumePaths volumePaths = VolumePaths.resolve(volumeId);
+			if (missingVolumes.containsKey(volumeId)) {
+				missingHits.inc();
+				return metrics.located(VolumeFiles.missing(volumePaths, metrics));
+			}
+			if (prefetchExecutor != null) {
+				prefetchMisses.inc();
+			}
+			return metrics.located(list(volumePaths));
+		}
+	}
+
+	// lists the leaf directory of the volume, and picks out the zip and METS files of the volume
+	private VolumeFiles list(VolumePaths volumePaths) {
+		Path dir = Paths.get(rootPath, volumePaths.getPairtreePath());
+		String zipFileName = volumePaths.getZipFileName();
+		String metsFileName = volumePaths.getMetsFileName();
+		File zipFile = null;
+		File metsFile = null;
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+			for (Path entry : entries) {
+				String name = entry.getFileName().toString();
+				if (name.equals(zipFileName)) {
+					zipFile = entry.toFile();
+				} else if (name.equals(metsFileName)) {
+					metsFile = entry.toFile();
+				}
+			}
+		} catch (NoSuchFileException | NotDirectoryException e) {
+			// the volume is not in the pairtree
+		} catch (IOException e) {
+			// not remembered as missing, since the error may be transient
+			log.warn("unable to list directory " + dir + " of volume " + volumePaths.getVolumeId() + ": " + e.getMessage());
+			return VolumeFiles.missing(volumePaths, metrics);
+		}
+		if (zipFile == null || metsFile == null) {
+			missingVolumes.put(volumePaths.getVolumeId(), Boolean.TRUE);
+		}
+		return new VolumeFiles(volumePaths, zipFile, metsFile, metrics);
+	}
+
+	@Override
+	public void shutdown() {
+		if (prefetchExecutor != null) {
+			prefetchExecutor.shutdownNow();
+		}
+		prefetched.clear();
+	}
+}
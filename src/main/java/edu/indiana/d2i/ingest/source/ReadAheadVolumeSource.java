@@ -0,0 +1,221 @@
+package edu.indiana.d2i.ingest.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+
+import edu.indiana.d2i.ingest.util.IngestMetrics;
+
+/*
+ * Class that reads the files of volumes ahead of the ingest workers, so that the workers find the files of a volume in the page cache of the
+ * operating system, instead of waiting for the storage that holds them. Volumes are staged in the order in which they are prefetched, by a
+ * pool of reader threads: each volume is located in the wrapped source, and its zip and METS files are read through once. At most
+ * maxVolumes volumes, holding at most maxBytes of files, are staged and not yet located at any time, so that the staged files are not
+ * evicted from the page cache by the files of volumes further ahead; a volume larger than maxBytes is staged only when no other volume is.
+ * A volume that is located before it has been staged is located in the wrapped source by the calling thread, which never waits for the
+ * readers. Prefetches are not passed on to the wrapped source, since the readers locate the volumes in it ahead of time.
+ */
+public class ReadAheadVolumeSource implements VolumeSource {
+	private static Logger log = LogManager.getLogger(ReadAheadVolumeSource.class);
+
+	private static final int READ_BUFFER_SIZE = 1 << 20;
+
+	// a prefetched volume, which is staged once files is completed
+	private static class StagedVolume {
+		private final String volumeId;
+		private final CompletableFuture<VolumeFiles> files = new CompletableFuture<VolumeFiles>();
+		// number of bytes counted against maxBytes
+		private long numBytes = 0;
+		// true once the volume has been located, staged or not; guarded by this
+		private boolean taken = false;
+
+		StagedVolume(String volumeId) {
+			this.volumeId = volumeId;
+		}
+		synchronized boolean isTaken() {
+			return taken;
+		}
+	}
+
+	private final VolumeSource source;
+	private final long maxBytes;
+	private final ExecutorService readers;
+	private final ConcurrentMap<String, StagedVolume> stagedVolumes = new ConcurrentHashMap<String, StagedVolume>();
+	private final BlockingQueue<StagedVolume> pendingVolumes = new LinkedBlockingQueue<StagedVolume>();
+	private final Semaphore volumePermits;
+	// number of bytes of the volumes that are staged, or being staged, and not yet located; guarded by bytesLock
+	private long stagedBytes = 0;
+	private final Object bytesLock = new Object();
+
+	private final Counter hits = IngestMetrics.getRegistry().counter("read-ahead.hits");
+	private final Counter misses = IngestMetrics.getRegistry().counter("read-ahead.misses");
+
+	private static final ThreadLocal<ByteBuffer> readBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+	public ReadAheadVolumeSource(VolumeSource source, int numReaders, int maxVolumes, long maxBytes) {
+		this.source = source;
+		this.maxBytes = maxBytes;
+		this.volumePermits = new Semaphore(Math.max(1, maxVolumes));
+		AtomicInteger threadCount = new AtomicInteger();
+		this.readers = Executors.newFixedThreadPool(numReaders, runnable -> {
+			Thread thread = new Thread(runnable, "read-ahead-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		for (int i = 0; i < numReaders; i++) {
+			readers.execute(this::stageVolumes);
+		}
+		IngestMetrics.getRegistry().remove("read-ahead.staged-bytes");
+		IngestMetrics.getRegistry().register("read-ahead.staged-bytes", (Gauge<Long>) () -> {
+			synchronized (bytesLock) {
+				return stagedBytes;
+			}
+		});
+	}
+
+	@Override
+	public void prefetch(String volumeId) {
+		if (volumeId == null || volumeId.isEmpty()) {
+			return;
+		}
+		StagedVolume stagedVolume = new StagedVolume(volumeId);
+		// a volume prefetched twice before it is located is staged once
+		if (stagedVolumes.putIfAbsent(volumeId, stagedVolume) == null) {
+			pendingVolumes.add(stagedVolume);
+		}
+	}
+
+	@Override
+	public VolumeFiles locate(String volumeId) {
+		StagedVolume stagedVolume = stagedVolumes.remove(volumeId);
+		if (stagedVolume != null) {
+			boolean staged;
+			synchronized (stagedVolume) {
+				stagedVolume.taken = true;
+				staged = stagedVolume.files.isDone();
+			}
+			// the budget of a volume that is not staged yet is returned by its reader
+			if (staged) {
+				release(stagedVolume);
+				if (!stagedVolume.files.isCompletedExceptionally()) {
+					hits.inc();
+					return stagedVolume.files.join();
+				}
+			}
+		}
+		misses.inc();
+		return source.locate(volumeId);
+	}
+
+	// run by each reader thread: stages the pending volumes, in order, as the budget allows
+	private void stageVolumes() {
+		try {
+			while (true) {
+				StagedVolume stagedVolume = pendingVolumes.take();
+				if (stagedVolume.isTaken()) {
+					continue;
+				}
+				volumePermits.acquire();
+				boolean handedOver;
+				try {
+					handedOver = stage(stagedVolume);
+				} catch (RuntimeException e) {
+					// e.g., an invalid volume id; the volume is located again by the caller, which reports the error
+					handedOver = handOver(stagedVolume, null, e);
+				}
+				if (!handedOver) {
+					release(stagedVolume);
+				}
+			}
+		} catch (InterruptedException e) {
+			// shut down
+		}
+	}
+
+	// stages the volume; returns true if the staged volume was handed over to locate(), which then releases its budget, or false if the
+	// volume was located before it was staged
+	private boolean stage(StagedVolume stagedVolume) throws InterruptedException {
+		if (stagedVolume.isTaken()) {
+			return false;
+		}
+		VolumeFiles volumeFiles = source.locate(stagedVolume.volumeId);
+		if (volumeFiles.isComplete()) {
+			long numBytes = volumeFiles.getZipFile().length() + volumeFiles.getMetsFile().length();
+			synchronized (bytesLock) {
+				while (stagedBytes > 0 && stagedBytes + numBytes > maxBytes) {
+					if (stagedVolume.isTaken()) {
+						return false;
+					}
+					bytesLock.wait(1000);
+				}
+				stagedBytes += numBytes;
+				stagedVolume.numBytes = numBytes;
+			}
+			readThrough(volumeFiles.getMetsFile());
+			readThrough(volumeFiles.getZipFile());
+		}
+		return handOver(stagedVolume, volumeFiles, null);
+	}
+
+	// completes the staged volume with its files or an error, unless it has already been located
+	private static boolean handOver(StagedVolume stagedVolume, VolumeFiles volumeFiles, Throwable error) {
+		synchronized (stagedVolume) {
+			if (stagedVolume.taken) {
+				return false;
+			}
+			if (error != null) {
+				stagedVolume.files.completeExceptionally(error);
+			} else {
+				stagedVolume.files.complete(volumeFiles);
+			}
+			return true;
+		}
+	}
+
+	// reads the whole file, so that it is brought into the page cache; errors are left to the readers of the volume
+	private static void readThrough(File file) {
+		ByteBuffer buffer = readBuffer.get();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			do {
+				buffer.clear();
+			} while (channel.read(buffer) >= 0);
+		} catch (IOException e) {
+			log.warn("unable to read ahead " + file + ": " + e.getMessage());
+		}
+	}
+
+	// returns the budget held by a located volume
+	private void release(StagedVolume stagedVolume) {
+		synchronized (bytesLock) {
+			stagedBytes -= stagedVolume.numBytes;
+			stagedVolume.numBytes = 0;
+			bytesLock.notifyAll();
+		}
+		volumePermits.release();
+	}
+
+	@Override
+	public void shutdown() {
+		readers.shutdownNow();
+		pendingVolumes.clear();
+		stagedVolumes.clear();
+		source.shutdown();
+	}
+}
@@ -0,0 +1,50 @@
+package edu.indiana.d2i.ingest.source;
+
+import java.io.File;
+
+import edu.indiana.d2i.ingest.util.VolumePaths;
+
+/*
+ * Class that holds the zip and METS files of a volume, as located by a VolumeSource, together with the metrics of the root in which they
+ * were found. A file is null if it was not found in any root.
+ */
+public class VolumeFiles {
+	private final VolumePaths volumePaths;
+	private final File zipFile;
+	private final File metsFile;
+	private final VolumeSourceMetrics metrics;
+
+	VolumeFiles(VolumePaths volumePaths, File zipFile, File metsFile, VolumeSourceMetrics metrics) {
+		this.volumePaths = volumePaths;
+		this.zipFile = zipFile;
+		this.metsFile = metsFile;
+		this.metrics = metrics;
+	}
+
+	// files of a volume that was not found
+	static VolumeFiles missing(VolumePaths volumePaths, VolumeSourceMetrics metrics) {
+		return new VolumeFiles(volumePaths, null, null, metrics);
+	}
+
+	public VolumePaths getVolumePaths() {
+		return volumePaths;
+	}
+	public File getZipFile() {
+		return zipFile;
+	}
+	public File getMetsFile() {
+		return metsFile;
+	}
+	// true if both the zip and the METS file of the volume exist
+	public boolean isComplete() {
+		return zipFile != null && metsFile != null;
+	}
+	// the name of the root in which the files were looked up, e.g., the path of a pairtree root
+	public String getRootName() {
+		return metrics.getName();
+	}
+	// records that the given number of bytes of the files were read, in the read throughput of the root
+	public void recordRead(long numBytes) {
+		metrics.recordRead(numBytes);
+	}
+}
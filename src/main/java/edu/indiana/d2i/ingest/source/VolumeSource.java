@@ -0,0 +1,19 @@
+package edu.indiana.d2i.ingest.source;
+
+/*
+ * Interface of the places from which the zip and METS files of volumes are read, e.g., a pairtree on shared storage (PairtreeVolumeSource),
+ * a flat local directory (DirectoryVolumeSource), several roots searched in parallel (MultiRootVolumeSource), a local cache in front of
+ * another source (CachingVolumeSource), or another source whose volumes are read ahead of the ingest (ReadAheadVolumeSource).
+ * VolumeSources.fromConfiguration() builds the configured source. Implementations may be used by several threads at once.
+ */
+public interface VolumeSource {
+	// returns the files of the volume; the zip or METS file is null if it was not found. Throws IllegalArgumentException if the volume id
+	// is not valid
+	VolumeFiles locate(String volumeId);
+
+	// hints that the volume will be located soon; sources on slow storage may start looking it up in the background
+	default void prefetch(String volumeId) {
+	}
+
+	void shutdown();
+}
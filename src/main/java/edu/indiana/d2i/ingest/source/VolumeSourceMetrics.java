@@ -0,0 +1,51 @@
+package edu.indiana.d2i.ingest.source;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import edu.indiana.d2i.ingest.util.IngestMetrics;
+
+/*
+ * Class that holds the metrics of a single root of volumes, named volume-source.<root name>.*: the latency of looking up volumes in the
+ * root, the number of volumes found and not found in it, and the rate at which bytes of the files found in it are read.
+ */
+class VolumeSourceMetrics {
+	private final String name;
+	private final Timer locate;
+	private final Counter found;
+	private final Counter notFound;
+	private final Meter bytesRead;
+
+	VolumeSourceMetrics(String name) {
+		this.name = name;
+		MetricRegistry registry = IngestMetrics.getRegistry();
+		String prefix = "volume-source." + name;
+		this.locate = registry.timer(prefix + ".locate");
+		this.found = registry.counter(prefix + ".found");
+		this.notFound = registry.counter(prefix + ".not-found");
+		this.bytesRead = registry.meter(prefix + ".bytes-read");
+	}
+
+	String getName() {
+		return name;
+	}
+	Timer.Context timeLocate() {
+		return locate.time();
+	}
+	// counts the result of a lookup, and returns the files
+	VolumeFiles located(VolumeFiles volumeFiles) {
+		if (volumeFiles.isComplete()) {
+			found.inc();
+		} else {
+			notFound.inc();
+		}
+		return volumeFiles;
+	}
+	void recordRead(long numBytes) {
+		if (numBytes > 0) {
+			bytesRead.mark(numBytes);
+		}
+	}
+}
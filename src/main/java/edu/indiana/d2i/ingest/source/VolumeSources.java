@@ -0,0 +1,63 @@
+package edu.indiana.d2i.ingest.source;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import edu.indiana.d2i.ingest.Constants;
+import edu.indiana.d2i.ingest.util.Configuration;
+
+/*
+ * Class that builds the VolumeSource described by the configuration. VOLUME_ROOTS is a comma-separated list of roots, searched in parallel
+ * and preferred in the order given; a root is the path of a directory that holds a pairtree, or dir:<path> for a directory that holds the
+ * zip and METS files of volumes without the pairtree layout (see DirectoryVolumeSource). If VOLUME_CACHE_DIR is set, the volumes read
+ * from the roots are cached in that directory, up to VOLUME_CACHE_MAX_MB. If READ_AHEAD_THREADS is positive, the files of prefetched
+ * volumes are read ahead of the ingest, up to READ_AHEAD_VOLUMES volumes and READ_AHEAD_MAX_MB at a time; the pairtree roots then do not
+ * prefetch directories themselves, since the volumes are located by the readers.
+ */
+public class VolumeSources {
+	private static Logger log = LogManager.getLogger(VolumeSources.class);
+
+	private static final String DIRECTORY_PREFIX = "dir:";
+
+	public static VolumeSource fromConfiguration() {
+		int numReadAheadThreads = Integer.parseInt(Configuration.getProperty(Constants.PK_READ_AHEAD_THREADS, Constants.DEFAULT_READ_AHEAD_THREADS));
+		int numPrefetchThreads = (numReadAheadThreads > 0) ? 0
+				: Integer.parseInt(Configuration.getProperty(Constants.PK_PAIRTREE_PREFETCH_THREADS, Constants.DEFAULT_PAIRTREE_PREFETCH_THREADS));
+		int maxPrefetched = Integer.parseInt(Configuration.getProperty(Constants.PK_PAIRTREE_PREFETCH_VOLUMES, Constants.DEFAULT_PAIRTREE_PREFETCH_VOLUMES));
+		List<VolumeSource> roots = new ArrayList<VolumeSource>();
+		for (String root : Configuration.getProperty(Constants.PK_VOLUME_ROOTS, Constants.DEFAULT_VOLUME_ROOTS).split(",")) {
+			root = root.trim();
+			if (root.isEmpty()) {
+				continue;
+			}
+			if (root.startsWith(DIRECTORY_PREFIX)) {
+				roots.add(new DirectoryVolumeSource(root.substring(DIRECTORY_PREFIX.length())));
+			} else {
+				roots.add(new PairtreeVolumeSource(root, numPrefetchThreads, maxPrefetched));
+			}
+		}
+		log.info("reading volumes from " + roots.size() + " roots");
+		VolumeSource source = (roots.size() == 1) ? roots.get(0) : new MultiRootVolumeSource(roots);
+
+		String cacheDir = Configuration.getProperty(Constants.PK_VOLUME_CACHE_DIR, Constants.DEFAULT_VOLUME_CACHE_DIR).trim();
+		if (!cacheDir.isEmpty()) {
+			long maxBytes = Long.parseLong(Configuration.getProperty(Constants.PK_VOLUME_CACHE_MAX_MB, Constants.DEFAULT_VOLUME_CACHE_MAX_MB)) * 1024 * 1024;
+			try {
+				source = new CachingVolumeSource(cacheDir, maxBytes, source);
+			} catch (IOException e) {
+				log.error("unable to use volume cache " + cacheDir + ", reading volumes without it: " + e.getMessage());
+			}
+		}
+
+		if (numReadAheadThreads > 0) {
+			int maxVolumes = Integer.parseInt(Configuration.getProperty(Constants.PK_READ_AHEAD_VOLUMES, Constants.DEFAULT_READ_AHEAD_VOLUMES));
+			long maxBytes = Long.parseLong(Configuration.getProperty(Constants.PK_READ_AHEAD_MAX_MB, Constants.DEFAULT_READ_AHEAD_MAX_MB)) * 1024 * 1024;
+			source = new ReadAheadVolumeSource(source, numReadAheadThreads, maxVolumes, maxBytes);
+		}
+		return source;
+	}
+}
@@ -0,0 +1,156 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.jmx.JmxReporter;
+
+import edu.indiana.d2i.ingest.Constants;
+
+/*
+ * Class that holds the metrics of the ingest process in a single registry: a latency timer for each stage of the ingest (see Stage), the
+ * rates at which volumes and pages are ingested, and a counter for each result of the ingest of a volume. Other classes may add their own
+ * metrics to the registry returned by getRegistry(). While reporting is started, the metrics are written to the log every
+ * METRICS_REPORT_INTERVAL_SECONDS, and are exposed as MBeans in the "htrc-ingester" JMX domain, if METRICS_JMX_ENABLED is true.
+ */
+public class IngestMetrics {
+	private static Logger log = LogManager.getLogger(IngestMetrics.class);
+
+	private static final String JMX_DOMAIN = "htrc-ingester";
+
+	private static final MetricRegistry registry = new MetricRegistry();
+	private static final Meter volumes = registry.meter("ingest.volumes");
+	private static final Meter pages = registry.meter("ingest.pages");
+
+	private static ScheduledReporter logReporter = null;
+	private static JmxReporter jmxReporter = null;
+
+	// the stages of the ingest whose latencies are recorded. Page checksums are computed while the pages are inflated, so ZIP_READ includes
+	// hashing the pages, and CHECKSUM_FINALIZE is only the time taken to complete the digest and encode it
+	public enum Stage {
+		LOCATE("locate"),
+		METS_PARSE("mets-parse"),
+		ZIP_READ("zip-read"),
+		CHECKSUM_FINALIZE("checksum-finalize"),
+		CASSANDRA_READ("cassandra-read"),
+		CASSANDRA_WRITE("cassandra-write"),
+		REDIS_SYNC("redis-sync"),
+		SOLR_ADD("solr-add");
+
+		private final Timer timer;
+
+		Stage(String name) {
+			this.timer = registry.timer("ingest.stage." + name);
+		}
+		// starts timing a single execution of the stage; the execution is recorded when the returned context is stopped or closed
+		public Timer.Context time() {
+			return timer.time();
+		}
+		// records a single execution of the stage that took the given number of nanoseconds
+		public void update(long nanos) {
+			timer.update(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	public static MetricRegistry getRegistry() {
+		return registry;
+	}
+
+	// records the result of the ingest of a volume; numPages is the number of pages written for the volume
+	public static void volumeIngested(Enum<?> result, int numPages) {
+		volumes.mark();
+		if (numPages > 0) {
+			pages.mark(numPages);
+		}
+		registry.counter("ingest.result." + result.name().toLowerCase()).inc();
+	}
+
+	// starts reporting the metrics to the log and, if enabled, to JMX; has no effect if reporting has already been started
+	public static synchronized void start() {
+		if (logReporter != null) {
+			return;
+		}
+		long interval = Long.parseLong(Configuration.getProperty(Constants.PK_METRICS_REPORT_INTERVAL_SECONDS, Constants.DEFAULT_METRICS_REPORT_INTERVAL_SECONDS));
+		logReporter = new LogReporter(registry);
+		if (interval > 0) {
+			logReporter.start(interval, TimeUnit.SECONDS);
+		}
+		if (Boolean.valueOf(Configuration.getProperty(Constants.PK_METRICS_JMX_ENABLED, Constants.DEFAULT_METRICS_JMX_ENABLED))) {
+			jmxReporter = JmxReporter.forRegistry(registry)
+					.inDomain(JMX_DOMAIN)
+					.convertRatesTo(TimeUnit.SECONDS)
+					.convertDurationsTo(TimeUnit.MILLISECONDS)
+					.build();
+			jmxReporter.start();
+		}
+	}
+
+	// stops reporting, after writing the final values of the metrics to the log
+	public static synchronized void stop() {
+		if (logReporter == null) {
+			return;
+		}
+		logReporter.report();
+		logReporter.stop();
+		logReporter = null;
+		if (jmxReporter != null) {
+			jmxReporter.stop();
+			jmxReporter = null;
+		}
+	}
+
+	// writes the metrics to the log, one line per metric, with rates in events per second and durations in milliseconds
+	private static class LogReporter extends ScheduledReporter {
+		LogReporter(MetricRegistry registry) {
+			super(registry, "ingest-metrics-reporter", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public void report(SortedMap<String, Gauge> gauges, SortedMap<String, Counter> counters, SortedMap<String, Histogram> histograms,
+				SortedMap<String, Meter> meters, SortedMap<String, Timer> timers) {
+			for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+				log.info("metric {}: value={}", entry.getKey(), entry.getValue().getValue());
+			}
+			for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+				log.info("metric {}: count={}", entry.getKey(), entry.getValue().getCount());
+			}
+			for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+				Snapshot snapshot = entry.getValue().getSnapshot();
+				log.info("metric {}: count={}, min={}, mean={}, p50={}, p95={}, p99={}, max={}", entry.getKey(), entry.getValue().getCount(),
+						snapshot.getMin(), format(snapshot.getMean()), format(snapshot.getMedian()), format(snapshot.get95thPercentile()),
+						format(snapshot.get99thPercentile()), snapshot.getMax());
+			}
+			for (Map.Entry<String, Meter> entry : meters.entrySet()) {
+				Meter meter = entry.getValue();
+				log.info("metric {}: count={}, mean rate={}/{}, 1-minute rate={}/{}", entry.getKey(), meter.getCount(),
+						format(convertRate(meter.getMeanRate())), getRateUnit(), format(convertRate(meter.getOneMinuteRate())), getRateUnit());
+			}
+			for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+				Timer timer = entry.getValue();
+				Snapshot snapshot = timer.getSnapshot();
+				log.info("metric {}: count={}, rate={}/{}, mean={}, p50={}, p95={}, p99={}, max={} {}", entry.getKey(), timer.getCount(),
+						format(convertRate(timer.getOneMinuteRate())), getRateUnit(), format(convertDuration(snapshot.getMean())),
+						format(convertDuration(snapshot.getMedian())), format(convertDuration(snapshot.get95thPercentile())),
+						format(convertDuration(snapshot.get99thPercentile())), format(convertDuration(snapshot.getMax())), getDurationUnit());
+			}
+		}
+
+		private static String format(double value) {
+			return String.format("%.2f", value);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package edu.indiana.d2i.ingest.util;
+
+/*
+ * Class that holds a set of long values, other than 0, in a single open-addressing array with linear probing, at 8 bytes per slot, instead
+ * of a HashSet of boxed Longs. Used to remember the 64-bit hashes of volume ids; not safe for use by several threads at once.
+ */
+class LongHashSet {
+	private long[] slots;
+	private int size = 0;
+
+	LongHashSet(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		slots = new long[capacity];
+	}
+
+	// adds the value, which must not be 0; returns false if it was already in the set
+	boolean add(long value) {
+		if ((size + 1) * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+		int mask = slots.length - 1;
+		int i = (int) (value ^ (value >>> 32)) & mask;
+		while (slots[i] != 0) {
+			if (slots[i] == value) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		slots[i] = value;
+		size++;
+		return true;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void rehash(int n) {
+		long[] oldSlots = slots;
+		slots = new long[n];
+		int mask = n - 1;
+		for (long value : oldSlots) {
+			if (value != 0) {
+				int i = (int) (value ^ (value >>> 32)) & mask;
+				while (slots[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				slots[i] = value;
+			}
+		}
+	}
+}
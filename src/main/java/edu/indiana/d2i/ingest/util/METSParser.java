@@ -31,18 +31,20 @@
  */
 package edu.indiana.d2i.ingest.util;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
-import java.util.Stack;
 import java.util.StringTokenizer;
 
 import javax.xml.namespace.QName;
@@ -112,113 +114,106 @@ public class METSParser {
     }
     
     public static class VolumeRecord {
+        // a page of the volume; the fields of the page are stored in the PageTable of the volume, and a PageRecord is only a reference to
+        // a row of the table, so PageRecords are created as pages are looked up, and two PageRecords of the same page are interchangeable
         public static class PageRecord {
             
-            protected static final int INITIAL_PAGE_FEATURE_LIST_SIZE = 20;
+            private final PageTable pageTable;
+            private final int row;
             
-            private String ocrFilename;
-            private String sequence;
-            private String checksum;
-            private String checksumType;
-            private String label;
-            private String id;
-            private List<String> features;
-            private long byteCount;
-            private int characterCount;
-            private int order;
-            
-            
-            public PageRecord() {
-                this.sequence = null;
-                this.ocrFilename = null;
-                this.checksum = null;
-                this.checksumType = null;
-                this.id = null;
-                this.byteCount = 0L;
-                this.characterCount = 0;
-                this.label = null;
-                this.order = 0;
-                this.features = null;
+            PageRecord(PageTable pageTable, int row) {
+                this.pageTable = pageTable;
+                this.row = row;
             }
             
             public void setSequence(String sequence) {
-                this.sequence = sequence;
+                pageTable.setSequence(row, sequence);
             }
             public String getSequence() {
-                return sequence;
+                return pageTable.getSequence(row);
             }
+            // the file name must be set before the page is added to the volume record, which indexes the page by its file name
             public void setOcrFilename(String ocrFilename) {
-                this.ocrFilename = ocrFilename;
+                pageTable.setOcrFilename(row, ocrFilename);
             }
             public String getOcrFilename() {
-                return ocrFilename;
+                return pageTable.getOcrFilename(row);
             }
             public void setChecksum(String checksum, String checksumType) {
-                this.checksum = checksum;
-                this.checksumType = checksumType;
+                pageTable.setChecksum(row, checksum);
+                pageTable.setChecksumType(row, checksumType);
             }
             public String getChecksum() {
-                return checksum;
+                return pageTable.getChecksum(row);
             }
             public String getChecksumType() {
-                return checksumType;
+                return pageTable.getChecksumType(row);
             }
             public void setByteCount(long byteCount) {
-                this.byteCount = byteCount;
+                pageTable.setByteCount(row, byteCount);
             }
             public long getByteCount() {
-                return byteCount;
+                return pageTable.getByteCount(row);
             }
             public void setCharacterCount(int characterCount) {
-                this.characterCount = characterCount;
+                pageTable.setCharacterCount(row, characterCount);
             }
             public int getCharacterCount() {
-                return characterCount;
+                return pageTable.getCharacterCount(row);
             }
             public void setLabel(String label) {
-                this.label = label;
+                pageTable.setLabel(row, label);
             }
             public String getLabel() {
-                return label;
+                return pageTable.getLabel(row);
             }
+            // the id must be set before the page is added to the volume record, which indexes the page by its id
             void setID(String id) {
-                this.id = id;
+                pageTable.setId(row, id);
             }
             String getID() {
-                return id;
+                return pageTable.getId(row);
             }
             public void setOrder(int order) {
-                this.order = order;
+                pageTable.setOrder(row, order);
             }
             public int getOrder() {
-                return order;
+                return pageTable.getOrder(row);
             }
-            public void addFeature(String feature) {
-                if (features == null) {
-                    features = new ArrayList<String>(INITIAL_PAGE_FEATURE_LIST_SIZE);
-                }
-                features.add(feature);
+            // sets the features of the page from the comma-separated list in the LABEL attribute of the page div in the METS file
+            public void setFeatures(String features) {
+                pageTable.setFeatures(row, features);
             }
+            // returns the features of the page, or null if the page has none; the list is created on every call
             public List<String> getFeatures() {
-                return features;
+                String features = pageTable.getFeatures(row);
+                if (features == null) {
+                    return null;
+                }
+                List<String> featureList = new ArrayList<String>();
+                StringTokenizer stringTokenizer = new StringTokenizer(features, ",");
+                while (stringTokenizer.hasMoreTokens()) {
+                    String token = stringTokenizer.nextToken().trim();
+                    if (!"".equals(token)) {
+                        featureList.add(token);
+                    }
+                }
+                return featureList.isEmpty() ? null : featureList;
             }
         }
         
-        static final int INITIAL_HASHMAP_CAPACITY = 300;
         private String volumeID;
         private int pageCount;
-        private HashMap<String, PageRecord> hashMapByFilename;
-        private HashMap<String, PageRecord> hashMapByID;
+        private PageTable pageTable;
         private CopyrightEnum copyright;
-        private String metsContents;
+        private byte[] metsBytes;
         
         public VolumeRecord(String volumeID) {
             this.volumeID = volumeID;
             this.pageCount = 0;
-            this.hashMapByFilename = new HashMap<String, PageRecord>(INITIAL_HASHMAP_CAPACITY);
-            this.hashMapByID = new HashMap<String, PageRecord>(INITIAL_HASHMAP_CAPACITY);
+            this.pageTable = new PageTable();
             this.copyright = CopyrightEnum.PUBLIC_DOMAIN;
-            this.metsContents = null;
+            this.metsBytes = null;
         }
         public String getVolumeID() {
             return volumeID;
@@ -229,23 +224,32 @@ public class METSParser {
         public int getPageCount() {
             return pageCount;
         }
+        // creates a page of this volume; the page is found by its file name or id only once it has been added with addPageRecord
+        public PageRecord newPageRecord() {
+            return new PageRecord(pageTable, pageTable.addRow());
+        }
         public void addPageRecord(PageRecord pageRecord) {
-            String ocrFilename = pageRecord.getOcrFilename();
-            String id = pageRecord.getID();
-            hashMapByFilename.put(ocrFilename, pageRecord);
-            hashMapByID.put(id, pageRecord);
+            if (pageRecord.pageTable != pageTable) {
+                throw new IllegalArgumentException("page record of another volume added to volume " + volumeID);
+            }
+            pageTable.index(pageRecord.row);
         }
+        // read-only views of the file names and ids of the pages
         public Set<String> getPageFilenameSet() {
-           return hashMapByFilename.keySet(); 
+           return pageTable.keySet(PageTable.FILENAME_KEY); 
         }
         public Set<String> getPageIDSet() {
-            return hashMapByID.keySet();
+            return pageTable.keySet(PageTable.ID_KEY);
         }
         public PageRecord getPageRecordByFilename(String filename) {
-            return hashMapByFilename.get(filename);
+            return getPageRecord(filename, PageTable.FILENAME_KEY);
         }
         public PageRecord getPageRecordByID(String id) {
-            return hashMapByID.get(id);
+            return getPageRecord(id, PageTable.ID_KEY);
+        }
+        private PageRecord getPageRecord(String key, int kind) {
+            int row = pageTable.find(key, kind);
+            return (row < 0) ? null : new PageRecord(pageTable, row);
         }
         
         public void setCopyright(CopyrightEnum copyright) {
@@ -255,14 +259,22 @@ public class METSParser {
             return copyright;
         }
         public void setMETSContents(String metsContents) {
-            this.metsContents = metsContents;
+            this.metsBytes = (metsContents == null) ? null : metsContents.getBytes(StandardCharsets.UTF_8);
         }
+        // the METS file is kept only as the raw bytes read by the parser; the contents are decoded on every call, so callers should call
+        // this once per volume
         public String getMETSContents() {
-            return metsContents;
+            return (metsBytes == null) ? null : new String(metsBytes, StandardCharsets.UTF_8);
+        }
+        public void setMETSBytes(byte[] metsBytes) {
+            this.metsBytes = metsBytes;
+        }
+        public byte[] getMETSBytes() {
+            return metsBytes;
         }
         public void updatePageCount() {
-            pageCount = hashMapByFilename.size();
-            pageCount = hashMapByID.size() > pageCount ? hashMapByID.size() : pageCount;
+            pageCount = pageTable.getNumKeys(PageTable.FILENAME_KEY);
+            pageCount = pageTable.getNumKeys(PageTable.ID_KEY) > pageCount ? pageTable.getNumKeys(PageTable.ID_KEY) : pageCount;
         }
     }
     
@@ -301,6 +313,10 @@ public class METSParser {
     
     private static Logger log = LogManager.getLogger(METSParser.class);
 
+    // the JDK does not guarantee that an XMLInputFactory may be used by several threads at once, so each thread creates a factory for METS
+    // files the first time it parses a METS file, and reuses it for all the METS files it parses later
+    private static final ThreadLocal<XMLInputFactory> threadFactory = ThreadLocal.withInitial(METSParser::newXMLInputFactory);
+
     protected File metsFile;
     protected VolumeRecord volumeRecord;
     protected XMLInputFactory factory;
@@ -311,6 +327,29 @@ public class METSParser {
         this.factory = factory;
     }
     
+    // uses the METS factory of the calling thread; the parser should then be used only by the thread that created it
+    public METSParser(File metsFile, VolumeRecord volumeRecord) {
+        this(metsFile, volumeRecord, getXMLInputFactory());
+    }
+    
+    // returns the factory of the calling thread, created by newXMLInputFactory; the factory must not be reconfigured, or handed to other
+    // threads
+    public static XMLInputFactory getXMLInputFactory() {
+        return threadFactory.get();
+    }
+    
+    // creates a factory configured for METS files: namespace aware, since elements and attributes are matched by namespace; not coalescing,
+    // since the parser does not read text; and without support for DTDs and external entities, so that nothing other than the METS file
+    // itself is ever read
+    public static XMLInputFactory newXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+    
     public VolumeRecord getVolumeRecord() {
         return volumeRecord;
     }
@@ -320,18 +359,25 @@ public class METSParser {
         
         if (log.isTraceEnabled()) log.trace("parsing METS for volume " + volumeRecord.getVolumeID());
         
-        String metsContents = readFileIntoString(metsFile);
-        
-        volumeRecord.setMETSContents(metsContents);
-        
-        
-        InputStream inputStream = new ByteArrayInputStream(metsContents.getBytes("utf-8"));
+        // the parser reads directly from the file channel, and the bytes read are captured for the structMetadata column, so the METS
+        // file is read once, and held in memory only once
+        CapturingInputStream inputStream = new CapturingInputStream(metsFile);
+        try {
+            parse(inputStream);
+            volumeRecord.setMETSBytes(inputStream.getCapturedBytes());
+        } finally {
+            inputStream.close();
+        }
+    }
+    
+    
+    private void parse(InputStream inputStream) throws XMLStreamException {
         
         XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
         
         int event;
         
-        Stack<ParsePhaseEnum> phaseStack = new Stack<ParsePhaseEnum>();
+        Deque<ParsePhaseEnum> phaseStack = new ArrayDeque<ParsePhaseEnum>();
                 
         PageRecord currentPageRecord = null;
         PageDivBean currentPageDivBean = null;
@@ -341,20 +387,20 @@ public class METSParser {
             switch (event) {
             case XMLStreamConstants.START_ELEMENT:
             {
-                QName qName = reader.getName();
-                if (log.isTraceEnabled()) log.trace("qName: " + qName);
+                // element names are compared by namespace and local name, without creating a QName for every element
+                String namespaceURI = reader.getNamespaceURI();
+                String localName = reader.getLocalName();
+                if (log.isTraceEnabled()) log.trace("element: {" + namespaceURI + "}" + localName);
                 if (phaseStack.isEmpty()) {
                     if (log.isTraceEnabled()) log.trace("**** START_ELEMENT: stack empty");
-                    if (QN_ELE_FILEGRP.equals(qName)) {
+                    if (isElement(QN_ELE_FILEGRP, namespaceURI, localName)) {
 
-                        HashMap<QName, String> fileGrpAttributesMap = getAttributes(reader);
-                        String attributeValue = fileGrpAttributesMap.get(QN_ATTR_FILEGRP_USE);
+                        String attributeValue = getAttributeValue(reader, QN_ATTR_FILEGRP_USE);
                         if (attributeValue != null && "ocr".equals(attributeValue)) {
                             phaseStack.push(ParsePhaseEnum.OCR_FILEGRP);
                         }
-                    } else if (QN_ELE_STRUCTMAP.equals(qName)) {
-                        HashMap<QName, String> structMapAttributesMap = getAttributes(reader);
-                        String typeAttributeValue = structMapAttributesMap.get(QN_ATTR_STRUCTMAP_TYPE);
+                    } else if (isElement(QN_ELE_STRUCTMAP, namespaceURI, localName)) {
+                        String typeAttributeValue = getAttributeValue(reader, QN_ATTR_STRUCTMAP_TYPE);
                         if (typeAttributeValue != null && "physical".equals(typeAttributeValue)) {
                             phaseStack.push(ParsePhaseEnum.STRUCTMAP);
                         }
@@ -368,17 +414,16 @@ public class METSParser {
                     switch (phase) {
                     case OCR_FILEGRP:
                     {
-                        if (QN_ELE_FILE.equals(qName)) {
-                            HashMap<QName, String> fileAttributesMap = getAttributes(reader);
-                            String idAttributeValue = fileAttributesMap.get(QN_ATTR_FILE_ID);
+                        if (isElement(QN_ELE_FILE, namespaceURI, localName)) {
+                            String idAttributeValue = getAttributeValue(reader, QN_ATTR_FILE_ID);
                             if (log.isTraceEnabled()) log.trace("ID: " + idAttributeValue);
 
                             if (idAttributeValue != null) {
     
-                                String sizeAttributeValue = fileAttributesMap.get(QN_ATTR_FILE_SIZE);
-                                String seqAttributeValue = fileAttributesMap.get(QN_ATTR_FILE_SEQ);
-                                String checksumAttributeValue = fileAttributesMap.get(QN_ATTR_FILE_CHECKSUM);
-                                String checksumTypeAttributeValue = fileAttributesMap.get(QN_ATTR_FILE_CHECKSUMTYPE);
+                                String sizeAttributeValue = getAttributeValue(reader, QN_ATTR_FILE_SIZE);
+                                String seqAttributeValue = getAttributeValue(reader, QN_ATTR_FILE_SEQ);
+                                String checksumAttributeValue = getAttributeValue(reader, QN_ATTR_FILE_CHECKSUM);
+                                String checksumTypeAttributeValue = getAttributeValue(reader, QN_ATTR_FILE_CHECKSUMTYPE);
                                 
                                 if (log.isDebugEnabled()) {
                                     log.debug("SIZE: " + sizeAttributeValue);
@@ -391,7 +436,7 @@ public class METSParser {
                                 
                                 PageRecord pageRecord = volumeRecord.getPageRecordByID(idAttributeValue);
                                 if (pageRecord == null) {
-                                    pageRecord = new PageRecord();
+                                    pageRecord = volumeRecord.newPageRecord();
                                     pageRecord.setByteCount(size);
                                     pageRecord.setChecksum(checksumAttributeValue, checksumTypeAttributeValue);
                                     pageRecord.setID(idAttributeValue);
@@ -401,6 +446,9 @@ public class METSParser {
                                     
                                 } else {
                                     log.warn("Duplicate page ID in METS. ID: " + idAttributeValue + " metsFile: " + metsFile.getPath());
+                                    // the page has already been indexed by its file name, which cannot be changed, so the first of the
+                                    // duplicate file elements is kept
+                                    pageRecord = null;
                                 }
                                 
                                 currentPageRecord = pageRecord;
@@ -418,9 +466,8 @@ public class METSParser {
                     
                     case FILE:
                     {
-                        if (QN_ELE_FLOCAT.equals(qName)) {
-                            HashMap<QName, String> fLocatAttributesMap = getAttributes(reader);
-                            String xlinkHrefAttributeValue = fLocatAttributesMap.get(QN_ATTR_FLOCAT_XLINKHREF);
+                        if (isElement(QN_ELE_FLOCAT, namespaceURI, localName)) {
+                            String xlinkHrefAttributeValue = getAttributeValue(reader, QN_ATTR_FLOCAT_XLINKHREF);
                             if (log.isTraceEnabled()) log.trace("xlink:href: " + xlinkHrefAttributeValue);
                             
                             if (xlinkHrefAttributeValue != null) {
@@ -442,9 +489,8 @@ public class METSParser {
                     
                     case STRUCTMAP:
                     {
-                        if (QN_ELE_DIV.equals(qName)) {
-                            HashMap<QName, String> divAttributesMap = getAttributes(reader);
-                            String divTypeAttributeValue = divAttributesMap.get(QN_ATTR_DIV_TYPE);
+                        if (isElement(QN_ELE_DIV, namespaceURI, localName)) {
+                            String divTypeAttributeValue = getAttributeValue(reader, QN_ATTR_DIV_TYPE);
                             if (divTypeAttributeValue != null && "volume".equals(divTypeAttributeValue)) {
                                 phaseStack.push(ParsePhaseEnum.VOLUME_DIV);
                             }
@@ -454,16 +500,15 @@ public class METSParser {
                     
                     case VOLUME_DIV:
                     {
-                        if (QN_ELE_DIV.equals(qName)) {
-                            HashMap<QName, String> divAttributesMap = getAttributes(reader);
-                            String divTypeAttributeValue = divAttributesMap.get(QN_ATTR_DIV_TYPE);
+                        if (isElement(QN_ELE_DIV, namespaceURI, localName)) {
+                            String divTypeAttributeValue = getAttributeValue(reader, QN_ATTR_DIV_TYPE);
                             if (divTypeAttributeValue != null && "page".equals(divTypeAttributeValue)) {
-                                String orderAttrValue = divAttributesMap.get(QN_ATTR_DIV_ORDER);
+                                String orderAttrValue = getAttributeValue(reader, QN_ATTR_DIV_ORDER);
                                 if (orderAttrValue != null) {
                                     int order = Integer.parseInt(orderAttrValue);
                                     
-                                    String divLabelAttrValue = divAttributesMap.get(QN_ATTR_DIV_LABEL);
-                                    String divOrderLabelAttrValue = divAttributesMap.get(QN_ATTR_DIV_ORDERLABEL);
+                                    String divLabelAttrValue = getAttributeValue(reader, QN_ATTR_DIV_LABEL);
+                                    String divOrderLabelAttrValue = getAttributeValue(reader, QN_ATTR_DIV_ORDERLABEL);
                                     
                                     currentPageDivBean = new PageDivBean();
                                     currentPageDivBean.setOrder(order);
@@ -486,9 +531,8 @@ public class METSParser {
                     
                     case PAGE_DIV:
                     {
-                        if (QN_ELE_FPTR.equals(qName)) {
-                            HashMap<QName, String> fptrAttributesMap = getAttributes(reader);
-                            String fileIDAttrValue = fptrAttributesMap.get(QN_ATTR_FPTR_FILEID);
+                        if (isElement(QN_ELE_FPTR, namespaceURI, localName)) {
+                            String fileIDAttrValue = getAttributeValue(reader, QN_ATTR_FPTR_FILEID);
                             if (fileIDAttrValue != null) { // && fileIDAttrValue.matches(OCR_FILEID_REGEX)) {
                                 if (currentPageDivBean != null) {
                                     PageRecord pageRecord = volumeRecord.getPageRecordByID(fileIDAttrValue);
@@ -506,7 +550,7 @@ public class METSParser {
                                         }
 
                                         if (featuresAttrValue != null && !"".equals(featuresAttrValue.trim())) {
-                                            addPageFeatures(pageRecord, featuresAttrValue);
+                                            pageRecord.setFeatures(featuresAttrValue);
                                         }
                                         phaseStack.push(ParsePhaseEnum.OCR_FPTR);
                                         
@@ -535,17 +579,18 @@ public class METSParser {
                     ParsePhaseEnum phase = phaseStack.peek();
                     if (log.isTraceEnabled()) log.trace("**** END_ELEMENT: stack top " + phase.toString());
 
-                    QName qName = reader.getName();
-                    if (log.isTraceEnabled()) log.trace("qName: " + qName);
-                    if ((QN_ELE_FLOCAT.equals(qName) && ParsePhaseEnum.FLOCAT.equals(phase)) ||
-                        (QN_ELE_FILE.equals(qName) && ParsePhaseEnum.FILE.equals(phase)) ||
-                        (QN_ELE_FILEGRP.equals(qName) && ParsePhaseEnum.OCR_FILEGRP.equals(phase)))
+                    String namespaceURI = reader.getNamespaceURI();
+                    String localName = reader.getLocalName();
+                    if (log.isTraceEnabled()) log.trace("element: {" + namespaceURI + "}" + localName);
+                    if ((isElement(QN_ELE_FLOCAT, namespaceURI, localName) && ParsePhaseEnum.FLOCAT.equals(phase)) ||
+                        (isElement(QN_ELE_FILE, namespaceURI, localName) && ParsePhaseEnum.FILE.equals(phase)) ||
+                        (isElement(QN_ELE_FILEGRP, namespaceURI, localName) && ParsePhaseEnum.OCR_FILEGRP.equals(phase)))
                     {
                         phaseStack.pop();
                         currentPageRecord = null;
-                    } else if ((QN_ELE_FPTR.equals(qName) && ParsePhaseEnum.OCR_FPTR.equals(phase)) ||
-                               (QN_ELE_DIV.equals(qName) && (ParsePhaseEnum.PAGE_DIV.equals(phase) || ParsePhaseEnum.VOLUME_DIV.equals(phase))) ||
-                               (QN_ELE_STRUCTMAP.equals(qName) && ParsePhaseEnum.STRUCTMAP.equals(phase)))
+                    } else if ((isElement(QN_ELE_FPTR, namespaceURI, localName) && ParsePhaseEnum.OCR_FPTR.equals(phase)) ||
+                               (isElement(QN_ELE_DIV, namespaceURI, localName) && (ParsePhaseEnum.PAGE_DIV.equals(phase) || ParsePhaseEnum.VOLUME_DIV.equals(phase))) ||
+                               (isElement(QN_ELE_STRUCTMAP, namespaceURI, localName) && ParsePhaseEnum.STRUCTMAP.equals(phase)))
                     {
                         phaseStack.pop();
                         currentPageDivBean = null;
@@ -563,58 +608,116 @@ public class METSParser {
     }
     
     
-    private void addPageFeatures(PageRecord pageRecord, String features) {
-        StringTokenizer stringTokenizer = new StringTokenizer(features, ",");
-        while (stringTokenizer.hasMoreTokens()) {
-            String token = stringTokenizer.nextToken().trim();
-            if (token != null && !"".equals(token)) {
-                pageRecord.addFeature(token);
+    // returns the value of the attribute with the given name of the current element, or null if the element does not have the attribute;
+    // the attributes are looked up by index, rather than collected into a map for every element
+    public static String getAttributeValue(XMLStreamReader reader, QName attributeName) {
+        String localPart = attributeName.getLocalPart();
+        String namespaceURI = attributeName.getNamespaceURI();
+        int attributeCount = reader.getAttributeCount();
+        for (int i = 0; i < attributeCount; i++) {
+            if (localPart.equals(reader.getAttributeLocalName(i))) {
+                String attributeNamespace = reader.getAttributeNamespace(i);
+                if (namespaceURI.equals(attributeNamespace == null ? EMPTY_NAMESPACE : attributeNamespace)) {
+                    String attributeValue = reader.getAttributeValue(i);
+                    if (log.isTraceEnabled()) log.trace("attributeQName: " + attributeName + " attributeValue: " + attributeValue);
+                    return attributeValue;
+                }
             }
         }
+        return null;
     }
     
     
-    private HashMap<QName, String> getAttributes(XMLStreamReader reader) {
-        HashMap<QName, String> rawAttributesMap = new HashMap<QName, String>();
-        int attributeCount = reader.getAttributeCount();
-        for (int i = 0; i < attributeCount; i++) {
-            QName attributeQName = reader.getAttributeName(i);
-            String attributeValue = reader.getAttributeValue(i);
-            if (log.isTraceEnabled()) log.trace("attributeQName: " + attributeQName + " attributeValue: " + attributeValue);
-            rawAttributesMap.put(attributeQName, attributeValue);
-        }
-        return rawAttributesMap;
+    // true if the namespace and local name of an element are those of the given element name; namespaceURI may be null for an element
+    // without a namespace
+    private static boolean isElement(QName elementName, String namespaceURI, String localName) {
+        return elementName.getLocalPart().equals(localName)
+                && elementName.getNamespaceURI().equals(namespaceURI == null ? EMPTY_NAMESPACE : namespaceURI);
     }
     
     
-    
-    protected String readFileIntoString(File file) {
-        StringBuilder fileContentsBuilder = new StringBuilder();
-        BufferedReader bufferedReader = null;
-        try {
-            char[] buffer = new char[32767];
-            bufferedReader = new BufferedReader(new FileReader(file));
-            int read = 0;
-            
-            do {
-                read = bufferedReader.read(buffer);
-                if (read > 0) {
-                    fileContentsBuilder.append(buffer, 0, read);
+    // input stream over the channel of a file, which keeps a copy of all the bytes read from the file; the copy is allocated at the size of
+    // the file, so it is not resized unless the file grows while it is read
+    static class CapturingInputStream extends InputStream {
+        private static final int READ_SIZE = 65536;
+        
+        private final FileInputStream fileInputStream;
+        private final FileChannel channel;
+        private byte[] captured;
+        private int capturedLength;
+        private int position;
+        private boolean endOfFile;
+        
+        CapturingInputStream(File file) throws IOException {
+            this.fileInputStream = new FileInputStream(file);
+            this.channel = fileInputStream.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                fileInputStream.close();
+                throw new IOException("File too large to capture: " + file.getPath());
+            }
+            this.captured = new byte[(int) size];
+            this.capturedLength = 0;
+            this.position = 0;
+            this.endOfFile = false;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (position == capturedLength && !fill()) {
+                return -1;
+            }
+            return captured[position++] & 0xFF;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == capturedLength && !fill()) {
+                return -1;
+            }
+            int n = Math.min(len, capturedLength - position);
+            System.arraycopy(captured, position, b, off, n);
+            position += n;
+            return n;
+        }
+        
+        @Override
+        public int available() {
+            return capturedLength - position;
+        }
+        
+        // reads the next chunk of the file into the captured bytes; returns false at the end of the file
+        private boolean fill() throws IOException {
+            while (!endOfFile) {
+                if (capturedLength == captured.length) {
+                    captured = Arrays.copyOf(captured, Math.max(READ_SIZE, captured.length * 2));
                 }
-            } while (read > 0);
-        } catch (Exception e) {
-            log.error("Failed to read file " + file.getPath(), e);
-        } finally {
-            if (bufferedReader != null) {
-                try {
-                    bufferedReader.close();
-                } catch (IOException e) {
-                    log.error("Unable to close BufferedReader for " + file.getPath(), e);
+                int n = channel.read(ByteBuffer.wrap(captured, capturedLength, Math.min(READ_SIZE, captured.length - capturedLength)));
+                if (n < 0) {
+                    endOfFile = true;
+                } else if (n > 0) {
+                    capturedLength += n;
+                    return true;
                 }
             }
+            return false;
         }
         
-        return fileContentsBuilder.toString();
+        // reads whatever the parser has not consumed, up to the end of the file, and returns all the bytes of the file
+        byte[] getCapturedBytes() throws IOException {
+            while (fill()) {
+                position = capturedLength;
+            }
+            return (capturedLength == captured.length) ? captured : Arrays.copyOf(captured, capturedLength);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            fileInputStream.close();
+        }
     }
 
 }
@@ -0,0 +1,85 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/*
+ * Class that holds a reusable byte buffer into which the contents of a single page are read. Each thread has its own buffer (see get()), which
+ * grows to the size of the largest page read by the thread, so that reading a page allocates nothing apart from the String decoded from it.
+ * The contents of the buffer are only valid until the next call to readFrom() on the same thread.
+ */
+public class PageBuffer {
+	private static final int INITIAL_CAPACITY = 32768;
+	// buffers that have grown beyond this size, because of an unusually large page, are not kept for later pages
+	private static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+	private static final ThreadLocal<PageBuffer> buffers = ThreadLocal.withInitial(PageBuffer::new);
+
+	private byte[] bytes = new byte[INITIAL_CAPACITY];
+	private int length = 0;
+
+	// returns the page buffer of the calling thread
+	public static PageBuffer get() {
+		return buffers.get();
+	}
+
+	// reads the stream to its end into the buffer, and returns the number of bytes read; expectedLength, e.g., the byte count of the page
+	// given in the METS file, is used to size the buffer up front, and may be 0 or negative if not known
+	public int readFrom(InputStream is, long expectedLength) throws IOException {
+		return readFrom(is, expectedLength, null);
+	}
+
+	// as readFrom(InputStream, long), but also updates the given digest, if not null, with the bytes as they are read, so that the checksum of
+	// the page is computed without a second pass over the buffer
+	public int readFrom(InputStream is, long expectedLength, MessageDigest digest) throws IOException {
+		if (bytes.length > MAX_RETAINED_CAPACITY && expectedLength < MAX_RETAINED_CAPACITY) {
+			bytes = new byte[INITIAL_CAPACITY];
+		}
+		// one byte more than expected, so that the end of the stream is seen without growing the buffer
+		if (expectedLength >= bytes.length && expectedLength < Integer.MAX_VALUE - 8) {
+			bytes = new byte[(int) expectedLength + 1];
+		}
+		length = 0;
+		int read;
+		while (true) {
+			if (length == bytes.length) {
+				grow();
+			}
+			read = is.read(bytes, length, bytes.length - length);
+			if (read < 0) {
+				break;
+			}
+			if (digest != null) {
+				digest.update(bytes, length, read);
+			}
+			length += read;
+		}
+		return length;
+	}
+
+	private void grow() throws IOException {
+		if (bytes.length >= Integer.MAX_VALUE - 8) {
+			throw new IOException("page is too large to be read into memory");
+		}
+		int newCapacity = (int) Math.min((long) bytes.length * 2, Integer.MAX_VALUE - 8);
+		byte[] newBytes = new byte[newCapacity];
+		System.arraycopy(bytes, 0, newBytes, 0, length);
+		bytes = newBytes;
+	}
+
+	// the buffer; only the first length() bytes hold page contents
+	public byte[] bytes() {
+		return bytes;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	// decodes the page contents as UTF-8, in a single pass over the buffer
+	public String decode() {
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,338 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*
+ * Class that stores the pages of a volume in columns, one row per page, in place of a PageRecord object per page. Numeric fields are kept
+ * in primitive arrays. The strings that are unique to a page (id, file name, checksum, label) are copied into a single char array per
+ * volume, and are referred to by their offset in it. Strings that repeat across pages and volumes (checksum type, features) are interned,
+ * and page sequences are usually the shared strings of Tools.generateSequence. Pages are found by file name or id through a single
+ * open-addressing index, which holds both kinds of keys. A table is filled by the thread that parses the METS file, and may then be read,
+ * but not modified, by several threads at once.
+ */
+class PageTable {
+	static final int FILENAME_KEY = 0;
+	static final int ID_KEY = 1;
+
+	private static final int INITIAL_ROWS = 64;
+	private static final int INITIAL_CHARS_PER_ROW = 64;
+	private static final int NO_STRING = -1;
+
+	private int numRows = 0;
+	// offsets, in chars, of the strings of each row; NO_STRING for null
+	private int[] ids;
+	private int[] ocrFilenames;
+	private int[] checksums;
+	private int[] labels;
+	private String[] checksumTypes;
+	private String[] sequences;
+	private String[] features;
+	private long[] byteCounts;
+	private int[] characterCounts;
+	private int[] orders;
+
+	// each string is stored as its length, in two chars, followed by its chars
+	private char[] chars;
+	private int numChars = 0;
+
+	// open-addressing index with linear probing; a slot holds ((row + 1) << 1) | kind of key, or 0 if it is empty
+	private int[] slots;
+	private int numKeys = 0;
+	private final int[] numKeysOfKind = new int[2];
+
+	PageTable() {
+		ids = newRefs(INITIAL_ROWS);
+		ocrFilenames = newRefs(INITIAL_ROWS);
+		checksums = newRefs(INITIAL_ROWS);
+		labels = newRefs(INITIAL_ROWS);
+		checksumTypes = new String[INITIAL_ROWS];
+		sequences = new String[INITIAL_ROWS];
+		features = new String[INITIAL_ROWS];
+		byteCounts = new long[INITIAL_ROWS];
+		characterCounts = new int[INITIAL_ROWS];
+		orders = new int[INITIAL_ROWS];
+		chars = new char[INITIAL_ROWS * INITIAL_CHARS_PER_ROW];
+		slots = new int[INITIAL_ROWS * 4];
+	}
+
+	private static int[] newRefs(int n) {
+		int[] refs = new int[n];
+		Arrays.fill(refs, NO_STRING);
+		return refs;
+	}
+
+	private static int[] growRefs(int[] refs, int n) {
+		int oldLength = refs.length;
+		refs = Arrays.copyOf(refs, n);
+		Arrays.fill(refs, oldLength, n, NO_STRING);
+		return refs;
+	}
+
+	// adds an empty row, and returns its index
+	int addRow() {
+		if (numRows == orders.length) {
+			int n = orders.length * 2;
+			ids = growRefs(ids, n);
+			ocrFilenames = growRefs(ocrFilenames, n);
+			checksums = growRefs(checksums, n);
+			labels = growRefs(labels, n);
+			checksumTypes = Arrays.copyOf(checksumTypes, n);
+			sequences = Arrays.copyOf(sequences, n);
+			features = Arrays.copyOf(features, n);
+			byteCounts = Arrays.copyOf(byteCounts, n);
+			characterCounts = Arrays.copyOf(characterCounts, n);
+			orders = Arrays.copyOf(orders, n);
+		}
+		return numRows++;
+	}
+
+	int getNumRows() {
+		return numRows;
+	}
+
+	String getId(int row) {
+		return getString(ids[row]);
+	}
+	void setId(int row, String id) {
+		ids[row] = addString(id);
+	}
+	String getOcrFilename(int row) {
+		return getString(ocrFilenames[row]);
+	}
+	void setOcrFilename(int row, String ocrFilename) {
+		ocrFilenames[row] = addString(ocrFilename);
+	}
+	String getChecksum(int row) {
+		return getString(checksums[row]);
+	}
+	void setChecksum(int row, String checksum) {
+		checksums[row] = addString(checksum);
+	}
+	String getLabel(int row) {
+		return getString(labels[row]);
+	}
+	void setLabel(int row, String label) {
+		labels[row] = addString(label);
+	}
+	String getChecksumType(int row) {
+		return checksumTypes[row];
+	}
+	void setChecksumType(int row, String checksumType) {
+		checksumTypes[row] = (checksumType == null) ? null : checksumType.intern();
+	}
+	String getSequence(int row) {
+		return sequences[row];
+	}
+	void setSequence(int row, String sequence) {
+		sequences[row] = sequence;
+	}
+	String getFeatures(int row) {
+		return features[row];
+	}
+	void setFeatures(int row, String rowFeatures) {
+		features[row] = (rowFeatures == null) ? null : rowFeatures.intern();
+	}
+	long getByteCount(int row) {
+		return byteCounts[row];
+	}
+	void setByteCount(int row, long byteCount) {
+		byteCounts[row] = byteCount;
+	}
+	int getCharacterCount(int row) {
+		return characterCounts[row];
+	}
+	void setCharacterCount(int row, int characterCount) {
+		characterCounts[row] = characterCount;
+	}
+	int getOrder(int row) {
+		return orders[row];
+	}
+	void setOrder(int row, int order) {
+		orders[row] = order;
+	}
+
+	// copies the string to the end of the chars, and returns its offset
+	private int addString(String s) {
+		if (s == null) {
+			return NO_STRING;
+		}
+		int length = s.length();
+		if (numChars + length + 2 > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, numChars + length + 2));
+		}
+		int offset = numChars;
+		chars[offset] = (char) (length >>> 16);
+		chars[offset + 1] = (char) length;
+		s.getChars(0, length, chars, offset + 2);
+		numChars += length + 2;
+		return offset;
+	}
+
+	private int stringLength(int offset) {
+		return (chars[offset] << 16) | chars[offset + 1];
+	}
+
+	private String getString(int offset) {
+		return (offset == NO_STRING) ? null : new String(chars, offset + 2, stringLength(offset));
+	}
+
+	private boolean stringEquals(int offset, String s) {
+		if (offset == NO_STRING) {
+			return false;
+		}
+		int length = stringLength(offset);
+		if (length != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (chars[offset + 2 + i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean stringsEqual(int offset1, int offset2) {
+		int length = stringLength(offset1);
+		if (length != stringLength(offset2)) {
+			return false;
+		}
+		for (int i = 2; i < length + 2; i++) {
+			if (chars[offset1 + i] != chars[offset2 + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// same value as String.hashCode() of the string at the given offset
+	private int stringHash(int offset) {
+		int length = stringLength(offset);
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + chars[offset + 2 + i];
+		}
+		return h;
+	}
+
+	private int keyOffset(int row, int kind) {
+		return (kind == FILENAME_KEY) ? ocrFilenames[row] : ids[row];
+	}
+
+	private static int slotIndex(int hash, int mask) {
+		// spread the higher bits, as HashMap does
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+
+	// indexes the row by its file name and id; a row replaces a row indexed earlier under the same key. Rows without a file name or id are
+	// not indexed under it
+	void index(int row) {
+		addKey(row, FILENAME_KEY);
+		addKey(row, ID_KEY);
+	}
+
+	private void addKey(int row, int kind) {
+		int offset = keyOffset(row, kind);
+		if (offset == NO_STRING) {
+			return;
+		}
+		if ((numKeys + 1) * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+		int mask = slots.length - 1;
+		int i = slotIndex(stringHash(offset), mask);
+		while (slots[i] != 0) {
+			int slot = slots[i];
+			int slotRow = (slot >>> 1) - 1;
+			if ((slot & 1) == kind && stringsEqual(keyOffset(slotRow, kind), offset)) {
+				slots[i] = ((row + 1) << 1) | kind;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		slots[i] = ((row + 1) << 1) | kind;
+		numKeys++;
+		numKeysOfKind[kind]++;
+	}
+
+	private void rehash(int n) {
+		int[] oldSlots = slots;
+		slots = new int[n];
+		int mask = n - 1;
+		for (int slot : oldSlots) {
+			if (slot != 0) {
+				int i = slotIndex(stringHash(keyOffset((slot >>> 1) - 1, slot & 1)), mask);
+				while (slots[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				slots[i] = slot;
+			}
+		}
+	}
+
+	// returns the row indexed under the given key, or -1 if there is none
+	int find(String key, int kind) {
+		if (key == null) {
+			return -1;
+		}
+		int mask = slots.length - 1;
+		int i = slotIndex(key.hashCode(), mask);
+		int slot;
+		while ((slot = slots[i]) != 0) {
+			int row = (slot >>> 1) - 1;
+			if ((slot & 1) == kind && stringEquals(keyOffset(row, kind), key)) {
+				return row;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	int getNumKeys(int kind) {
+		return numKeysOfKind[kind];
+	}
+
+	// read-only view of the keys of the given kind
+	Set<String> keySet(int kind) {
+		return new AbstractSet<String>() {
+			@Override
+			public int size() {
+				return numKeysOfKind[kind];
+			}
+			@Override
+			public boolean contains(Object o) {
+				return (o instanceof String) && find((String) o, kind) >= 0;
+			}
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private int next = advance(0);
+
+					private int advance(int i) {
+						while (i < slots.length && (slots[i] == 0 || (slots[i] & 1) != kind)) {
+							i++;
+						}
+						return i;
+					}
+					@Override
+					public boolean hasNext() {
+						return next < slots.length;
+					}
+					@Override
+					public String next() {
+						if (next >= slots.length) {
+							throw new NoSuchElementException();
+						}
+						String key = getString(keyOffset((slots[next] >>> 1) - 1, kind));
+						next = advance(next + 1);
+						return key;
+					}
+				};
+			}
+		};
+	}
+}
@@ -0,0 +1,103 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+
+import edu.indiana.d2i.ingest.util.METSParser.VolumeRecord.PageRecord;
+
+/*
+ * Class that reads, checksums and decodes the pages of volumes on a fixed pool of threads, so that the pages of a volume are processed in
+ * parallel, rather than one after the other on the ingest thread. Each page is inflated from the volume zip into the PageBuffer of the pool
+ * thread, the checksum is computed, using a MessageDigest of the pool thread, while the bytes are inflated, and the contents are then decoded
+ * from the same buffer. The comparison of the computed checksum against the checksum in the METS file is left to the caller.
+ */
+public class PageVerifier {
+	private final ExecutorService executor;
+
+	// the result of reading a single page
+	public static class VerifiedPage {
+		private final PageRecord pageRecord;
+		private final int byteCount;
+		private final String contents;
+		private final String calculatedChecksum;
+		private final Exception error;
+
+		private VerifiedPage(PageRecord pageRecord, int byteCount, String contents, String calculatedChecksum, Exception error) {
+			this.pageRecord = pageRecord;
+			this.byteCount = byteCount;
+			this.contents = contents;
+			this.calculatedChecksum = calculatedChecksum;
+			this.error = error;
+		}
+		public PageRecord getPageRecord() {
+			return pageRecord;
+		}
+		// actual number of bytes of the page in the zip file
+		public int getByteCount() {
+			return byteCount;
+		}
+		// the page contents, decoded as UTF-8; null if the page could not be read
+		public String getContents() {
+			return contents;
+		}
+		// the checksum computed using the checksum algorithm of the page in the METS file; null if the algorithm is not known
+		public String getCalculatedChecksum() {
+			return calculatedChecksum;
+		}
+		// the exception that prevented the page from being read, if any
+		public Exception getError() {
+			return error;
+		}
+	}
+
+	// numThreads <= 0 uses one thread per available processor; the threads are daemon threads
+	public PageVerifier(int numThreads) {
+		int n = (numThreads > 0) ? numThreads : Runtime.getRuntime().availableProcessors();
+		AtomicInteger threadCount = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(n, runnable -> {
+			Thread thread = new Thread(runnable, "page-verifier-" + threadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// reads, checksums and decodes the given page entry on a pool thread; the returned future does not complete exceptionally, errors are
+	// reported through VerifiedPage.getError(). The archive must remain open until the future has completed.
+	public CompletableFuture<VerifiedPage> verify(VolumeArchive volumeArchive, ZipEntry zipEntry, PageRecord pageRecord) {
+		return CompletableFuture.supplyAsync(() -> read(volumeArchive, zipEntry, pageRecord), executor);
+	}
+
+	private static VerifiedPage read(VolumeArchive volumeArchive, ZipEntry zipEntry, PageRecord pageRecord) {
+		MessageDigest digest;
+		try {
+			digest = Tools.getMessageDigest(pageRecord.getChecksumType());
+		} catch (NoSuchAlgorithmException e) {
+			digest = null;
+		}
+		PageBuffer pageBuffer = PageBuffer.get();
+		try {
+			long start = System.nanoTime();
+			int byteCount = volumeArchive.readEntry(zipEntry, pageBuffer, pageRecord.getByteCount(), digest);
+			long read = System.nanoTime();
+			IngestMetrics.Stage.ZIP_READ.update(read - start);
+			String calculatedChecksum = null;
+			if (digest != null) {
+				calculatedChecksum = Tools.checksumToString(digest.digest());
+				IngestMetrics.Stage.CHECKSUM_FINALIZE.update(System.nanoTime() - read);
+			}
+			return new VerifiedPage(pageRecord, byteCount, pageBuffer.decode(), calculatedChecksum, null);
+		} catch (IOException | RuntimeException e) {
+			return new VerifiedPage(pageRecord, 0, null, null, e);
+		}
+	}
+
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
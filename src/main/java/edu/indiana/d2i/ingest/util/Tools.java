@@ -2,7 +2,6 @@ package edu.indiana.d2i.ingest.util;
 
 import edu.indiana.d2i.ingest.Constants;
 import edu.indiana.d2i.ingest.util.METSParser.VolumeRecord;
-import gov.loc.repository.pairtree.Pairtree;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -14,12 +13,14 @@ import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.logging.log4j.LogManager;
@@ -30,7 +31,7 @@ public class Tools {
 	private static Logger log = LogManager.getLogger();
 	public static List<String> getVolumeIds(File inputFile) {
 	//	File inputFile = new File(Configuration.getProperty("VOLUME_ID_LIST"));
-		List<String> list = new LinkedList<String>();
+		List<String> list = new ArrayList<String>();
 		
 		try {
 			BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), "UTF-8"));
@@ -57,14 +58,7 @@ public class Tools {
 	 * @return			the relative path of this given volume ID under pairtree
 	 */
 	public static String getPairtreePath(String volID) {
-		Pairtree pt = new Pairtree();
-		StringBuilder basePathBuilder = new StringBuilder();
-		
-		String[] parts = volID.split("\\.", 2); // parts[0] is the abbreviation of schools, part[1] is the id part
-		String cleanIdPart = pt.cleanId(parts[1]);
-	//	System.out.println(cleanIdPart);
-		basePathBuilder.append(parts[0]).append('/').append("pairtree_root");
-		return pt.mapToPPath(basePathBuilder.toString(), parts[1], cleanIdPart);
+		return VolumePaths.resolve(volID).getPairtreePath();
 	}
 	
 	/**
@@ -75,14 +69,13 @@ public class Tools {
 	 */
 	public static VolumeRecord getVolumeRecord(String volID, File metsFile) {
 		
-		 XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-	        
 		 VolumeRecord volumeRecord = new VolumeRecord(volID);
 	        
 	        // copyright is assumed to be public domain for all volumes 
 	        volumeRecord.setCopyright(CopyrightEnum.PUBLIC_DOMAIN); 
 	        
-	        METSParser metsParser = new METSParser(metsFile, volumeRecord, xmlInputFactory);
+	        // the parser uses the XMLInputFactory of the calling thread, which is created once per thread
+	        METSParser metsParser = new METSParser(metsFile, volumeRecord);
 	        try {
 				metsParser.parse();
 			} catch (FileNotFoundException e) {
@@ -137,18 +130,79 @@ public class Tools {
      * @throws NoSuchAlgorithmException thrown if the specified algorithm is not known
      */
     public static String calculateChecksum(byte[] contents, String algorithm) throws NoSuchAlgorithmException {
-        StringBuilder checksumBuilder = new StringBuilder();
-        MessageDigest digest = MessageDigest.getInstance(algorithm);
-        digest.update(contents);
-        byte[] checksumBytes = digest.digest();
-        for (byte bite : checksumBytes) {
-            checksumBuilder.append(byteToHex(bite));
+        return calculateChecksum(contents, 0, contents.length, algorithm);
+    }
+
+    /**
+     * Method to calculate the checksum of a range of a byte array, e.g., the contents of a PageBuffer
+     * @param contents the byte array
+     * @param offset index of the first byte of the range
+     * @param length number of bytes in the range
+     * @param algorithm checksum algorithm
+     * @return the checksum, as a string of hexadecimal digits
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    public static String calculateChecksum(byte[] contents, int offset, int length, String algorithm) throws NoSuchAlgorithmException {
+        MessageDigest digest = getMessageDigest(algorithm);
+        digest.update(contents, offset, length);
+        return checksumToString(digest.digest());
+    }
+
+    // MessageDigest instances of the calling thread, by algorithm; MessageDigest.getInstance looks up the security providers on every call
+    private static final ThreadLocal<Map<String, MessageDigest>> messageDigests = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Method to get a MessageDigest for the specified algorithm, owned by the calling thread, and reused by later calls on the same thread
+     * @param algorithm name of the checksum computation algorithm
+     * @return a MessageDigest, reset, and ready to be updated
+     * @throws NoSuchAlgorithmException thrown if the specified algorithm is not known
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        if (algorithm == null) {
+            throw new NoSuchAlgorithmException("no checksum algorithm specified");
+        }
+        Map<String, MessageDigest> digests = messageDigests.get();
+        MessageDigest digest = digests.get(algorithm);
+        if (digest == null) {
+            digest = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, digest);
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    /**
+     * Method to convert the bytes of a computed checksum to their hexadecimal representation
+     * @param checksumBytes the result of MessageDigest.digest()
+     * @return String representation of the checksum in hexadecimal format
+     */
+    public static String checksumToString(byte[] checksumBytes) {
+        return toHex(checksumBytes);
+    }
+
+    /**
+     * Method to convert bytes to their zero-padded hexadecimal representation, 2 digits per byte, using a single char array
+     * @param bytes the bytes to convert
+     * @return String of lowercase hexadecimal digits
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hexChars = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xFF;
+            hexChars[j++] = hexDigit[v >>> 4];
+            hexChars[j++] = hexDigit[v & 0x0F];
         }
-        return checksumBuilder.toString();
+        return new String(hexChars);
     }
     
     static final char[] hexDigit = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
 	private static final int SEQUENCE_LENGTH = 8;
+	// page sequences of the orders 0 to MAX_CACHED_SEQUENCE are formatted once, and reused for all volumes; a race between threads
+	// filling the same slot only formats the same string twice
+	private static final int MAX_CACHED_SEQUENCE = 9999;
+	private static final String[] sequenceCache = new String[MAX_CACHED_SEQUENCE + 1];
+	private static final int MAX_PADDED_ORDER = 99999999;
     /**
      * Method to convert a byte to its 2-digit zero-padded hexadecimal representation
      * @param bite a byte
@@ -162,11 +216,7 @@ public class Tools {
     }
 
 	public static String cleanId(String id) {
-		Pairtree pt = new Pairtree();
-		String[] parts = id.split("\\.", 2);
-		String cleanIdPart = pt.cleanId(parts[1]);
-		return new StringBuilder(parts[0]).append(".").append(cleanIdPart)
-				.toString();
+		return VolumePaths.resolve(id).getCleanId();
 	}
 
 	/**
@@ -197,19 +247,45 @@ public class Tools {
 		Random random = new Random();
 		for(int x=0; x<num; x++) {
 			int seq = random.nextInt(max);
-			String orderString = Integer.toString(seq);
-	        
-	        StringBuilder sequenceBuilder = new StringBuilder();
-	        
-	        int digitCount = orderString.length();
-	        for (int i = digitCount; i < SEQUENCE_LENGTH; i++) {
-	            sequenceBuilder.append('0');
-	        }
-	        sequenceBuilder.append(orderString);
-	        sequences.add(sequenceBuilder.toString());
+			sequences.add(generateSequence(seq));
 		}
 		return sequences;
 	}
+
+    /**
+     * Method to generate a fixed-length zero-padded page sequence number
+     * @param order the ordering of a page
+     * @return a fixed-length zero-padded page sequence number based on the ordering
+     */
+    public static String generateSequence(int order) {
+        if (order >= 0 && order <= MAX_CACHED_SEQUENCE) {
+            String sequence = sequenceCache[order];
+            if (sequence == null) {
+                sequence = formatSequence(order);
+                sequenceCache[order] = sequence;
+            }
+            return sequence;
+        }
+        return formatSequence(order);
+    }
+
+    private static String formatSequence(int order) {
+        if (order < 0 || order > MAX_PADDED_ORDER) {
+            // not expected in METS files; padded as before, i.e., to SEQUENCE_LENGTH characters including any sign
+            String orderString = Integer.toString(order);
+            StringBuilder sequenceBuilder = new StringBuilder(SEQUENCE_LENGTH);
+            for (int i = orderString.length(); i < SEQUENCE_LENGTH; i++) {
+                sequenceBuilder.append('0');
+            }
+            return sequenceBuilder.append(orderString).toString();
+        }
+        char[] sequenceChars = new char[SEQUENCE_LENGTH];
+        for (int i = SEQUENCE_LENGTH - 1; i >= 0; i--) {
+            sequenceChars[i] = (char) ('0' + (order % 10));
+            order /= 10;
+        }
+        return new String(sequenceChars);
+    }
 	
 	public static void generateVolumeListFile(String fileName, List<String> idList) throws FileNotFoundException {
 		PrintWriter pw = new PrintWriter(fileName);
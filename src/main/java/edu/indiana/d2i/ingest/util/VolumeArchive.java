@@ -0,0 +1,82 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/*
+ * Class that reads the zip file of a volume using the central directory of the zip file (java.util.zip.ZipFile), instead of reading the file
+ * sequentially. The entries of the volume are listed without inflating their contents, so that callers that only need the names of the pages,
+ * e.g., VolumeComparison, touch only the central directory. The contents of an entry are inflated only when read, and different entries may
+ * be read concurrently from different threads.
+ */
+public class VolumeArchive implements Closeable {
+	private final File file;
+	private final ZipFile zipFile;
+	private final List<ZipEntry> entries;
+
+	// opens the zip file, and reads its central directory; an empty (zero-length) file is treated as a zip file without entries, as it was
+	// by ZipInputStream
+	public VolumeArchive(File file) throws IOException {
+		this.file = file;
+		if (file.length() == 0) {
+			this.zipFile = null;
+			this.entries = Collections.emptyList();
+			return;
+		}
+		this.zipFile = new ZipFile(file);
+		List<ZipEntry> fileEntries = new ArrayList<ZipEntry>(zipFile.size());
+		Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+		while (zipEntries.hasMoreElements()) {
+			ZipEntry entry = zipEntries.nextElement();
+			if (!entry.isDirectory()) {
+				fileEntries.add(entry);
+			}
+		}
+		this.entries = Collections.unmodifiableList(fileEntries);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	// the file entries of the zip file, i.e., excluding directories, in the order of the central directory
+	public List<ZipEntry> getEntries() {
+		return entries;
+	}
+
+	// returns a stream that inflates the contents of the given entry; the stream should be closed by the caller
+	public InputStream getInputStream(ZipEntry entry) throws IOException {
+		return zipFile.getInputStream(entry);
+	}
+
+	// inflates the contents of the given entry into the page buffer, and returns the number of bytes read; expectedLength, e.g., the byte
+	// count of the page given in the METS file, is used to size the buffer if the central directory does not record the size of the entry
+	public int readEntry(ZipEntry entry, PageBuffer pageBuffer, long expectedLength) throws IOException {
+		return readEntry(entry, pageBuffer, expectedLength, null);
+	}
+
+	// as readEntry(ZipEntry, PageBuffer, long), but also updates the given digest, if not null, with the contents of the entry as they are
+	// inflated
+	public int readEntry(ZipEntry entry, PageBuffer pageBuffer, long expectedLength, MessageDigest digest) throws IOException {
+		long size = entry.getSize();
+		try (InputStream is = getInputStream(entry)) {
+			return pageBuffer.readFrom(is, (size >= 0) ? size : expectedLength, digest);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (zipFile != null) {
+			zipFile.close();
+		}
+	}
+}
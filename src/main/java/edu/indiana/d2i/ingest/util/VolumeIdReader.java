@@ -0,0 +1,136 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/*
+ * Class that streams the volume ids in a file, one id per line, instead of loading the whole file into a list, as Tools.getVolumeIds does.
+ * Ids are trimmed, and blank lines are skipped. Each call to iterator() reads the file again from the start; the file is closed once the
+ * iteration reaches the end of the file. If dedup is true, ids that occur earlier in the file are skipped; ids are remembered by their
+ * 64-bit hash, at 16 to 32 bytes per id, so that two different ids would be taken for duplicates only if their hashes collide, which for 20M ids
+ * happens with a probability of about 1 in 100,000. Errors are logged, and end the iteration, as in Tools.getVolumeIds.
+ */
+public class VolumeIdReader implements Iterable<String> {
+	private static Logger log = LogManager.getLogger(VolumeIdReader.class);
+
+	private static final int EXPECTED_IDS = 1 << 16;
+
+	private final File file;
+	private final boolean dedup;
+
+	public VolumeIdReader(File file, boolean dedup) {
+		this.file = file;
+		this.dedup = dedup;
+	}
+
+	public VolumeIdReader(File file) {
+		this(file, false);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		BufferedReader reader;
+		try {
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		} catch (FileNotFoundException e) {
+			log.error("volume id list file not found", e);
+			return new Iterator<String>() {
+				@Override
+				public boolean hasNext() {
+					return false;
+				}
+				@Override
+				public String next() {
+					throw new NoSuchElementException();
+				}
+			};
+		}
+		return new VolumeIdIterator(reader, dedup ? new LongHashSet(EXPECTED_IDS) : null);
+	}
+
+	private class VolumeIdIterator implements Iterator<String> {
+		private BufferedReader reader;
+		private final LongHashSet seenIds;
+		private String next = null;
+		private long numDuplicates = 0;
+
+		VolumeIdIterator(BufferedReader reader, LongHashSet seenIds) {
+			this.reader = reader;
+			this.seenIds = seenIds;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && reader != null) {
+				try {
+					String line = reader.readLine();
+					if (line == null) {
+						close();
+					} else {
+						line = line.trim();
+						if (line.isEmpty()) {
+							continue;
+						}
+						if (seenIds != null && !seenIds.add(hash(line))) {
+							numDuplicates++;
+							continue;
+						}
+						next = line;
+					}
+				} catch (IOException e) {
+					log.error("volume id list read failed", e);
+					close();
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			String id = next;
+			next = null;
+			return id;
+		}
+
+		private void close() {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				log.warn("unable to close volume id list file " + file, e);
+			}
+			reader = null;
+			if (numDuplicates > 0) {
+				log.info("skipped " + numDuplicates + " duplicate volume ids in " + file);
+			}
+		}
+	}
+
+	// 64-bit FNV-1a hash of the chars of the id, followed by the finalizer of MurmurHash3 to spread the bits; never 0. Also the key of the
+	// volume ids in MarcIndex, so it must not change without changing the version of the index files
+	public static long hash(String id) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < id.length(); i++) {
+			h ^= id.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (h == 0) ? 1 : h;
+	}
+}
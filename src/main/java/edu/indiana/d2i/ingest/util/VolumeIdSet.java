@@ -0,0 +1,230 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * Class that holds a set of volume ids for membership tests, in place of a HashSet<String>. The ids are kept as their UTF-8 bytes, sorted and
+ * without duplicates, in a single byte array, with the offset of each id in an int array, i.e., about 4 bytes per id on top of the bytes of
+ * the ids, instead of the 100 or so bytes per id of a HashSet; contains() is a binary search. Ids cannot be added once the set is built,
+ * but can be removed, e.g., by MarcProcessor, which removes the ids whose MARC records it finds; the iterator returns the remaining ids in
+ * sorted order. Not safe for use by several threads at once, if ids are removed.
+ */
+public class VolumeIdSet extends AbstractSet<String> {
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private final byte[] bytes;
+	// id i is bytes[offsets[i], offsets[i + 1])
+	private final int[] offsets;
+	private final int numIds;
+	private final BitSet removed;
+	private int size;
+
+	private VolumeIdSet(byte[] bytes, int[] offsets, int numIds) {
+		this.bytes = bytes;
+		this.offsets = offsets;
+		this.numIds = numIds;
+		this.removed = new BitSet(numIds);
+		this.size = numIds;
+	}
+
+	// builds the set of the given ids, e.g., of a VolumeIdReader
+	public static VolumeIdSet of(Iterable<String> volumeIds) {
+		// the ids in the order given, before sorting
+		byte[] arena = new byte[1 << 16];
+		int[] starts = new int[1 << 10];
+		int numChars = 0;
+		int n = 0;
+		for (String volumeId : volumeIds) {
+			byte[] idBytes = volumeId.getBytes(StandardCharsets.UTF_8);
+			if (numChars + idBytes.length > arena.length) {
+				arena = Arrays.copyOf(arena, Math.max(arena.length * 2, numChars + idBytes.length));
+			}
+			if (n + 1 >= starts.length) {
+				starts = Arrays.copyOf(starts, starts.length * 2);
+			}
+			System.arraycopy(idBytes, 0, arena, numChars, idBytes.length);
+			starts[n++] = numChars;
+			numChars += idBytes.length;
+		}
+		starts[n] = numChars;
+
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		sort(order, 0, n - 1, arena, starts);
+
+		// copy the ids in sorted order, dropping duplicates
+		byte[] sortedBytes = new byte[numChars];
+		int[] offsets = new int[n + 1];
+		int numIds = 0;
+		int offset = 0;
+		for (int i = 0; i < n; i++) {
+			int id = order[i];
+			if (i > 0 && compare(arena, starts[id], starts[id + 1], arena, starts[order[i - 1]], starts[order[i - 1] + 1]) == 0) {
+				continue;
+			}
+			int length = starts[id + 1] - starts[id];
+			System.arraycopy(arena, starts[id], sortedBytes, offset, length);
+			offsets[numIds++] = offset;
+			offset += length;
+		}
+		offsets[numIds] = offset;
+		return new VolumeIdSet(Arrays.copyOf(sortedBytes, offset), Arrays.copyOf(offsets, numIds + 1), numIds);
+	}
+
+	// compares two byte ranges as unsigned bytes, which orders UTF-8 strings by code point
+	private static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+		int aLength = aTo - aFrom;
+		int bLength = bTo - bFrom;
+		int length = Math.min(aLength, bLength);
+		for (int i = 0; i < length; i++) {
+			int c = (a[aFrom + i] & 0xff) - (b[bFrom + i] & 0xff);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return aLength - bLength;
+	}
+
+	private static int compareIds(int id1, int id2, byte[] arena, int[] starts) {
+		return compare(arena, starts[id1], starts[id1 + 1], arena, starts[id2], starts[id2 + 1]);
+	}
+
+	// quicksort of the ids in order[low..high], with insertion sort for short ranges; recurses into the shorter part only, so that the
+	// depth of the recursion stays logarithmic
+	private static void sort(int[] order, int low, int high, byte[] arena, int[] starts) {
+		while (high - low >= INSERTION_SORT_THRESHOLD) {
+			int mid = (low + high) >>> 1;
+			// median of three as the pivot
+			if (compareIds(order[mid], order[low], arena, starts) < 0) {
+				swap(order, mid, low);
+			}
+			if (compareIds(order[high], order[low], arena, starts) < 0) {
+				swap(order, high, low);
+			}
+			if (compareIds(order[high], order[mid], arena, starts) < 0) {
+				swap(order, high, mid);
+			}
+			int pivot = order[mid];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (compareIds(order[i], pivot, arena, starts) < 0) {
+					i++;
+				}
+				while (compareIds(order[j], pivot, arena, starts) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(order, i++, j--);
+				}
+			}
+			if (j - low < high - i) {
+				sort(order, low, j, arena, starts);
+				low = i;
+			} else {
+				sort(order, i, high, arena, starts);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			int id = order[i];
+			int j = i - 1;
+			while (j >= low && compareIds(order[j], id, arena, starts) > 0) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = id;
+		}
+	}
+
+	private static void swap(int[] order, int i, int j) {
+		int t = order[i];
+		order[i] = order[j];
+		order[j] = t;
+	}
+
+	// returns the index of the id, or -1 if it is not in the sorted ids, removed or not
+	private int indexOf(Object o) {
+		if (!(o instanceof String)) {
+			return -1;
+		}
+		byte[] key = ((String) o).getBytes(StandardCharsets.UTF_8);
+		int low = 0;
+		int high = numIds - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = compare(bytes, offsets[mid], offsets[mid + 1], key, 0, key.length);
+			if (c < 0) {
+				low = mid + 1;
+			} else if (c > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		int i = indexOf(o);
+		return i >= 0 && !removed.get(i);
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		int i = indexOf(o);
+		if (i < 0 || removed.get(i)) {
+			return false;
+		}
+		removed.set(i);
+		size--;
+		return true;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private String getId(int i) {
+		return new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			private int next = removed.nextClearBit(0);
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next < numIds;
+			}
+			@Override
+			public String next() {
+				if (next >= numIds) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = removed.nextClearBit(next + 1);
+				return getId(last);
+			}
+			@Override
+			public void remove() {
+				if (last < 0 || removed.get(last)) {
+					throw new IllegalStateException();
+				}
+				removed.set(last);
+				size--;
+			}
+		};
+	}
+}
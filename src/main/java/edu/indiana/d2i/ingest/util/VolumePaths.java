@@ -0,0 +1,119 @@
+package edu.indiana.d2i.ingest.util;
+
+import java.io.File;
+
+import edu.indiana.d2i.ingest.Constants;
+import gov.loc.repository.pairtree.Pairtree;
+
+/*
+ * Class that maps a volume id to the names used to locate the volume in the pairtree: the clean id, the relative pairtree path of the
+ * volume directory, and the names of the zip and METS files, e.g., for the volume id loc.ark:/13960/t9w09kd5k,
+ *   clean id:       loc.ark+=13960=t9w09kd5k
+ *   pairtree path:  loc/pairtree_root/ar/k+/=1/39/60/=t/9w/09/kd/5k/ark+=13960=t9w09kd5k
+ *   zip file name:  ark+=13960=t9w09kd5k.zip
+ *   METS file name: ark+=13960=t9w09kd5k.mets.xml
+ * All the names are produced in one pass over the volume id, without creating a Pairtree. Ids with characters that the pairtree spec
+ * hex-encodes, which do not occur in HathiTrust volume ids, are mapped using Pairtree, so the names are always those of Pairtree.
+ */
+public class VolumePaths {
+	private static final String PAIRTREE_ROOT = "pairtree_root";
+	// used only for ids that need hex-encoding; Pairtree keeps no state between calls
+	private static final Pairtree pairtree = new Pairtree();
+
+	private final String volumeId;
+	private final String cleanId;
+	private final String cleanIdPart;
+	private final String pairtreePath;
+
+	private VolumePaths(String volumeId, String cleanId, String cleanIdPart, String pairtreePath) {
+		this.volumeId = volumeId;
+		this.cleanId = cleanId;
+		this.cleanIdPart = cleanIdPart;
+		this.pairtreePath = pairtreePath;
+	}
+
+	// throws IllegalArgumentException if the volume id does not have the form <namespace>.<id>
+	public static VolumePaths resolve(String volumeId) {
+		int dot = volumeId.indexOf('.');
+		if (dot < 0 || dot == volumeId.length() - 1) {
+			throw new IllegalArgumentException("invalid volume id: " + volumeId);
+		}
+		int idLength = volumeId.length() - dot - 1;
+		char[] clean = new char[idLength];
+		for (int i = 0; i < idLength; i++) {
+			char c = volumeId.charAt(dot + 1 + i);
+			switch (c) {
+			case '/':
+				clean[i] = '=';
+				break;
+			case ':':
+				clean[i] = '+';
+				break;
+			case '.':
+				clean[i] = ',';
+				break;
+			default:
+				if (needsHexEncoding(c)) {
+					return resolveWithPairtree(volumeId, dot);
+				}
+				clean[i] = c;
+			}
+		}
+		String namespace = volumeId.substring(0, dot);
+		String cleanIdPart = new String(clean);
+
+		// <namespace>/pairtree_root/<clean id part, in 2-char directories>/<clean id part>
+		int numShorties = (idLength + 1) / 2;
+		StringBuilder path = new StringBuilder(namespace.length() + PAIRTREE_ROOT.length() + idLength + numShorties + idLength + 2);
+		path.append(namespace).append('/').append(PAIRTREE_ROOT);
+		for (int i = 0; i < idLength; i += 2) {
+			path.append('/').append(clean, i, Math.min(2, idLength - i));
+		}
+		path.append('/').append(clean);
+		return new VolumePaths(volumeId, namespace + "." + cleanIdPart, cleanIdPart, path.toString());
+	}
+
+	// the characters that Pairtree.cleanId replaces with ^ and their hex code: anything outside visible ASCII, and " * + , < = > ? \ ^ |
+	private static boolean needsHexEncoding(char c) {
+		if (c < 0x21 || c > 0x7e) {
+			return true;
+		}
+		switch (c) {
+		case '"': case '*': case '+': case ',': case '<': case '=': case '>': case '?': case '\\': case '^': case '|':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	// the mapping done by Tools.getPairtreePath and Tools.cleanId before this class existed
+	private static VolumePaths resolveWithPairtree(String volumeId, int dot) {
+		String namespace = volumeId.substring(0, dot);
+		String id = volumeId.substring(dot + 1);
+		String cleanIdPart = pairtree.cleanId(id);
+		String pairtreePath = pairtree.mapToPPath(namespace + "/" + PAIRTREE_ROOT, id, cleanIdPart);
+		return new VolumePaths(volumeId, namespace + "." + cleanIdPart, cleanIdPart, pairtreePath);
+	}
+
+	public String getVolumeId() {
+		return volumeId;
+	}
+	// the volume id with its id part in pairtree clean form, e.g., loc.ark+=13960=t9w09kd5k
+	public String getCleanId() {
+		return cleanId;
+	}
+	// the relative path of the volume directory in the pairtree
+	public String getPairtreePath() {
+		return pairtreePath;
+	}
+	public String getZipFileName() {
+		return cleanIdPart + Constants.VOLUME_ZIP_SUFFIX;
+	}
+	public String getMetsFileName() {
+		return cleanIdPart + Constants.METS_XML_SUFFIX;
+	}
+	// the absolute path of the volume directory, under Constants.ROOT_PATH
+	public File getVolumeDir() {
+		return new File(Constants.ROOT_PATH + Constants.SEPERATOR + pairtreePath);
+	}
+}
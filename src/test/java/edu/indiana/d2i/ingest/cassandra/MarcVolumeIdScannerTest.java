@@ -0,0 +1,109 @@
+package edu.indiana.d2i.ingest.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+
+/*
+ * Tests that MarcVolumeIdScanner.getVolumeId finds the volume id that MarcProcessor.getVolumeIdFromMarc finds in the record parsed by
+ * json-simple, and returns null, so that the record is parsed in full, for the records whose volume id it cannot determine without parsing.
+ */
+public class MarcVolumeIdScannerTest {
+	private static final String VOLID_FIELD = "{\"974\":{\"ind1\":\" \",\"subfields\":[{\"b\":\"x\"},{\"u\":\"mdp.39015012345678\"}]}}";
+
+	// a record with the given fields, and the given json, if any, after the fields
+	private static String record(String fields, String rest) {
+		return "{\"leader\":\"00000nam a2200000 a 4500\",\"fields\":[{\"001\":\"000000001\"}," + fields + "]" + rest + "}";
+	}
+
+	// the volume id that MarcProcessor finds in the parsed record, or null if json-simple does not parse it
+	private static String parseVolumeId(String marcJson) {
+		try {
+			return MarcProcessor.getVolumeIdFromMarc((JSONObject) new JSONParser().parse(marcJson));
+		} catch (ParseException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	// asserts that the scanner finds the expected volume id, or null, and that a volume id that it finds is the one found by parsing
+	private static void assertVolumeId(String expected, String marcJson) {
+		String volumeId = MarcVolumeIdScanner.getVolumeId(marcJson);
+		assertEquals(marcJson, expected, volumeId);
+		if (volumeId != null) {
+			assertEquals(marcJson, parseVolumeId(marcJson), volumeId);
+		}
+	}
+
+	@Test
+	public void findsVolumeId() {
+		assertVolumeId("mdp.39015012345678", record(VOLID_FIELD, ""));
+		assertVolumeId("mdp.39015012345678", " { \"fields\" : [ " + VOLID_FIELD.replace(":", " : ") + " ] } \r\n");
+	}
+
+	@Test
+	public void findsVolumeIdAmongOtherValues() {
+		String rest = ",\"n\":-1.25E-7,\"m\":01,\"t\":true,\"f\":false,\"z\":null,\"o\":{\"fields\":[{\"974\":{\"subfields\":[{\"u\":\"no\"}]}}]},"
+				+ "\"a\":[\"974\",{\"u\":\"no\"},[]],\"s\":\"\\\"fields\\\":[\"";
+		assertVolumeId("mdp.39015012345678", record(VOLID_FIELD, rest));
+	}
+
+	@Test
+	public void decodesEscapes() {
+		assertVolumeId("uc1.$b/2A\"\\", record("{\"974\":{\"subfields\":[{\"u\":\"uc1.$b\\/2\\u0041\\\"\\\\\"}]}}", ""));
+		assertVolumeId("esc", "{\"f\\u0069elds\":[{\"97\\u0034\":{\"subfields\":[{\"\\u0075\":\"esc\"}]}}]}");
+		assertVolumeId("bs", "{\"leader\":\"a\\\\\",\"fields\":[{\"974\":{\"subfields\":[{\"u\":\"bs\"}]}}]}");
+	}
+
+	@Test
+	public void takesFirstVolIdFieldAndSubfield() {
+		assertVolumeId("first", record("{\"974\":{\"subfields\":[{\"a\":\"x\"},{\"u\":\"first\"},{\"u\":\"second\"}]}},"
+				+ "{\"974\":{\"subfields\":[{\"u\":\"third\"}]}}", ""));
+		assertVolumeId("first", record("{\"100\":\"x\"},{\"974\":{\"subfields\":[{\"u\":\"first\"}]}},"
+				+ "{\"974\":{\"subfields\":[{\"u\":\"second\"}]}}", ""));
+	}
+
+	@Test
+	public void returnsNullForDuplicateKeys() {
+		// json-simple keeps the last value of a key
+		String duplicateFields = record(VOLID_FIELD, ",\"fields\":[{\"974\":{\"subfields\":[{\"u\":\"last\"}]}}]");
+		assertNull(MarcVolumeIdScanner.getVolumeId(duplicateFields));
+		assertEquals("last", parseVolumeId(duplicateFields));
+		assertVolumeId(null, record("{\"974\":{\"subfields\":[{\"u\":\"x\"}],\"subfields\":[{\"u\":\"y\"}]}}", ""));
+		assertVolumeId(null, record("{\"974\":{\"subfields\":[{\"u\":\"x\",\"u\":\"y\"}]}}", ""));
+	}
+
+	@Test
+	public void returnsNullForMissingVolumeId() {
+		String noU = record("{\"974\":{\"subfields\":[{\"a\":\"x\"}]}}", "");
+		assertNull(MarcVolumeIdScanner.getVolumeId(noU));
+		assertEquals(MarcProcessor.NO_VOLID_FOUND_STR, parseVolumeId(noU));
+		String noVolIdField = record("{\"100\":\"x\"}", "");
+		assertNull(MarcVolumeIdScanner.getVolumeId(noVolIdField));
+		assertEquals(MarcProcessor.NO_VOLID_FOUND_STR, parseVolumeId(noVolIdField));
+		assertVolumeId(null, "{\"leader\":\"x\"}");
+		assertVolumeId(null, record("{\"974\":{\"subfields\":[{\"u\":5}]}}", ""));
+	}
+
+	@Test
+	public void returnsNullForMalformedJson() {
+		String valid = record(VOLID_FIELD, "");
+		assertVolumeId(null, valid + " trailing");
+		assertVolumeId(null, valid + "}");
+		assertVolumeId(null, valid.substring(0, valid.length() - 1));
+		assertVolumeId(null, record(VOLID_FIELD, ","));
+		assertVolumeId(null, record(VOLID_FIELD, ",\"n\":tru"));
+		assertVolumeId(null, record(VOLID_FIELD, ",\"n\":truex"));
+		assertVolumeId(null, record(VOLID_FIELD, ",\"n\":1."));
+		assertVolumeId(null, record(VOLID_FIELD, ",\"n\":- 1"));
+		assertVolumeId(null, record(VOLID_FIELD, ",\"n\":1e"));
+		assertVolumeId(null, record(VOLID_FIELD, ",\"n\":abc"));
+		assertVolumeId(null, record(VOLID_FIELD, ",\"s\":\"\\x\""));
+		assertVolumeId(null, "");
+		assertVolumeId(null, "[]");
+		assertVolumeId(null, null);
+	}
+}